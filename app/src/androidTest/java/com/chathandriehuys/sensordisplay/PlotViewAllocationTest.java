@@ -0,0 +1,80 @@
+package com.chathandriehuys.sensordisplay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the allocation behaviour of {@link PlotView}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PlotViewAllocationTest {
+    private static final int FRAME_COUNT = 120;
+    private static final int HEIGHT = 1080;
+    private static final long MILLIS = 1000000;
+    private static final int WARM_UP_FRAME_COUNT = 10;
+    private static final int WIDTH = 1920;
+
+    @Test
+    public void onDraw_doesNotAllocateAfterWarmUp() throws Exception {
+        final int[] allocations = new int[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                PlotView view = new PlotView(InstrumentationRegistry.getTargetContext());
+
+                // A dense series that has to be decimated, and a sparse one that is drawn as-is
+                TimeSeries dense = new TimeSeries("Dense");
+                TimeSeries sparse = new TimeSeries("Sparse");
+
+                view.addSeries(dense, Color.RED);
+                view.addSeries(sparse, Color.BLUE, DecimationMode.NONE);
+
+                long now = SensorClock.now();
+                for (int i = 0; i < 4000; i++) {
+                    dense.addPoint(now - (4000 - i) * MILLIS, (float) Math.sin(i / 50.0));
+                }
+                for (int i = 0; i < 40; i++) {
+                    sparse.addPoint(now - (4000 - i * 100) * MILLIS, i % 10);
+                }
+
+                view.measure(
+                        View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+                view.layout(0, 0, WIDTH, HEIGHT);
+
+                Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(bitmap);
+
+                // Let the view size its buffers and draw its cached layer
+                for (int i = 0; i < WARM_UP_FRAME_COUNT; i++) {
+                    view.onDraw(canvas);
+                }
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+
+                for (int i = 0; i < FRAME_COUNT; i++) {
+                    view.onDraw(canvas);
+                }
+
+                Debug.stopAllocCounting();
+                allocations[0] = Debug.getThreadAllocCount();
+
+                bitmap.recycle();
+            }
+        });
+
+        assertEquals(0, allocations[0]);
+    }
+}
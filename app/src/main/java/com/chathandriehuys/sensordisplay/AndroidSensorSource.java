@@ -0,0 +1,196 @@
+package com.chathandriehuys.sensordisplay;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+
+
+/**
+ * A sensor source that emits the events of one of the device's sensors.
+ *
+ * When started as a {@link SensorSource}, each event is reduced to the magnitude of its axes, which
+ * for a sensor with a single value, such as the light sensor, is just that value. Started with
+ * {@link #start(MultiSampleVisitor)}, each event's axes are passed on as they are. Timestamps are
+ * translated onto the {@link SensorClock} time base. Events are delivered on the thread of the
+ * handler the source is created with, so they never wait behind the UI thread.
+ */
+class AndroidSensorSource implements SensorEventListener, SensorSource {
+    private static final int POLLING_INTERVAL = 1000000;
+    private static final long NANOS_PER_MICRO = 1000;
+
+    private float[] axes;
+
+    private Handler handler;
+
+    private int axisCount;
+    private int maxReportLatency;
+    private int sensorType;
+
+    private MultiSampleVisitor axisConsumer;
+
+    private SampleVisitor consumer;
+
+    private Sensor sensor;
+
+    private SensorClock clock;
+
+    private SensorManager manager;
+
+    /**
+     * Create a source for one of the device's sensors.
+     *
+     * @param manager The sensor manager to subscribe to the sensor with.
+     * @param sensorType The type of sensor to subscribe to.
+     * @param maxReportLatency The longest time, in microseconds, the sensor may batch events in
+     *                         its hardware FIFO before delivering them, or 0 to deliver each event
+     *                         as it happens.
+     * @param handler The handler of the thread events should be delivered on.
+     */
+    AndroidSensorSource(
+            SensorManager manager,
+            int sensorType,
+            int maxReportLatency,
+            Handler handler) {
+        this.manager = manager;
+        this.sensorType = sensorType;
+        this.maxReportLatency = maxReportLatency;
+        this.handler = handler;
+
+        sensor = manager.getDefaultSensor(sensorType);
+        clock = new SensorClock(maxReportLatency * NANOS_PER_MICRO);
+
+        axisCount = getAxisCount(sensorType);
+        axes = new float[axisCount];
+    }
+
+    /**
+     * Get the type of the sensor the source subscribes to.
+     *
+     * @return The sensor type.
+     */
+    @Override
+    public int getSensorType() {
+        return sensorType;
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int i) { }
+
+    /**
+     * Receive data from the sensor.
+     *
+     * This is called on the handler's thread. The event's axes, or their magnitude, are passed to
+     * the consumer.
+     *
+     * @param sensorEvent The sensor event that was emitted.
+     */
+    @Override
+    public void onSensorChanged(SensorEvent sensorEvent) {
+        // Vector sensors may append extra values after their axes, such as an accuracy estimate,
+        // so only the axes are read
+        float[] values = sensorEvent.values;
+        int count = Math.min(values.length, axisCount);
+
+        long timestamp = clock.fromEventTimestamp(sensorEvent.timestamp);
+
+        if (axisConsumer != null) {
+            System.arraycopy(values, 0, axes, 0, count);
+            axisConsumer.visit(timestamp, axes);
+        } else {
+            float value = count == 1 ? values[0] : MultiChannelSeries.magnitude(values, count);
+            consumer.visit(timestamp, value);
+        }
+    }
+
+    /**
+     * Subscribe to events from the sensor.
+     *
+     * @param consumer The consumer to pass the magnitude of each event to.
+     */
+    @Override
+    public void start(SampleVisitor consumer) {
+        this.consumer = consumer;
+        axisConsumer = null;
+
+        register();
+    }
+
+    /**
+     * Unsubscribe from the sensor's events.
+     */
+    @Override
+    public void stop() {
+        manager.unregisterListener(this);
+    }
+
+    /**
+     * Get the number of axes the source's sensor reports.
+     *
+     * @return The number of values passed to a {@link MultiSampleVisitor} with each event.
+     */
+    int getAxisCount() {
+        return axisCount;
+    }
+
+    /**
+     * Get the sensor the source subscribes to.
+     *
+     * @return The device's default sensor of the source's type, or null if it doesn't have one.
+     */
+    Sensor getSensor() {
+        return sensor;
+    }
+
+    /**
+     * Subscribe to events from the sensor, keeping each event's axes separate.
+     *
+     * @param consumer The consumer to pass the axes of each event to.
+     */
+    void start(MultiSampleVisitor consumer) {
+        axisConsumer = consumer;
+        this.consumer = null;
+
+        register();
+    }
+
+    /**
+     * Get the number of axes reported by a type of sensor.
+     *
+     * @param sensorType The sensor type.
+     *
+     * @return The number of axes, or 1 for a sensor that reports a single value.
+     */
+    private static int getAxisCount(int sensorType) {
+        switch (sensorType) {
+            case Sensor.TYPE_ACCELEROMETER:
+            case Sensor.TYPE_GYROSCOPE:
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return 3;
+
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Register the source as a listener for the sensor's events.
+     *
+     * If a maximum report latency was requested and the device supports it, the sensor is allowed
+     * to batch events in its hardware FIFO for up to that long before delivering them. This lets
+     * the device wake up less often, and the batch is delivered as a burst.
+     */
+    private void register() {
+        if (sensor == null) {
+            return;
+        }
+
+        if (maxReportLatency > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            manager.registerListener(this, sensor, POLLING_INTERVAL, maxReportLatency, handler);
+        } else {
+            manager.registerListener(this, sensor, POLLING_INTERVAL, handler);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.chathandriehuys.sensordisplay;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.app.NavUtils;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.MenuItem;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Activity for plotting every available sensor at the same time.
+ *
+ * Each sensor the device has is subscribed to through a shared {@link IngestEngine}. Sensor events
+ * are delivered on a small, fixed pool of threads, however many sensors there are, and each
+ * sensor's samples are drained into its own series by the engine's pool of workers, so the UI
+ * thread only draws. The plots read the series under their locks, and are told about new points
+ * on the UI thread. A line above each plot shows the sensor's throughput and back-pressure.
+ */
+public class DashboardActivity extends AppCompatActivity {
+    private static final int DELIVERY_THREAD_COUNT = 2;
+    private static final int PLOT_HEIGHT_DP = 160;
+    private static final int WORKER_COUNT = 2;
+    private static final long STATUS_INTERVAL_MILLIS = 1000;
+
+    private static final int[] SENSOR_TYPES = {
+            Sensor.TYPE_ACCELEROMETER,
+            Sensor.TYPE_GYROSCOPE,
+            Sensor.TYPE_MAGNETIC_FIELD,
+            Sensor.TYPE_PRESSURE,
+            Sensor.TYPE_LIGHT,
+            Sensor.TYPE_PROXIMITY,
+    };
+
+    private static final String[] SERIES_COLORS = {
+            "#23af00", "#2655ff", "#e5402a", "#ff9800", "#ffe732", "#9c27b0",
+    };
+
+    private static final String TAG = DashboardActivity.class.getSimpleName();
+
+    private Handler uiHandler;
+
+    private HandlerThread[] deliveryThreads;
+
+    private IngestEngine engine;
+
+    private long[] lastIngestedCounts;
+
+    private Runnable updateStatus;
+
+    private TextView[] statusViews;
+
+    private TextView totalView;
+
+    /**
+     * Handle action bar clicks.
+     *
+     * @param item The item in the action bar that was selected.
+     *
+     * @return A boolean indicating if the menu item was handled.
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                // Navigate to the parent activity
+                NavUtils.navigateUpFromSameTask(this);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * Initialize the activity.
+     *
+     * @param savedInstanceState The activity's previous state if it's being resumed.
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_dashboard);
+
+        uiHandler = new Handler(Looper.getMainLooper());
+
+        // Series are drained on the engine's own workers, off the UI thread
+        engine = new IngestEngine(WORKER_COUNT);
+
+        deliveryThreads = new HandlerThread[DELIVERY_THREAD_COUNT];
+        for (int i = 0; i < deliveryThreads.length; i++) {
+            deliveryThreads[i] = new HandlerThread(
+                    "SensorDelivery-" + i,
+                    Process.THREAD_PRIORITY_MORE_FAVORABLE);
+            deliveryThreads[i].start();
+        }
+
+        addSensors((LinearLayout) findViewById(R.id.dashboard_container));
+
+        updateStatus = new Runnable() {
+            @Override
+            public void run() {
+                showStatus();
+                uiHandler.postDelayed(this, STATUS_INTERVAL_MILLIS);
+            }
+        };
+
+        // Enable the back button in the title bar
+        android.support.v7.app.ActionBar actionBar = getSupportActionBar();
+        if (actionBar != null) {
+            actionBar.setDisplayHomeAsUpEnabled(true);
+        }
+    }
+
+    /**
+     * Shut the engine and the delivery threads down when the activity is destroyed.
+     *
+     * Any drains that haven't run yet are discarded, since their series won't be shown again.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        uiHandler.removeCallbacks(updateStatus);
+        engine.shutdownNow();
+
+        for (HandlerThread thread : deliveryThreads) {
+            thread.quit();
+        }
+    }
+
+    /**
+     * Stop listening to the sensors when the activity is paused.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        engine.stop();
+        uiHandler.removeCallbacks(updateStatus);
+    }
+
+    /**
+     * Resume listening to the sensors.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        engine.start();
+        uiHandler.postDelayed(updateStatus, STATUS_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Add a source, series, and plot for each of the device's sensors.
+     *
+     * Sensors are spread across the delivery threads in turn.
+     *
+     * @param container The layout to add the plots to.
+     */
+    private void addSensors(LinearLayout container) {
+        SensorManager manager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+
+        int plotHeight = (int) (PLOT_HEIGHT_DP * getResources().getDisplayMetrics().density);
+
+        // The overall figures go above every plot
+        totalView = new TextView(this);
+        container.addView(totalView);
+
+        ArrayList<TextView> statuses = new ArrayList<>();
+
+        for (int type : SENSOR_TYPES) {
+            int index = engine.getChannels().size();
+
+            AndroidSensorSource source = new AndroidSensorSource(
+                    manager,
+                    type,
+                    0,
+                    new Handler(deliveryThreads[index % deliveryThreads.length].getLooper()));
+
+            Sensor sensor = source.getSensor();
+            if (sensor == null) {
+                continue;
+            }
+
+            TimeSeries series = new TimeSeries(sensor.getName());
+            engine.addSource(source, series);
+
+            TextView status = new TextView(this);
+            container.addView(status);
+            statuses.add(status);
+
+            PlotView plot = new PlotView(this);
+            plot.addSeries(series, Color.parseColor(SERIES_COLORS[index % SERIES_COLORS.length]));
+            plot.addSeries(series.getAverageSeries(), Color.GRAY);
+            container.addView(plot, new ViewGroup.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT,
+                    plotHeight));
+        }
+
+        statusViews = statuses.toArray(new TextView[statuses.size()]);
+        lastIngestedCounts = new long[statusViews.length];
+
+        if (statusViews.length == 0) {
+            Log.w(TAG, "The device has none of the dashboard's sensors.");
+        }
+    }
+
+    /**
+     * Show each sensor's throughput and back-pressure over the last status interval.
+     */
+    private void showStatus() {
+        List<IngestChannel> channels = engine.getChannels();
+
+        double seconds = STATUS_INTERVAL_MILLIS / 1000.0;
+
+        for (int i = 0; i < channels.size(); i++) {
+            IngestChannel channel = channels.get(i);
+            long ingested = channel.getIngestedCount();
+
+            statusViews[i].setText(String.format(
+                    "%s: %.0f samples/s, %d queued, %d dropped",
+                    channel.getSeries().getTitle(),
+                    (ingested - lastIngestedCounts[i]) / seconds,
+                    channel.getBacklog(),
+                    channel.getDroppedCount()));
+
+            lastIngestedCounts[i] = ingested;
+        }
+
+        totalView.setText(String.format(
+                "%d sensors: %.0f samples/s, %d dropped",
+                channels.size(),
+                engine.getThroughput(),
+                engine.getDroppedCount()));
+    }
+}
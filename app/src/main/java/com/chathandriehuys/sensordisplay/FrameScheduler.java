@@ -0,0 +1,175 @@
+package com.chathandriehuys.sensordisplay;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+
+/**
+ * Schedules frames on the UI thread in step with the display's refresh.
+ *
+ * The scheduler isn't thread-safe, and must only be used from the UI thread.
+ *
+ * Frames are only scheduled on demand: a frame is requested, the callback decides what to do with
+ * it, and the callback's return value determines if another frame is needed. While the scheduler
+ * is stopped or idle, nothing is posted to the UI thread at all.
+ *
+ * On API 16 and newer, frames are timed by the {@link Choreographer}. Older devices fall back to a
+ * {@link Handler} posting at the target frame rate.
+ */
+class FrameScheduler {
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * A callback for handling scheduled frames.
+     */
+    interface Callback {
+
+        /**
+         * Handle a frame.
+         *
+         * @param frameTimeNanos The time the frame started, in nanoseconds on the
+         *                       {@link System#nanoTime()} time base.
+         *
+         * @return A boolean indicating if another frame should be scheduled.
+         */
+        boolean onFrame(long frameTimeNanos);
+    }
+
+    private boolean frameRequested;
+    private boolean running;
+
+    private Callback callback;
+
+    private Choreographer.FrameCallback choreographerCallback;
+
+    private Handler handler;
+
+    private long lastFrameTime;
+    private long minFrameInterval;
+
+    private Runnable handlerCallback;
+
+    /**
+     * Create a new scheduler.
+     *
+     * The scheduler starts out stopped.
+     *
+     * @param callback The callback to send frames to.
+     * @param targetFrameRate The maximum number of frames per second to deliver.
+     */
+    FrameScheduler(Callback callback, int targetFrameRate) {
+        this.callback = callback;
+
+        setTargetFrameRate(targetFrameRate);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            choreographerCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    handleFrame(frameTimeNanos);
+                }
+            };
+        } else {
+            handler = new Handler(Looper.getMainLooper());
+            handlerCallback = new Runnable() {
+                @Override
+                public void run() {
+                    handleFrame(System.nanoTime());
+                }
+            };
+        }
+    }
+
+    /**
+     * Request that a frame be delivered.
+     *
+     * Multiple requests before the next frame only result in a single frame. Requests are ignored
+     * while the scheduler is stopped.
+     *
+     * This must only be called on the UI thread.
+     */
+    void requestFrame() {
+        if (!running || frameRequested) {
+            return;
+        }
+
+        frameRequested = true;
+
+        if (choreographerCallback != null) {
+            Choreographer.getInstance().postFrameCallback(choreographerCallback);
+        } else {
+            handler.postDelayed(handlerCallback, minFrameInterval / 1000000);
+        }
+    }
+
+    /**
+     * Start or stop delivering frames.
+     *
+     * Starting the scheduler immediately requests a frame. Stopping it cancels any pending frame.
+     *
+     * @param running A boolean indicating if frames should be delivered.
+     */
+    void setRunning(boolean running) {
+        if (running == this.running) {
+            return;
+        }
+
+        this.running = running;
+
+        if (running) {
+            requestFrame();
+        } else if (frameRequested) {
+            frameRequested = false;
+
+            if (choreographerCallback != null) {
+                Choreographer.getInstance().removeFrameCallback(choreographerCallback);
+            } else {
+                handler.removeCallbacks(handlerCallback);
+            }
+        }
+    }
+
+    /**
+     * Set the maximum rate that frames are delivered at.
+     *
+     * Lower frame rates use less power, at the cost of a less smooth plot.
+     *
+     * @param targetFrameRate The maximum number of frames per second to deliver.
+     */
+    void setTargetFrameRate(int targetFrameRate) {
+        if (targetFrameRate <= 0) {
+            throw new IllegalArgumentException("The target frame rate must be positive.");
+        }
+
+        minFrameInterval = NANOS_PER_SECOND / targetFrameRate;
+    }
+
+    /**
+     * Deliver a frame to the callback if enough time has passed since the last one.
+     *
+     * @param frameTimeNanos The time the frame started.
+     */
+    private void handleFrame(long frameTimeNanos) {
+        frameRequested = false;
+
+        if (!running) {
+            return;
+        }
+
+        // Allow for a little jitter in the display's timing so that a target rate equal to the
+        // refresh rate doesn't skip every other frame.
+        if (frameTimeNanos - lastFrameTime < minFrameInterval * 9 / 10) {
+            requestFrame();
+
+            return;
+        }
+
+        lastFrameTime = frameTimeNanos;
+
+        if (callback.onFrame(frameTimeNanos)) {
+            requestFrame();
+        }
+    }
+}
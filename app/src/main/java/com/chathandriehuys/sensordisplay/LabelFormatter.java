@@ -0,0 +1,111 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * Formats whole numbers into a reusable character buffer.
+ *
+ * Axis labels are redrawn every time the plot's domain or range changes, and going through
+ * {@link String#format(String, Object...)} for each one allocates a formatter, a boxed argument,
+ * and a string. The formatter instead writes the digits into a buffer that can be passed straight
+ * to {@link android.graphics.Canvas#drawText(char[], int, int, float, float,
+ * android.graphics.Paint)}.
+ */
+class LabelFormatter {
+    // Enough room for the sign and every digit of the smallest long
+    private static final int BUFFER_SIZE = 20;
+
+    private char[] buffer;
+
+    private int length;
+    private int start;
+
+    /**
+     * Create a new formatter.
+     */
+    LabelFormatter() {
+        buffer = new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Get the formatted text as a string.
+     *
+     * This allocates, so it should only be used outside of the draw path.
+     *
+     * @return The formatted text.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, start, length);
+    }
+
+    /**
+     * Format a number, rounded to the nearest whole number.
+     *
+     * The formatted text replaces whatever was previously in the buffer.
+     *
+     * @param value The number to format.
+     *
+     * @return The formatter, so the result can be read immediately.
+     */
+    LabelFormatter format(float value) {
+        return format(Math.round((double) value));
+    }
+
+    /**
+     * Format a whole number.
+     *
+     * The formatted text replaces whatever was previously in the buffer.
+     *
+     * @param value The number to format.
+     *
+     * @return The formatter, so the result can be read immediately.
+     */
+    LabelFormatter format(long value) {
+        // Work with the negated value so that the smallest long doesn't overflow
+        boolean negative = value < 0;
+        long remaining = negative ? value : -value;
+
+        start = BUFFER_SIZE;
+
+        do {
+            buffer[--start] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        if (negative) {
+            buffer[--start] = '-';
+        }
+
+        length = BUFFER_SIZE - start;
+
+        return this;
+    }
+
+    /**
+     * Get the buffer holding the formatted text.
+     *
+     * @return The buffer holding the formatted text. Only the characters from
+     *         {@link #getStart()} to {@link #getStart()} + {@link #getLength()} are valid.
+     */
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Get the length of the formatted text.
+     *
+     * @return The number of characters in the formatted text.
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the position of the formatted text in the buffer.
+     *
+     * @return The index of the first character of the formatted text.
+     */
+    int getStart() {
+        return start;
+    }
+}
@@ -5,6 +5,7 @@ import android.hardware.Sensor;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.view.View;
+import android.widget.CheckBox;
 
 /**
  * The main activity for the app.
@@ -12,6 +13,13 @@ import android.view.View;
  * This activity is launched when the app is opened.
  */
 public class MainActivity extends AppCompatActivity {
+    /**
+     * The longest time, in microseconds, that a sensor may hold events in its hardware FIFO when
+     * batching is enabled. Devices without a FIFO deliver events as they happen regardless.
+     */
+    private static final int BATCHED_MAX_REPORT_LATENCY = 200000;
+
+    private CheckBox batchEventsView;
 
     /**
      * Handle click events from the activity.
@@ -24,6 +32,10 @@ public class MainActivity extends AppCompatActivity {
                 navigateSensorPlot(Sensor.TYPE_ACCELEROMETER);
                 break;
 
+            case R.id.btn_dashboard:
+                startActivity(new Intent(this, DashboardActivity.class));
+                break;
+
             case R.id.btn_light_sensor:
                 navigateSensorPlot(Sensor.TYPE_LIGHT);
                 break;
@@ -46,17 +58,28 @@ public class MainActivity extends AppCompatActivity {
 
         SensorInfoView lightSensorView = (SensorInfoView) findViewById(R.id.light_sensor_info);
         lightSensorView.setSensorType(Sensor.TYPE_LIGHT);
+
+        batchEventsView = (CheckBox) findViewById(R.id.chk_batch_events);
     }
 
     /**
      * Launch an activity to plot the data for a sensor.
      *
+     * If batching is checked, the sensor is allowed to batch its events, which lets the
+     * application processor sleep between deliveries.
+     *
      * @param sensorType The type of sensor that the plot will show data for.
      */
     private void navigateSensorPlot(int sensorType) {
         Intent intent = new Intent(this, SensorPlotActivity.class);
         intent.putExtra(getString(R.string.EXTRA_SENSOR_TYPE), sensorType);
 
+        if (batchEventsView.isChecked()) {
+            intent.putExtra(
+                    getString(R.string.EXTRA_MAX_REPORT_LATENCY),
+                    BATCHED_MAX_REPORT_LATENCY);
+        }
+
         startActivity(intent);
     }
 }
@@ -3,9 +3,37 @@ package com.chathandriehuys.sensordisplay;
 
 /**
  * A series that can be plotted.
+ *
+ * Besides the series itself, the entry holds everything the plot needs from the series to draw a
+ * frame: the visible points, the range, the domain, and how recent the newest data is. These are
+ * copied from the series while holding its lock, so the plot can draw and schedule frames from
+ * them without waiting for points being added on another thread.
  */
 class PlotSeriesEntry {
+    private boolean rangeChanged;
+
+    private Decimator decimator;
+
+    private float[] values;
+
+    private FloatInterval range;
+
     private int color;
+    private int historyVersion;
+    private int pointCount;
+    private int rangeVersion;
+    private int tierVersion;
+
+    private long[] timestamps;
+
+    private long newestTimestamp;
+    private long retention;
+
+    private LongInterval domain;
+
+    private RollupTier tier;
+
+    private SampleHistory history;
 
     private TimeSeries series;
 
@@ -14,10 +42,27 @@ class PlotSeriesEntry {
      *
      * @param series The series to plot.
      * @param color The color that the series should be drawn in.
+     * @param decimationMode The method used to reduce the series when it has more points than can
+     *                       be displayed.
      */
-    PlotSeriesEntry(TimeSeries series, int color) {
+    PlotSeriesEntry(TimeSeries series, int color, DecimationMode decimationMode) {
         this.series = series;
         this.color = color;
+
+        if (decimationMode != DecimationMode.NONE) {
+            decimator = new Decimator(series, decimationMode);
+        }
+
+        timestamps = new long[0];
+        values = new float[0];
+
+        // Nothing has been read from the series yet, so it has no data to show
+        domain = new LongInterval(0, 0);
+        range = new FloatInterval(Float.MAX_VALUE, -Float.MAX_VALUE);
+        newestTimestamp = Long.MIN_VALUE;
+
+        // Start out of sync with the series so its range is read on the first frame
+        rangeVersion = series.getRangeVersion() - 1;
     }
 
     /**
@@ -27,10 +72,227 @@ class PlotSeriesEntry {
      */
     int getColor() { return color; }
 
+    /**
+     * Determine if the range read from the series has changed since the last time this was called.
+     *
+     * This doesn't read the series, so it doesn't need the series' lock.
+     *
+     * @return A boolean indicating if the series' range has changed.
+     */
+    boolean consumeRangeChange() {
+        boolean changed = rangeChanged;
+
+        rangeChanged = false;
+
+        return changed;
+    }
+
+    /**
+     * Make sure the point buffers can hold a given number of points.
+     *
+     * The buffers only ever grow, so once they are large enough for the visible part of the
+     * series no more allocations are needed.
+     *
+     * @param size The number of points the buffers need to hold.
+     */
+    void ensurePointCapacity(int size) {
+        if (timestamps.length < size) {
+            int capacity = Math.max(size, timestamps.length * 2);
+
+            timestamps = new long[capacity];
+            values = new float[capacity];
+        }
+    }
+
+    /**
+     * Get the decimator used to reduce the series for plotting.
+     *
+     * @return The series' decimator, or null if the series should not be decimated.
+     */
+    Decimator getDecimator() { return decimator; }
+
+    /**
+     * Get the domain of the series, as of the last time it was read.
+     *
+     * @return The interval holding the series' domain.
+     */
+    LongInterval getDomain() { return domain; }
+
+    /**
+     * Get the compressed history the series is plotted from.
+     *
+     * @return The series' history if it is plotted from it, or null otherwise.
+     */
+    SampleHistory getHistory() { return history; }
+
+    /**
+     * Get the timestamp of the newest data the series can draw, as of the last time it was read.
+     *
+     * @return The newest timestamp covered by the series' points, tier, or history, or
+     *         {@link Long#MIN_VALUE} if the series is empty.
+     */
+    long getNewestTimestamp() { return newestTimestamp; }
+
+    /**
+     * Get the number of points in the point buffers.
+     *
+     * @return The number of visible points read from the series.
+     */
+    int getPointCount() { return pointCount; }
+
+    /**
+     * Get the range of the series, as of the last time it was read.
+     *
+     * @return The interval holding the series' range.
+     */
+    FloatInterval getRange() { return range; }
+
+    /**
+     * Get the amount of history kept by the series, as of the last time it was read.
+     *
+     * @return The series' retention, in nanoseconds.
+     */
+    long getRetention() { return retention; }
+
     /**
      * Get the series to be plotted.
      *
      * @return The series to be plotted.
      */
     TimeSeries getSeries() { return series; }
+
+    /**
+     * Get the rollup tier the series is plotted from.
+     *
+     * @return The series' active rollup tier, or null if the series' raw points are plotted.
+     */
+    RollupTier getTier() { return tier; }
+
+    /**
+     * Get the timestamps of the visible points.
+     *
+     * @return The timestamp buffer, which may be longer than the number of points.
+     */
+    long[] getTimestamps() { return timestamps; }
+
+    /**
+     * Get the values of the visible points.
+     *
+     * @return The value buffer, which may be longer than the number of points.
+     */
+    float[] getValues() { return values; }
+
+    /**
+     * Read the series' domain, retention, and the timestamp of its newest data.
+     *
+     * The series' lock must be held.
+     */
+    void readExtent() {
+        series.getDomain(domain);
+        retention = series.getRetention();
+
+        newestTimestamp = series.size() > 0
+                ? series.getTimestamp(series.size() - 1)
+                : Long.MIN_VALUE;
+
+        // A tier's newest bucket can hold points up to the end of the bucket
+        if (tier != null && tier.size() > 0) {
+            newestTimestamp = Math.max(
+                    newestTimestamp,
+                    tier.getStart(tier.size() - 1) + tier.getBucketWidth() - 1);
+        }
+
+        if (history != null) {
+            newestTimestamp = Math.max(newestTimestamp, history.getNewestTimestamp());
+        }
+    }
+
+    /**
+     * Read the range of the part of the series being plotted, if it may have changed.
+     *
+     * While a tier or the compressed history is plotted, the range of its visible buckets or
+     * blocks is read instead of the range of the raw points. The series' lock must be held.
+     *
+     * @param oldest The timestamp of the oldest point that can be drawn.
+     * @param newest The timestamp of the newest point that can be drawn.
+     * @param force If true, the range is read even if the series hasn't changed, such as when the
+     *              plot's domain has moved.
+     */
+    void readRange(long oldest, long newest, boolean force) {
+        int version = series.getRangeVersion();
+        boolean changed = force || version != rangeVersion;
+
+        rangeVersion = version;
+
+        if (tier != null) {
+            changed |= tier.getVersion() != tierVersion;
+            tierVersion = tier.getVersion();
+        }
+
+        if (history != null) {
+            changed |= history.getVersion() != historyVersion;
+            historyVersion = history.getVersion();
+        }
+
+        if (!changed) {
+            return;
+        }
+
+        if (history != null) {
+            history.getRange(oldest, newest, range);
+        } else if (tier != null) {
+            tier.getRange(oldest, newest, range);
+        } else {
+            series.getRange(range);
+        }
+
+        rangeChanged = true;
+    }
+
+    /**
+     * Set the compressed history the series is plotted from.
+     *
+     * @param history The history to plot, or null to plot the series' raw points or a tier.
+     */
+    void setHistory(SampleHistory history) {
+        if (history == this.history) {
+            return;
+        }
+
+        this.history = history;
+
+        // Force the range to be read again from the new source of points
+        rangeVersion = series.getRangeVersion() - 1;
+        if (history != null) {
+            historyVersion = history.getVersion() - 1;
+        }
+    }
+
+    /**
+     * Set the number of points in the point buffers.
+     *
+     * @param pointCount The number of visible points read from the series.
+     */
+    void setPointCount(int pointCount) {
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * Set the rollup tier the series is plotted from.
+     *
+     * @param tier The tier to plot, or null to plot the series' raw points.
+     */
+    void setTier(RollupTier tier) {
+        if (tier == this.tier) {
+            return;
+        }
+
+        this.tier = tier;
+
+        // Force the range to be read again from the new source of points
+        rangeVersion = series.getRangeVersion() - 1;
+        if (tier != null) {
+            tierVersion = tier.getVersion() - 1;
+        }
+    }
 }
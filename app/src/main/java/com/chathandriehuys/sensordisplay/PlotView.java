@@ -1,6 +1,7 @@
 package com.chathandriehuys.sensordisplay;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -9,40 +10,90 @@ import android.os.Handler;
 import android.os.Looper;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 
 /**
  * A view for plotting different series of data.
+ *
+ * Points can be added to the plotted series on any thread. Each series is read once per frame
+ * while holding its lock, and only for as long as it takes to copy the visible points and
+ * everything else the frame needs into the series' entry, which is then drawn without the lock.
+ * The lock is only ever tried, never waited for: a series that is busy having points added to it
+ * is drawn from what was read on the last frame, and read again on the next one. Notifications
+ * about new points are passed on to the UI thread before a frame is requested.
  */
 public class PlotView extends View {
     private static final int AXIS_SIZE = 200;
     private static final int AXIS_TICK_LENGTH = 24;
-    private static final int DOMAIN_SECONDS = 5;
+    private static final int DEFAULT_FRAME_RATE = 60;
+    private static final int INITIAL_TICK_CAPACITY = 16;
     private static final int LABEL_SIZE = 48;
     private static final int LEGEND_HEIGHT = 100;
     private static final int LEGEND_LABEL_BOX_PADDING = 20;
     private static final int LEGEND_LABEL_BOX_WIDTH = 50;
     private static final int LEGEND_LABEL_MARGIN = 100;
+    private static final int MAX_POINTS_PER_COLUMN = 2;
+    private static final long MIN_VISIBLE_DURATION = 100000000;
+    private static final long NANOS_PER_MILLI = 1000000;
     private static final int PLOT_GUTTER_SIZE = 50;
-    private static final int PLOT_REFRESH_INTERVAL = 1000 / 60;
     private static final int POINT_RADIUS = 10;
     private static final int RANGE_BUFFER = 1;
     private static final int TEXT_PADDING = 10;
 
     private ArrayList<PlotSeriesEntry> series;
 
+    private AtomicBoolean redrawPosted;
+
+    private boolean attached;
+    private boolean chromeDirty;
+    private boolean dataChanged;
+    private boolean hadVisibleData;
+    private boolean rangeStale;
+
+    private Bitmap chromeBitmap;
+
     private Canvas canvas;
+    private Canvas chromeCanvas;
+
+    private float[] vertices;
+
+    private FloatInterval nextRange;
+    private FloatInterval range;
+
+    private FrameScheduler frameScheduler;
+
+    private GestureDetector gestureDetector;
+
+    private Handler uiHandler;
+
+    private HistoryCursor cursor;
+
+    private int[] ticks;
+
+    private LabelFormatter labelFormatter;
+
+    private long frameTime;
+    private long lastDrawTime;
+    private long nanosPerPixel;
+    private long viewOffset;
+    private long visibleDuration;
 
-    private Interval<Float> range;
-    private Interval<Integer> domain;
+    private LongInterval domain;
+    private LongInterval nextDomain;
+    private LongInterval seriesDomain;
 
     private Paint axisPaint;
     private Paint labelPaint;
+    private Paint legendBoxPaint;
+    private Paint linePaint;
     private Paint minorLabelPaint;
     private Paint pointPaint;
 
@@ -51,6 +102,18 @@ public class PlotView extends View {
     private Rect legendArea;
     private Rect plotArea;
 
+    private Runnable postedRedraw;
+
+    private ScaleGestureDetector scaleGestureDetector;
+
+    private SeriesSlice slice;
+
+    private SpectrogramLayer spectrogram;
+
+    private SpectrumListener spectrumListener;
+
+    private TimeSeriesListener dataListener;
+
     public PlotView(Context context) {
         super(context);
 
@@ -79,11 +142,147 @@ public class PlotView extends View {
     /**
      * Add a new series to the plot.
      *
+     * Dense series are reduced to their extremes in each pixel column before they are drawn.
+     *
+     * Points may be added to the series on any thread, as long as they are added while holding
+     * the series' lock.
+     *
      * @param series The series to plot.
      * @param color The color to plot the series with.
      */
     public void addSeries(TimeSeries series, int color) {
-        this.series.add(new PlotSeriesEntry(series, color));
+        addSeries(series, color, DecimationMode.MIN_MAX);
+    }
+
+    /**
+     * Add a new series to the plot.
+     *
+     * @param series The series to plot.
+     * @param color The color to plot the series with.
+     * @param decimationMode The method used to reduce the series when it contains more points than
+     *                       there are pixel columns in the plot.
+     *
+     * @see TimeSeries#getLock()
+     */
+    public void addSeries(TimeSeries series, int color, DecimationMode decimationMode) {
+        // The entry's decimator reads the series' points, and both it and the plot listen for new
+        // ones, so the series can't change while they are attached
+        Lock lock = series.getLock();
+        lock.lock();
+        try {
+            this.series.add(new PlotSeriesEntry(series, color, decimationMode));
+
+            series.addListener(dataListener);
+        } finally {
+            lock.unlock();
+        }
+
+        // Force the range to be recalculated to include the new series, and the legend to be
+        // redrawn with it
+        rangeStale = true;
+        chromeDirty = true;
+        requestRedraw();
+    }
+
+    /**
+     * Pan and zoom the plot's time-axis with touch gestures.
+     *
+     * Pinching zooms in and out around the pinch, dragging horizontally pans over the history
+     * kept by the series, and double tapping returns to the most recent data.
+     *
+     * @param event The touch event.
+     *
+     * @return A boolean indicating if the event was handled.
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = scaleGestureDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+
+        return handled || super.onTouchEvent(event);
+    }
+
+    /**
+     * Show a spectrogram instead of plotting series.
+     *
+     * Each frame of the spectrum is drawn as a column at its time, with frequency on the y-axis
+     * and amplitude as color. New frames are copied into an offscreen bitmap as they arrive, so
+     * the cost of drawing doesn't depend on the number of frames on screen. While a spectrogram
+     * is shown, any series added to the plot aren't drawn.
+     *
+     * @param spectrum The spectrum to show, or null to go back to plotting series.
+     */
+    public void setSpectrogram(@Nullable SpectrumSeries spectrum) {
+        if (spectrogram != null) {
+            spectrogram.getSpectrum().removeListener(spectrumListener);
+            spectrogram.recycle();
+        }
+
+        spectrogram = spectrum == null ? null : new SpectrogramLayer(spectrum);
+
+        // New frames are announced like new points, so the plot doesn't poll for them
+        if (spectrum != null) {
+            spectrum.addListener(spectrumListener);
+        }
+
+        // The y-axis switches between values and frequencies
+        rangeStale = true;
+        chromeDirty = true;
+        requestRedraw();
+    }
+
+    /**
+     * Set the maximum rate the plot is redrawn at.
+     *
+     * The plot is only redrawn when new data arrives or the time-axis has moved by at least a
+     * pixel, so this is an upper bound. Lowering it reduces power usage.
+     *
+     * @param framesPerSecond The maximum number of frames to draw per second.
+     */
+    public void setTargetFrameRate(int framesPerSecond) {
+        frameScheduler.setTargetFrameRate(framesPerSecond);
+    }
+
+    /**
+     * Set the amount of history shown on the plot.
+     *
+     * Series with rollup tiers can show much more history than they keep raw points for. When a
+     * series' raw points don't cover the whole period, the coarsest of its tiers that still has
+     * a bucket for every pixel column is plotted instead.
+     *
+     * @param nanos The amount of history to show, in nanoseconds, or 0 to show the domain of the
+     *              series being plotted.
+     *
+     * @see TimeSeries#addRollupTier(long, long)
+     */
+    public void setVisibleDuration(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("The visible duration cannot be negative.");
+        }
+
+        setViewport(nanos, nanos == 0 ? 0 : viewOffset);
+    }
+
+    /**
+     * Start scheduling frames once the view is attached to a window.
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        attached = true;
+        updateFrameScheduling();
+    }
+
+    /**
+     * Stop scheduling frames once the view is detached from its window.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        attached = false;
+        updateFrameScheduling();
     }
 
     /**
@@ -95,12 +294,84 @@ public class PlotView extends View {
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
+        if (chromeBitmap == null) {
+            return;
+        }
+
+        // Read the clock once so every series is drawn relative to the same instant. Scheduled
+        // frames have already read the clock to decide if a redraw was needed.
+        long now = frameTime != 0 ? frameTime : SensorClock.now();
+        frameTime = 0;
+
+        // Copy any new spectra into the spectrogram first, since they extend its domain
+        if (spectrogram != null) {
+            spectrogram.update();
+        }
+
+        // Calculate plot parameters. The domain follows what was read from the series on the last
+        // frame, and the range only needs to be recalculated if the range of one of the series has
+        // changed. Both are calculated into scratch intervals so that nothing is allocated while
+        // drawing.
+        if (!getDomain(nextDomain).boundsEqual(domain)) {
+            domain.set(nextDomain);
+            chromeDirty = true;
+        }
+
+        // Each bucket of a decimated series covers a single pixel column
+        long domainNanos = domain.getMax() - domain.getMin();
+        long columnWidth = Math.max(domainNanos / Math.max(plotArea.width(), 1), 1);
+
+        // Copy what the frame needs out of each series, so nothing after this has to wait for
+        // points being added on another thread. A series that is busy keeps what was read on the
+        // last frame, and another frame is requested to read it once the points have been added.
+        boolean complete = true;
+        for (int i = 0; i < series.size(); i++) {
+            complete &= readSeries(series.get(i), now, columnWidth);
+        }
+
+        if (consumeRangeChanges() || rangeStale) {
+            // A series that was busy still has to read its range for the new domain
+            rangeStale = rangeStale && !complete;
+
+            if (!getRange(nextRange).boundsEqual(range)) {
+                range.set(nextRange);
+                chromeDirty = true;
+            }
+        }
+
+        if (!complete) {
+            requestRedraw();
+        }
+
+        // The axes, grid, and legend only depend on the plot's size, domain, range, and series,
+        // so they are drawn to an offscreen layer that is only redrawn when one of those changes.
+        if (chromeDirty) {
+            drawChrome();
+        }
+
+        canvas.drawBitmap(chromeBitmap, 0, 0, null);
+
+        // Draw the data on top of the cached layer
         this.canvas = canvas;
+        drawData(now);
 
-        // Set up geometry of plot components
-        int width = canvas.getWidth();
-        int height = canvas.getHeight();
+        lastDrawTime = now;
+        nanosPerPixel = (domain.getMax() - domain.getMin()) / Math.max(plotArea.width(), 1);
+    }
+
+    /**
+     * Lay out the plot's components when the view's size changes.
+     *
+     * @param width The new width of the view.
+     * @param height The new height of the view.
+     * @param oldWidth The old width of the view.
+     * @param oldHeight The old height of the view.
+     */
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
 
+        // Set up geometry of plot components
         int xStart = PLOT_GUTTER_SIZE;
         int yStart = PLOT_GUTTER_SIZE;
 
@@ -117,28 +388,58 @@ public class PlotView extends View {
         legendArea.set(xStart, legendYStart, xEnd, yEnd);
         plotArea.set(plotXStart, yStart, xEnd, plotYEnd);
 
-        // Calculate plot parameters
-        domain = getDomain();
-        range = getRange();
+        // Replace the offscreen layer with one that matches the new size
+        if (chromeBitmap != null) {
+            chromeBitmap.recycle();
+            chromeBitmap = null;
+        }
 
-        // Draw plot
-        drawAxisX();
-        drawAxisY();
-        drawData();
-        drawLegend();
+        if (width > 0 && height > 0) {
+            chromeBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            chromeCanvas.setBitmap(chromeBitmap);
+        }
+
+        chromeDirty = true;
+    }
+
+    /**
+     * Pause or resume frame scheduling when the view is hidden or shown.
+     *
+     * @param changedView The view whose visibility changed.
+     * @param visibility The new visibility of the view.
+     */
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        updateFrameScheduling();
+    }
+
+    /**
+     * Pause or resume frame scheduling when the view's window is hidden or shown.
+     *
+     * @param visibility The new visibility of the window.
+     */
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+
+        updateFrameScheduling();
     }
 
     /**
      * Convert an x-coordinate from a series into a coordinate on the canvas.
      *
-     * @param x The x-coordinate of a point in a series.
+     * @param x The x-coordinate of a point in a series, in milliseconds before the current time.
      *
      * @return The x-coordinate on the canvas where the provided value is located.
      */
     private float calculateCanvasX(float x) {
         float width = plotArea.width();
+        float domainMillis = (float) (domain.getMax() - domain.getMin()) / NANOS_PER_MILLI;
+        float minMillis = (float) domain.getMin() / NANOS_PER_MILLI;
 
-        return axisAreaX.right - width / (domain.getMax() - domain.getMin()) * x;
+        return axisAreaX.right - width / domainMillis * (x - minMillis);
     }
 
     /**
@@ -154,6 +455,26 @@ public class PlotView extends View {
         return axisAreaY.bottom - height / (range.getMax() - range.getMin()) * (y - range.getMin());
     }
 
+    /**
+     * Determine if the range of any series has changed since the last frame.
+     *
+     * @return A boolean indicating if the range of at least one series has changed.
+     */
+    private boolean consumeRangeChanges() {
+        boolean changed = false;
+
+        // Each entry has to be checked so that every entry is marked as up to date
+        for (int i = 0; i < series.size(); i++) {
+            changed |= series.get(i).consumeRangeChange();
+        }
+
+        if (spectrogram != null) {
+            changed |= spectrogram.consumeRangeChange();
+        }
+
+        return changed;
+    }
+
     /**
      * Draw the plot's x-axis.
      *
@@ -163,13 +484,17 @@ public class PlotView extends View {
         // The actual axis
         canvas.drawLine(axisAreaX.left, axisAreaX.top, axisAreaX.right, axisAreaX.top, axisPaint);
 
+        int minMillis = (int) (domain.getMin() / NANOS_PER_MILLI);
+        int maxMillis = (int) (domain.getMax() / NANOS_PER_MILLI);
+
         // Label the upper and lower bounds of the axis
-        drawXAxisLabel(domain.getMin());
-        drawXAxisLabel(domain.getMax());
+        drawXAxisLabel(minMillis);
+        drawXAxisLabel(maxMillis);
 
         // Draw tick marks and labels at the appropriate intervals
-        for (float tick : generateTickMarks(domain.getMin(), domain.getMax())) {
-            drawXAxisLabel(tick);
+        int tickCount = generateTickMarks(minMillis, maxMillis);
+        for (int i = 0; i < tickCount; i++) {
+            drawXAxisLabel(ticks[i]);
         }
 
         // The axis title
@@ -194,8 +519,11 @@ public class PlotView extends View {
         drawYAxisLabel(range.getMax());
 
         // Draw tick marks and labels at the appropriate intervals
-        for (float tick : generateTickMarks((int) Math.floor(range.getMin()), (int) Math.ceil(range.getMax()))) {
-            drawYAxisLabel(tick);
+        int tickCount = generateTickMarks(
+                (int) Math.floor(range.getMin()),
+                (int) Math.ceil(range.getMax()));
+        for (int i = 0; i < tickCount; i++) {
+            drawYAxisLabel(ticks[i]);
         }
 
         // Draw the axis title. This is more complex than the x-axis since we need to rotate the
@@ -207,55 +535,120 @@ public class PlotView extends View {
 
         canvas.save();
         canvas.rotate(270.0f, yTitleX, yTitleY);
-        canvas.drawText("Data", yTitleX, yTitleY, labelPaint);
+        canvas.drawText(
+                spectrogram != null ? "Frequency (Hz)" : "Data",
+                yTitleX,
+                yTitleY,
+                labelPaint);
         canvas.restore();
     }
 
+    /**
+     * Redraw the offscreen layer containing the plot's axes, grid, and legend.
+     */
+    private void drawChrome() {
+        chromeBitmap.eraseColor(Color.TRANSPARENT);
+
+        canvas = chromeCanvas;
+
+        drawAxisX();
+        drawAxisY();
+        drawLegend();
+
+        chromeDirty = false;
+    }
+
     /**
      * Draw the data from each series attached to the plot.
+     *
+     * Each series is converted into line segments in a reusable vertex buffer, and then drawn with
+     * a single call for the connecting lines and a single call for the points. The number of draw
+     * calls per frame therefore doesn't depend on the number of points in each series.
+     *
+     * If a spectrogram is being shown, it is drawn instead of the series.
+     *
+     * Series with more points than the plot has pixel columns are decimated when they are read,
+     * so the number of points drawn depends on the width of the plot rather than the sampling
+     * rate.
+     *
+     * @param now The current time, in nanoseconds on the {@link SensorClock} time base.
      */
-    private void drawData() {
-        // Create baseline for expired data.
-        Date now = new Date();
-        Date oldest = new Date(now.getTime() - 1000 * DOMAIN_SECONDS);
+    private void drawData(long now) {
+        long domainNanos = domain.getMax() - domain.getMin();
 
-        // Plot each series attached to the plot
-        for (PlotSeriesEntry entry : series) {
-            pointPaint.setColor(entry.getColor());
+        // Precompute the transform from a point's age and value to canvas coordinates. This is the
+        // same mapping as calculateCanvasX and calculateCanvasY, without a division per point.
+        float scaleX = -plotArea.width() / (float) domainNanos;
+        float offsetX = axisAreaX.right - scaleX * domain.getMin();
 
-            float prevX = 0;
-            float prevY = 0;
+        float scaleY = -plotArea.height() / (range.getMax() - range.getMin());
+        float offsetY = axisAreaY.bottom - scaleY * range.getMin();
 
-            boolean shouldDrawConnector = false;
+        // The spectrogram's bitmap is scaled to the plot, and a series that was busy is drawn from
+        // points read on an earlier frame, which may have moved past its edge since, so both have
+        // to be kept inside the plot
+        canvas.save();
+        canvas.clipRect(plotArea);
 
-            // Loop through each data-point in the series
-            for (DataPoint point : entry.getSeries().getData()) {
-                Date pointDate = point.getTimestamp();
+        if (spectrogram != null) {
+            float nyquist = spectrogram.getSpectrum().getSampleRate() / 2;
 
-                if (pointDate.before(oldest)) {
-                    // If the data-point is expired, we shouldn't draw it or a connecting line to it
-                    shouldDrawConnector = false;
+            spectrogram.draw(canvas, now, scaleX, offsetX, offsetY + scaleY * nyquist, offsetY);
+            canvas.restore();
 
-                    continue;
-                }
+            return;
+        }
 
-                // Get the on-screen coordinates of the point and draw it
-                float x = calculateCanvasX(now.getTime() - point.getTimestamp().getTime());
-                float y = calculateCanvasY(point.getData());
+        // Plot each series attached to the plot from the points copied out of it for this frame,
+        // so the series can keep being written to while they are drawn
+        for (int i = 0; i < series.size(); i++) {
+            PlotSeriesEntry entry = series.get(i);
 
-                canvas.drawCircle(x, y, POINT_RADIUS, pointPaint);
+            int count = entry.getPointCount();
+            if (count == 0) {
+                continue;
+            }
 
-                if (shouldDrawConnector) {
-                    canvas.drawLine(prevX, prevY, x, y, pointPaint);
-                }
+            long[] timestamps = entry.getTimestamps();
+            float[] values = entry.getValues();
+
+            // Each connecting line needs its own pair of end-points. A lone point is drawn as a
+            // line of zero length so that it is still included when drawing the points.
+            int vertexCount = 4 * Math.max(count - 1, 1);
+            ensureVertexCapacity(vertexCount);
+
+            float prevX = offsetX + scaleX * (now - timestamps[0]);
+            float prevY = offsetY + scaleY * values[0];
+
+            if (count == 1) {
+                vertices[0] = vertices[2] = prevX;
+                vertices[1] = vertices[3] = prevY;
+            }
+
+            int index = 0;
+            for (int j = 1; j < count; j++) {
+                float x = offsetX + scaleX * (now - timestamps[j]);
+                float y = offsetY + scaleY * values[j];
+
+                vertices[index++] = prevX;
+                vertices[index++] = prevY;
+                vertices[index++] = x;
+                vertices[index++] = y;
 
-                // Update information for drawing the next connecting line
                 prevX = x;
                 prevY = y;
-
-                shouldDrawConnector = true;
             }
+
+            // Every point is the end-point of at least one line, so drawing the end-points of the
+            // lines draws every point.
+            linePaint.setColor(entry.getColor());
+            pointPaint.setColor(entry.getColor());
+
+            canvas.drawLines(vertices, 0, vertexCount, linePaint);
+            canvas.drawPoints(vertices, 0, vertexCount, pointPaint);
         }
+
+        canvas.restore();
     }
 
     /**
@@ -271,9 +664,9 @@ public class PlotView extends View {
 
         labelPaint.setTextAlign(Paint.Align.LEFT);
 
-        Paint legendBoxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        for (int i = 0; i < series.size(); i++) {
+            PlotSeriesEntry entry = series.get(i);
 
-        for (PlotSeriesEntry entry : series) {
             legendBoxPaint.setColor(entry.getColor());
             canvas.drawRect(x, y - labelHeight, x + LEGEND_LABEL_BOX_WIDTH, y, legendBoxPaint);
 
@@ -303,9 +696,14 @@ public class PlotView extends View {
                 plotArea.bottom + AXIS_TICK_LENGTH,
                 minorLabelPaint);
 
+        // Times are labelled by how long ago they were
+        labelFormatter.format(-x);
+
         labelPaint.setTextAlign(Paint.Align.CENTER);
         canvas.drawText(
-                String.format(Locale.US, "-%.0f", x),
+                labelFormatter.getBuffer(),
+                labelFormatter.getStart(),
+                labelFormatter.getLength(),
                 realX,
                 realY + AXIS_TICK_LENGTH + TEXT_PADDING + labelPaint.getTextSize(),
                 labelPaint);
@@ -329,30 +727,60 @@ public class PlotView extends View {
                 realY,
                 minorLabelPaint);
 
+        labelFormatter.format(y);
+
         labelPaint.setTextAlign(Paint.Align.RIGHT);
         canvas.drawText(
-                String.format(Locale.US, "%.0f", y),
+                labelFormatter.getBuffer(),
+                labelFormatter.getStart(),
+                labelFormatter.getLength(),
                 realX - AXIS_TICK_LENGTH - TEXT_PADDING,
                 realY + labelPaint.getTextSize() / 2,
                 labelPaint);
     }
 
+    /**
+     * Make sure the vertex buffer can hold a given number of coordinates.
+     *
+     * The buffer only ever grows, so once it is large enough for the densest series no more
+     * allocations are needed.
+     *
+     * @param size The number of coordinates the buffer needs to hold.
+     */
+    private void ensureVertexCapacity(int size) {
+        if (vertices.length < size) {
+            vertices = new float[Math.max(size, vertices.length * 2)];
+        }
+    }
+
+    /**
+     * Make sure the plot has a fixed viewport before it is panned or zoomed.
+     *
+     * If the plot is following the domain of its series, the viewport starts out as that domain.
+     */
+    private void fixViewport() {
+        if (visibleDuration == 0) {
+            visibleDuration = Math.max(domain.getMax() - domain.getMin(), MIN_VISIBLE_DURATION);
+            viewOffset = 0;
+        }
+    }
+
     /**
      * Generate the locations of the tick marks for a given axis.
      *
+     * The locations are written to the start of the reusable tick buffer.
+     *
      * @param min The axis' minimum value.
      * @param max The axis' maximum value.
      *
-     * @return A list of values to place tick marks at.
+     * @return The number of tick marks written to the tick buffer.
      */
-    private ArrayList<Integer> generateTickMarks(int min, int max) {
+    private int generateTickMarks(int min, int max) {
         float range = max - min;
 
-        ArrayList<Integer> ticks = new ArrayList<>();
-
         if (range <= 1) {
             // If the range is too small, we don't want any addition ticks.
-            return ticks;
+            return 0;
         }
 
         // The step is equivalent to 10 raised to the order of magnitude of the range of the
@@ -364,48 +792,191 @@ public class PlotView extends View {
         // min is 43 and the step is 10, we would start at 50.
         int start = min + step - (min % step);
 
-        // Add tick marks until we reach the max value.
+        // Add tick marks until we reach the max value. The buffer only grows if the step leaves
+        // more ticks than it has ever held before.
+        int count = 0;
         for (int tick = start; tick < max; tick += step) {
-            ticks.add(tick);
+            if (count == ticks.length) {
+                int[] newTicks = new int[ticks.length * 2];
+                System.arraycopy(ticks, 0, newTicks, 0, count);
+                ticks = newTicks;
+            }
+
+            ticks[count++] = tick;
         }
 
-        return ticks;
+        return count;
     }
 
     /**
      * Get the domain of all the series included in the plot.
      *
-     * @return The smallest domain that encompasses the domains of all the series being plotted.
+     * @param out The interval to store the domain in.
+     *
+     * @return The provided interval, holding the panned and zoomed viewport if there is one, or
+     *         else the smallest domain that encompasses the domains of all the series being
+     *         plotted, in nanoseconds before the current time.
      */
-    private Interval<Integer> getDomain() {
-        int domainMin = Integer.MAX_VALUE, domainMax = Integer.MIN_VALUE;
+    private LongInterval getDomain(LongInterval out) {
+        if (visibleDuration > 0) {
+            out.set(viewOffset, viewOffset + visibleDuration);
 
-        for (PlotSeriesEntry entry : series) {
-            Interval<Integer> domain = entry.getSeries().getDomain();
+            return out;
+        }
 
-            domainMin = Math.min(domain.getMin(), domainMin);
-            domainMax = Math.max(domain.getMax(), domainMax);
+        out.set(Long.MAX_VALUE, Long.MIN_VALUE);
+
+        for (int i = 0; i < series.size(); i++) {
+            out.union(series.get(i).getDomain());
+        }
+
+        if (spectrogram != null) {
+            seriesDomain.set(0, spectrogram.getDuration());
+            out.union(seriesDomain);
+        }
+
+        return out;
+    }
+
+    /**
+     * Get how far back the plot can be panned.
+     *
+     * @return The longest amount of history kept by any of the series being plotted, in
+     *         nanoseconds.
+     */
+    private long getHistoryDuration() {
+        long history = 0;
+
+        for (int i = 0; i < series.size(); i++) {
+            history = Math.max(history, series.get(i).getRetention());
+        }
+
+        if (spectrogram != null) {
+            history = Math.max(history, spectrogram.getDuration());
         }
 
-        return new Interval<>(domainMin, domainMax);
+        return history;
     }
 
     /**
      * Get the range of all the series included in the plot.
      *
-     * @return The smallest range that encompasses the ranges of all the series being plotted.
+     * Series plotted from a rollup tier contribute the range of the tier's visible buckets, and
+     * series plotted from their compressed history contribute the range of its visible blocks.
+     *
+     * @param out The interval to store the range in.
+     *
+     * @return The provided interval, holding the smallest range with whole-number bounds that
+     *         encompasses the ranges of all the series being plotted, or the frequencies of the
+     *         spectrogram if one is being shown.
+     */
+    private FloatInterval getRange(FloatInterval out) {
+        // A spectrogram covers every frequency up to the Nyquist frequency, and its rows have to
+        // line up with the axis, so the range isn't padded
+        if (spectrogram != null) {
+            float nyquist = spectrogram.getSpectrum().getSampleRate() / 2;
+            out.set(0, Math.max((float) Math.ceil(nyquist), 1));
+
+            return out;
+        }
+
+        out.set(Float.MAX_VALUE, -Float.MAX_VALUE);
+
+        for (int i = 0; i < series.size(); i++) {
+            out.union(series.get(i).getRange());
+        }
+
+        out.expand(RANGE_BUFFER);
+
+        // Snap the range outwards to whole numbers. The axis labels are whole numbers anyway, and
+        // this means the axes only need to be redrawn when the range changes noticeably.
+        out.set((float) Math.floor(out.getMin()), (float) Math.ceil(out.getMax()));
+
+        return out;
+    }
+
+    /**
+     * Estimate how many samples of a series fall in each pixel column.
+     *
+     * The estimate is based on the average spacing of the points in the series' window.
+     *
+     * @param data The series, whose lock must be held.
+     * @param columnWidth The amount of time covered by a single pixel column, in nanoseconds.
+     *
+     * @return The average number of samples per column, or 0 if the series has fewer than two
+     *         points.
+     */
+    private static double getSamplesPerColumn(TimeSeries data, long columnWidth) {
+        int size = data.size();
+        if (size < 2) {
+            return 0;
+        }
+
+        long span = data.getTimestamp(size - 1) - data.getTimestamp(0);
+
+        return span > 0 ? (double) (size - 1) * columnWidth / span : Double.MAX_VALUE;
+    }
+
+    /**
+     * Decide if a scheduled frame needs to be drawn.
+     *
+     * The plot is redrawn if new data has arrived, or if the time-axis has moved by at least a
+     * pixel since the last draw while there is data on screen.
+     *
+     * @return A boolean indicating if another frame should be scheduled.
      */
-    private Interval<Float> getRange() {
-        float rangeMin = Float.MAX_VALUE, rangeMax = Float.MIN_VALUE;
+    private boolean handleFrame() {
+        long now = SensorClock.now();
+
+        boolean hasVisibleData = hasVisibleData(now);
+        boolean timeAxisMoved = lastDrawTime == 0 || now - lastDrawTime >= nanosPerPixel;
 
-        for (PlotSeriesEntry entry : series) {
-            Interval<Float> range = entry.getSeries().getRange();
+        // One more frame is drawn after the last data leaves the plot so that it is cleared
+        if (dataChanged || (timeAxisMoved && (hasVisibleData || hadVisibleData))) {
+            dataChanged = false;
+            frameTime = now;
 
-            rangeMin = Math.min(range.getMin() - RANGE_BUFFER, rangeMin);
-            rangeMax = Math.max(range.getMax() + RANGE_BUFFER, rangeMax);
+            invalidate();
         }
 
-        return new Interval<>(rangeMin, rangeMax);
+        hadVisibleData = hasVisibleData;
+
+        return hasVisibleData;
+    }
+
+    /**
+     * Determine if any series has data that falls within the plot's domain.
+     *
+     * Only the newest data of each series, tier, history, or spectrogram has to be checked, since
+     * anything newer than the oldest visible time is either on screen or will scroll onto it.
+     * Once all of it has scrolled off, the plot stops scheduling frames until new data arrives.
+     * The series aren't read here, since anything added to them since the last frame requests a
+     * redraw of its own.
+     *
+     * @param now The current time, in nanoseconds on the {@link SensorClock} time base.
+     *
+     * @return A boolean indicating if any data is visible on the plot.
+     */
+    private boolean hasVisibleData(long now) {
+        // Until the first draw, the domain hasn't been calculated
+        if (lastDrawTime == 0) {
+            return true;
+        }
+
+        long oldest = now - domain.getMax();
+
+        if (spectrogram != null) {
+            return spectrogram.getNewestTimestamp() >= oldest;
+        }
+
+        // Data newer than the viewport still has to be drawn as it moves into view
+        for (int i = 0; i < series.size(); i++) {
+            if (series.get(i).getNewestTimestamp() >= oldest) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -425,8 +996,36 @@ public class PlotView extends View {
         minorLabelPaint = new Paint(labelPaint);
         minorLabelPaint.setColor(Color.LTGRAY);
 
+        legendBoxPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        linePaint.setColor(Color.GREEN);
+
+        // Points are drawn as round dots the size of the old circles
         pointPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         pointPaint.setColor(Color.GREEN);
+        pointPaint.setStrokeCap(Paint.Cap.ROUND);
+        pointPaint.setStrokeWidth(2 * POINT_RADIUS);
+
+        vertices = new float[0];
+
+        // Set up the reusable holders for the plot's parameters, so that drawing a frame doesn't
+        // allocate anything
+        domain = new LongInterval(0, 0);
+        nextDomain = new LongInterval(0, 0);
+        seriesDomain = new LongInterval(0, 0);
+
+        range = new FloatInterval(0, 0);
+        nextRange = new FloatInterval(0, 0);
+        rangeStale = true;
+
+        labelFormatter = new LabelFormatter();
+        slice = new SeriesSlice();
+        cursor = new HistoryCursor();
+        ticks = new int[INITIAL_TICK_CAPACITY];
+
+        // Set up the offscreen layer. The bitmap itself is created once the view's size is known.
+        chromeCanvas = new Canvas();
 
         // Initialize geometry
         axisAreaX = new Rect();
@@ -434,16 +1033,444 @@ public class PlotView extends View {
         legendArea = new Rect();
         plotArea = new Rect();
 
-        // Set up handler to refresh the plot at the given interval. This allows us to keep moving
-        // data along the time-axis when no new data is coming in.
-        final Handler handler = new Handler(Looper.getMainLooper());
-        Runnable refreshPlotRunnable = new Runnable() {
+        // Redraw when new data arrives, and keep redrawing as long as there is data on screen
+        // that needs to move along the time-axis. Points can be added on any thread, but frames
+        // can only be requested on the UI thread, so notifications from other threads are posted
+        // to it. At most one is posted at a time, so a fast series doesn't flood the UI thread.
+        uiHandler = new Handler(Looper.getMainLooper());
+        redrawPosted = new AtomicBoolean();
+
+        postedRedraw = new Runnable() {
+            @Override
             public void run() {
-                invalidate();
-                handler.postDelayed(this, PLOT_REFRESH_INTERVAL);
+                redrawPosted.set(false);
+                requestRedraw();
+            }
+        };
+
+        spectrumListener = new SpectrumListener() {
+            @Override
+            public void frameAdded(SpectrumSeries spectrum, long frame, long timestamp) {
+                requestRedrawFromAnyThread();
             }
         };
 
-        refreshPlotRunnable.run();
+        dataListener = new TimeSeriesListener() {
+            @Override
+            public void pointAdded(TimeSeries series, long timestamp, float value) {
+                requestRedrawFromAnyThread();
+            }
+
+            @Override
+            public void pointsAdded(
+                    TimeSeries series,
+                    long[] timestamps,
+                    float[] values,
+                    int offset,
+                    int count) {
+                requestRedrawFromAnyThread();
+            }
+        };
+
+        // Pinching zooms around the pinch, dragging pans, and double tapping returns to the most
+        // recent data
+        scaleGestureDetector = new ScaleGestureDetector(
+                getContext(),
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(ScaleGestureDetector detector) {
+                        zoom(detector.getScaleFactor(), detector.getFocusX());
+
+                        return true;
+                    }
+
+                    @Override
+                    public void onScaleEnd(ScaleGestureDetector detector) {
+                        // Draw once more so the decimators catch up with the final zoom
+                        requestRedraw();
+                    }
+                });
+
+        gestureDetector = new GestureDetector(
+                getContext(),
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public boolean onDoubleTap(MotionEvent event) {
+                        setViewport(visibleDuration, 0);
+
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onDown(MotionEvent event) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onScroll(
+                            MotionEvent start,
+                            MotionEvent event,
+                            float distanceX,
+                            float distanceY) {
+                        if (scaleGestureDetector.isInProgress()) {
+                            return false;
+                        }
+
+                        pan(distanceX);
+
+                        return true;
+                    }
+                });
+
+        frameScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+            @Override
+            public boolean onFrame(long frameTimeNanos) {
+                return handleFrame();
+            }
+        }, DEFAULT_FRAME_RATE);
+    }
+
+    /**
+     * Move the plot's viewport along the time-axis.
+     *
+     * @param distanceX The distance the viewport was dragged, in pixels. Positive distances move
+     *                  towards more recent data.
+     */
+    private void pan(float distanceX) {
+        fixViewport();
+
+        long nanos = (long) (distanceX * visibleDuration / Math.max(plotArea.width(), 1));
+
+        setViewport(visibleDuration, viewOffset - nanos);
+    }
+
+    /**
+     * Read the visible part of a series' compressed history into its point buffers.
+     *
+     * The history is decoded as a stream and reduced to the minimum and maximum of each pixel
+     * column as it is read, so only a few points per column are kept no matter how many samples
+     * are visible. Every visible sample is still decoded, so the history is only read for series
+     * with a few samples per column.
+     *
+     * @param entry The series whose history is read.
+     * @param oldest The timestamp of the oldest point that can be drawn.
+     * @param newest The timestamp of the newest point that can be drawn.
+     * @param columnWidth The amount of time covered by a single pixel column, in nanoseconds.
+     *
+     * @return The number of points read.
+     */
+    private int readHistoryPoints(
+            PlotSeriesEntry entry,
+            long oldest,
+            long newest,
+            long columnWidth) {
+        entry.ensurePointCapacity(2 * (int) ((newest - oldest) / columnWidth + 2));
+
+        long[] timestamps = entry.getTimestamps();
+        float[] values = entry.getValues();
+
+        int count = 0;
+
+        long bucketEnd = Long.MIN_VALUE;
+        long maxTimestamp = 0;
+        long minTimestamp = 0;
+        float max = 0;
+        float min = 0;
+
+        entry.getHistory().seek(oldest, cursor);
+        while (cursor.next() && cursor.getTimestamp() <= newest) {
+            long timestamp = cursor.getTimestamp();
+            float value = cursor.getValue();
+
+            if (timestamp >= bucketEnd) {
+                if (bucketEnd != Long.MIN_VALUE) {
+                    count = writeBucket(
+                            timestamps, values, count, minTimestamp, min, maxTimestamp, max);
+                }
+
+                bucketEnd = oldest + ((timestamp - oldest) / columnWidth + 1) * columnWidth;
+                minTimestamp = maxTimestamp = timestamp;
+                min = max = value;
+            } else if (value < min) {
+                minTimestamp = timestamp;
+                min = value;
+            } else if (value > max) {
+                maxTimestamp = timestamp;
+                max = value;
+            }
+        }
+
+        if (bucketEnd != Long.MIN_VALUE) {
+            count = writeBucket(timestamps, values, count, minTimestamp, min, maxTimestamp, max);
+        }
+
+        return count;
+    }
+
+    /**
+     * Read the points of a series that should be drawn into its point buffers.
+     *
+     * If the series is plotted from its compressed history, the history is decoded and reduced to
+     * each column's extremes. If the series is plotted from a rollup tier, the tier's buckets are
+     * read. Otherwise, if the series has more visible points than there are pixel columns in the
+     * plot, and the series has a decimator, the decimated points are read instead of the raw
+     * points.
+     *
+     * Only the visible part of the series is read, and its bounds are found by binary search, so
+     * the cost of a frame doesn't depend on how much history the series keeps.
+     *
+     * @param entry The series to read.
+     * @param oldest The timestamp of the oldest point that can be drawn.
+     * @param newest The timestamp of the newest point that can be drawn.
+     * @param columnWidth The amount of time covered by a single pixel column, in nanoseconds.
+     *
+     * @return The number of points read.
+     */
+    private int readVisiblePoints(
+            PlotSeriesEntry entry,
+            long oldest,
+            long newest,
+            long columnWidth) {
+        if (entry.getHistory() != null) {
+            return readHistoryPoints(entry, oldest, newest, columnWidth);
+        }
+
+        RollupTier tier = entry.getTier();
+        if (tier != null) {
+            entry.ensurePointCapacity(tier.getMaxPointCount());
+
+            return tier.getPoints(oldest, newest, entry.getTimestamps(), entry.getValues());
+        }
+
+        Decimator decimator = entry.getDecimator();
+
+        int count = entry.getSeries().getSlice(oldest, newest, slice).size();
+
+        if (decimator != null) {
+            // Keep the decimator's buckets up to date even while it isn't needed, so that it can
+            // take over as soon as the series becomes dense. Bucket widths are powers of two, so
+            // zooming out only merges the existing buckets. Zooming in needs narrower buckets,
+            // which are rebuilt from the series, so that waits until the pinch is over and the
+            // current buckets are used in the meantime.
+            long bucketWidth = Long.highestOneBit(columnWidth);
+            if (scaleGestureDetector.isInProgress()) {
+                bucketWidth = Math.max(bucketWidth, decimator.getBucketWidth());
+            }
+
+            decimator.setBucketWidth(bucketWidth);
+
+            if (count > MAX_POINTS_PER_COLUMN * plotArea.width()) {
+                entry.ensurePointCapacity(decimator.getMaxPointCount());
+
+                return decimator.getPoints(
+                        oldest,
+                        newest,
+                        entry.getTimestamps(),
+                        entry.getValues());
+            }
+        }
+
+        entry.ensurePointCapacity(count);
+
+        long[] timestamps = entry.getTimestamps();
+        float[] values = entry.getValues();
+
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = slice.getTimestamp(i);
+            values[i] = slice.getValue(i);
+        }
+
+        return count;
+    }
+
+    /**
+     * Copy what a frame needs from a series into its entry.
+     *
+     * This picks the tier or history the series is plotted from, and reads its range, extent, and
+     * visible points. The series' lock is only tried: if points are being added to the series on
+     * another thread, nothing is read and the entry keeps what was read last time.
+     *
+     * @param entry The series to read.
+     * @param now The current time, in nanoseconds on the {@link SensorClock} time base.
+     * @param columnWidth The amount of time covered by a single pixel column, in nanoseconds.
+     *
+     * @return A boolean indicating if the series could be read.
+     */
+    private boolean readSeries(PlotSeriesEntry entry, long now, long columnWidth) {
+        Lock lock = entry.getSeries().getLock();
+        if (!lock.tryLock()) {
+            return false;
+        }
+
+        try {
+            long oldest = now - domain.getMax();
+            long newest = now - domain.getMin();
+
+            // Pick the source of the series' points before reading its range, since a tier's
+            // range can be wider than the range of the raw points
+            selectTier(entry, columnWidth);
+
+            entry.readRange(oldest, newest, rangeStale);
+            entry.readExtent();
+
+            // While a spectrogram is shown, the series aren't drawn
+            int count = 0;
+            if (spectrogram == null) {
+                count = readVisiblePoints(entry, oldest, newest, columnWidth);
+            }
+
+            entry.setPointCount(count);
+        } finally {
+            lock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Mark the plot's data as changed and make sure a frame is scheduled to draw it.
+     */
+    private void requestRedraw() {
+        dataChanged = true;
+        frameScheduler.requestFrame();
+    }
+
+    /**
+     * Request a redraw from any thread.
+     *
+     * On the UI thread, the redraw is requested immediately. On any other thread, it is posted to
+     * the UI thread unless a posted request is already waiting there.
+     */
+    private void requestRedrawFromAnyThread() {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            requestRedraw();
+        } else if (redrawPosted.compareAndSet(false, true)) {
+            uiHandler.post(postedRedraw);
+        }
+    }
+
+    /**
+     * Choose the rollup tier or compressed history a series is plotted from.
+     *
+     * A tier or history is only used if the series' raw points don't cover the plot's domain, so
+     * short domains are always drawn at full resolution. The history is lossless, so it is
+     * preferred over a tier unless the tier has a bucket for every pixel column or the history
+     * doesn't reach back as far as the tier.
+     *
+     * Reading the history decodes every visible sample, so it is also passed over for the tier
+     * once the series has more than {@link #MAX_POINTS_PER_COLUMN} samples per pixel column. The
+     * cost of a frame then depends on the width of the plot rather than on the sample rate.
+     *
+     * @param entry The series to choose for, whose lock must be held.
+     * @param columnWidth The amount of time covered by a single pixel column, in nanoseconds.
+     */
+    private void selectTier(PlotSeriesEntry entry, long columnWidth) {
+        TimeSeries data = entry.getSeries();
+
+        RollupTier tier = data.getRollupTier(domain.getMax(), columnWidth);
+
+        SampleHistory history = data.getHistory();
+        if (history != null && (domain.getMax() <= data.getDomain(seriesDomain).getMax()
+                || (tier != null && (tier.getBucketWidth() <= columnWidth
+                        || history.getRetention() < domain.getMax()
+                        || getSamplesPerColumn(data, columnWidth) > MAX_POINTS_PER_COLUMN)))) {
+            history = null;
+        }
+
+        entry.setHistory(history);
+        entry.setTier(history == null ? tier : null);
+    }
+
+    /**
+     * Move and resize the plot's viewport.
+     *
+     * The viewport is kept within the history of the series being plotted.
+     *
+     * @param duration The length of the viewport, in nanoseconds, or 0 to show the domain of the
+     *                 series being plotted.
+     * @param offset The age of the newest time shown in the viewport, in nanoseconds.
+     */
+    private void setViewport(long duration, long offset) {
+        long maxOffset = Math.max(getHistoryDuration() - duration, 0);
+
+        visibleDuration = duration;
+        viewOffset = Math.min(Math.max(offset, 0), maxOffset);
+
+        rangeStale = true;
+        requestRedraw();
+    }
+
+    /**
+     * Start or stop frame scheduling depending on if the plot can currently be seen.
+     */
+    private void updateFrameScheduling() {
+        // The view's visibility can change while it is still being constructed
+        if (frameScheduler == null) {
+            return;
+        }
+
+        frameScheduler.setRunning(attached && getWindowVisibility() == VISIBLE && isShown());
+    }
+
+    /**
+     * Append the extremes of a pixel column to a pair of point buffers, in chronological order.
+     *
+     * @param timestamps The buffer to write the timestamps to.
+     * @param values The buffer to write the values to.
+     * @param count The number of points already in the buffers.
+     * @param minTimestamp The timestamp of the column's smallest value.
+     * @param min The column's smallest value.
+     * @param maxTimestamp The timestamp of the column's largest value.
+     * @param max The column's largest value.
+     *
+     * @return The new number of points in the buffers.
+     */
+    private static int writeBucket(
+            long[] timestamps,
+            float[] values,
+            int count,
+            long minTimestamp,
+            float min,
+            long maxTimestamp,
+            float max) {
+        if (minTimestamp == maxTimestamp) {
+            timestamps[count] = minTimestamp;
+            values[count] = min;
+
+            return count + 1;
+        }
+
+        boolean minFirst = minTimestamp < maxTimestamp;
+
+        timestamps[count] = minFirst ? minTimestamp : maxTimestamp;
+        values[count] = minFirst ? min : max;
+        timestamps[count + 1] = minFirst ? maxTimestamp : minTimestamp;
+        values[count + 1] = minFirst ? max : min;
+
+        return count + 2;
+    }
+
+    /**
+     * Zoom the plot's time-axis in or out.
+     *
+     * The time under the focus point stays in place, so the plot zooms around the pinch.
+     *
+     * @param scaleFactor The factor to zoom in by. Factors smaller than 1 zoom out.
+     * @param focusX The x-coordinate of the focus point on the canvas.
+     */
+    private void zoom(float scaleFactor, float focusX) {
+        fixViewport();
+
+        long maxDuration = Math.max(getHistoryDuration(), MIN_VISIBLE_DURATION);
+        long duration = (long) (visibleDuration / scaleFactor);
+        duration = Math.min(Math.max(duration, MIN_VISIBLE_DURATION), maxDuration);
+
+        // The fraction of the viewport between the focus point and the newest time shown
+        float fraction = (axisAreaX.right - focusX) / Math.max(plotArea.width(), 1);
+        fraction = Math.min(Math.max(fraction, 0), 1);
+
+        long focus = viewOffset + (long) (fraction * visibleDuration);
+
+        setViewport(duration, focus - (long) (fraction * duration));
     }
 }
@@ -0,0 +1,112 @@
+package com.chathandriehuys.sensordisplay;
+
+import android.os.Build;
+import android.os.SystemClock;
+
+
+/**
+ * The monotonic time base used for plotting sensor data.
+ *
+ * Sensor events are stamped by the sensor hardware with a nanosecond timestamp. On most devices
+ * this uses the same clock as {@link SystemClock#elapsedRealtimeNanos()}, but some older devices
+ * stamp events with a different monotonic clock. A sensor clock translates event timestamps onto
+ * the time base returned by {@link #now()} so that sensor data and the plot's notion of the
+ * current time can be compared directly.
+ *
+ * When a sensor batches events in its hardware FIFO, the first event delivered can legitimately be
+ * as old as the sensor's maximum report latency. The clock has to be told that latency, so that
+ * the age of a batched event isn't mistaken for an offset between clocks.
+ */
+class SensorClock {
+    /**
+     * The largest difference between an event timestamp and the current time that is still
+     * treated as the two clocks sharing a time base. Anything larger is assumed to be an offset
+     * between clocks rather than delivery latency.
+     */
+    private static final long SAME_BASE_TOLERANCE_NANOS = 1000000000L;
+
+    private boolean calibrated;
+
+    private long maxLatency;
+    private long offset;
+
+    /**
+     * Create a clock for events that are delivered as they happen.
+     */
+    SensorClock() {
+        this(0);
+    }
+
+    /**
+     * Create a clock for events that may be batched before they are delivered.
+     *
+     * @param maxLatency The longest time an event may wait before it is delivered, in
+     *                   nanoseconds.
+     */
+    SensorClock(long maxLatency) {
+        if (maxLatency < 0) {
+            throw new IllegalArgumentException("The maximum latency cannot be negative.");
+        }
+
+        this.maxLatency = maxLatency;
+    }
+
+    /**
+     * Get the current time.
+     *
+     * @return The current time in nanoseconds on a monotonic clock that is unaffected by changes
+     *         to the wall-clock time.
+     */
+    static long now() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+
+        return System.nanoTime();
+    }
+
+    /**
+     * Convert a sensor event's timestamp to the clock's time base.
+     *
+     * The sensor's clock is identified from the first event. If the event is no older than the
+     * maximum latency, it is already on the time base. Otherwise, if it is on the
+     * {@link System#nanoTime()} time base, the offset is measured between the two clocks
+     * themselves, so any time the event spent waiting doesn't become part of it. Only an event on
+     * an unknown clock has the offset measured from its own age. Every later conversion is a
+     * single addition.
+     *
+     * @param eventTimestamp The timestamp of a sensor event, in nanoseconds.
+     *
+     * @return The event's timestamp on the time base returned by {@link #now()}.
+     */
+    long fromEventTimestamp(long eventTimestamp) {
+        if (!calibrated) {
+            long now = now();
+            long nanoTime = System.nanoTime();
+
+            if (isPlausibleAge(now - eventTimestamp)) {
+                offset = 0;
+            } else if (isPlausibleAge(nanoTime - eventTimestamp)) {
+                offset = now - nanoTime;
+            } else {
+                offset = now - eventTimestamp;
+            }
+
+            calibrated = true;
+        }
+
+        return eventTimestamp + offset;
+    }
+
+    /**
+     * Determine if the age of an event could be due to delivery and batching latency alone.
+     *
+     * @param age The time between the event's timestamp and the current time on some clock, in
+     *            nanoseconds.
+     *
+     * @return A boolean indicating if the event could have been stamped with that clock.
+     */
+    private boolean isPlausibleAge(long age) {
+        return age >= -SAME_BASE_TOLERANCE_NANOS && age <= maxLatency + SAME_BASE_TOLERANCE_NANOS;
+    }
+}
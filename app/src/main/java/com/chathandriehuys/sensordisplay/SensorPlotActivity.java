@@ -4,39 +4,113 @@ import android.content.Context;
 import android.graphics.Color;
 import android.graphics.drawable.AnimationDrawable;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
 import android.support.v4.app.NavUtils;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.MenuItem;
 import android.widget.ImageView;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
 /**
  * Activity for plotting a sensor's data.
+ *
+ * Samples come from a {@link SensorSource}, which is the device's sensor unless the launching
+ * intent asks for a replayed session or a synthetic signal. The device's sensor delivers its
+ * events on the ingestion thread, which collects them straight into a batch. Replayed and
+ * synthetic samples are delivered on a thread of their own, which passes each one through a
+ * lock-free queue to the ingestion thread to be drained in bulk. Either way, the samples are added
+ * to the series a batch at a time, so the per-sample work of updating statistics, tiers, and
+ * history never runs on the UI thread, and each batch is recorded and analyzed once it has been
+ * added, outside of the series' lock. The plot never waits for that lock, so a batch being added
+ * doesn't hold up a frame. The UI thread is only sent the latest average, at most one message at
+ * a time.
+ *
+ * For a sensor with several axes, such as the accelerometer, each axis is kept as a channel of a
+ * {@link MultiChannelSeries} and plotted along with their magnitude.
  */
-public class SensorPlotActivity extends AppCompatActivity implements SensorEventListener {
+public class SensorPlotActivity extends AppCompatActivity {
     private static final int ACCELEROMETER_LOW_THRESHOLD = 10;
     private static final int ACCELEROMETER_HIGH_THRESHOLD = 15;
     private static final int LIGHT_THRESHOLD = 50;
-    private static final int POLLING_INTERVAL = 1000000;
-
+    private static final int DEFAULT_MAX_REPORT_LATENCY = 0;
+    private static final int DEFAULT_SAMPLE_RATE = 200;
+    private static final int DRAIN_BATCH_SIZE = 1024;
+    private static final int SAMPLE_QUEUE_CAPACITY = 8192;
+    private static final int SPECTRUM_FRAME_SIZE = 256;
+    private static final int SPECTRUM_HOP_SIZE = 64;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long VISIBLE_DURATION = 60 * NANOS_PER_SECOND;
+
+    private static final float DEFAULT_REPLAY_SPEED = 1;
+
+    private static final String[] AXIS_COLORS = { "#e5402a", "#9c27b0", "#ff9800" };
+    private static final String[] AXIS_TITLES = { "X", "Y", "Z" };
+
+    private static final String SESSIONS_DIRECTORY = "sessions";
+    private static final String SOURCE_BURSTS = "bursts";
+    private static final String SOURCE_REPLAY = "replay";
+    private static final String SOURCE_SENSOR = "sensor";
+    private static final String SOURCE_SINE = "sine";
+    private static final String SOURCE_STEPS = "steps";
     private static final String TAG = SensorPlotActivity.class.getSimpleName();
 
+    private AtomicBoolean animationScheduled;
+    private AtomicBoolean drainScheduled;
+
+    private boolean flushScheduled;
+
+    private Handler ingestHandler;
+    private Handler uiHandler;
+
+    private HandlerThread ingestThread;
+
     private ImageView animationView;
 
+    private volatile float latestAverage;
+
     private int animationViewHeight;
+    private int batchCount;
     private int currentAnimation;
     private int sensorType;
 
-    private Sensor sensor;
+    private MultiChannelSeries sensorAxes;
+
+    private MultiSampleVisitor ingestAxes;
+
+    private Runnable drainSamples;
+    private Runnable flushSamples;
+    private Runnable showAverage;
+
+    private SampleQueue sampleQueue;
 
-    private SensorManager manager;
+    private SampleVisitor ingestSample;
+    private SampleVisitor ingestSensorSample;
+
+    private SensorClock clock;
+
+    private SensorSource source;
+
+    private SessionRecorder recorder;
+
+    private SpectrumAnalyzer spectrumAnalyzer;
 
     private TimeSeries sensorData;
 
+    private float[] drainedValues;
+    private float[][] drainedAxes;
+    private long[] drainedTimestamps;
+
     /**
      * Handle action bar clicks.
      *
@@ -68,27 +142,75 @@ public class SensorPlotActivity extends AppCompatActivity implements SensorEvent
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_sensor_plot);
 
-        // Create a new series to hold raw sensor data
-        sensorData = new TimeSeries("Data");
+        clock = new SensorClock();
+
+        initIngestion();
+
+        // Get the type of sensor the plot should display data for, and where its samples come from
+        int axisCount = 1;
 
-        // Get the type of sensor the plot should display data for
         Bundle extras = getIntent().getExtras();
         if (extras != null) {
-            sensorType = extras.getInt(getString(R.string.EXTRA_SENSOR_TYPE));
+            source = createSource(extras);
+            sensorType = source.getSensorType();
+
+            // Only the device's sensors report their axes separately
+            if (source instanceof AndroidSensorSource) {
+                axisCount = ((AndroidSensorSource) source).getAxisCount();
+            }
 
-            // Subscribe the activity to sensor events
-            manager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-            sensor = manager.getDefaultSensor(sensorType);
+            // Optionally keep every sample, in a new session directory named after its start time
+            if (extras.getBoolean(getString(R.string.EXTRA_RECORD_SESSION), false)) {
+                File sessions = new File(getFilesDir(), SESSIONS_DIRECTORY);
 
-            manager.registerListener(this, sensor, POLLING_INTERVAL);
+                recorder = new SessionRecorder(
+                        new File(sessions, Long.toString(System.currentTimeMillis())),
+                        sensorType);
+            }
+
+            // Optionally show the spectrum of the data instead of the data itself. The spectrum
+            // is calculated on the ingestion thread, so the UI thread only has to draw it.
+            if (extras.getBoolean(getString(R.string.EXTRA_SHOW_SPECTRUM), false)) {
+                spectrumAnalyzer = new SpectrumAnalyzer(
+                        SPECTRUM_FRAME_SIZE,
+                        SPECTRUM_HOP_SIZE,
+                        WindowFunction.HANN);
+            }
         }
 
-        // Add the raw data, mean, and variance to the plot
+        initSeries(axisCount);
+
+        // Keep summaries of the data for much longer than the raw points, so that the plot can
+        // show the last minute without holding every sample from it
+        sensorData.addRollupTier(NANOS_PER_SECOND / 10, 60 * NANOS_PER_SECOND);
+        sensorData.addRollupTier(NANOS_PER_SECOND, 10 * 60 * NANOS_PER_SECOND);
+        sensorData.addRollupTier(10 * NANOS_PER_SECOND, 60 * 60 * NANOS_PER_SECOND);
+
+        // Keep every sample from the last ten minutes in compressed form, so zooming in on recent
+        // history shows the exact signal rather than a tier's summary of it
+        sensorData.keepHistory(10 * 60 * NANOS_PER_SECOND);
+
+        // Add the raw data, mean, and variance to the plot, along with each axis if there are any,
+        // or show the data's spectrogram
         PlotView plotView = (PlotView) findViewById(R.id.plot_view);
 
-        plotView.addSeries(sensorData, Color.parseColor("#23af00"));
-        plotView.addSeries(sensorData.getAverageSeries(), Color.parseColor("#2655ff"));
-        plotView.addSeries(sensorData.getVarianceSeries(), Color.parseColor("#ffe732"));
+        if (spectrumAnalyzer != null) {
+            plotView.setSpectrogram(spectrumAnalyzer.getSeries());
+        } else {
+            if (sensorAxes != null) {
+                for (int i = 0; i < sensorAxes.getAxisCount(); i++) {
+                    plotView.addSeries(
+                            sensorAxes.getChannel(i),
+                            Color.parseColor(AXIS_COLORS[i]));
+                }
+            }
+
+            plotView.addSeries(sensorData, Color.parseColor("#23af00"));
+            plotView.addSeries(sensorData.getAverageSeries(), Color.parseColor("#2655ff"));
+            plotView.addSeries(sensorData.getVarianceSeries(), Color.parseColor("#ffe732"));
+        }
+
+        plotView.setVisibleDuration(VISIBLE_DURATION);
 
         // Save a reference to the animation view
         animationView = (ImageView) findViewById(R.id.animation_view);
@@ -103,55 +225,411 @@ public class SensorPlotActivity extends AppCompatActivity implements SensorEvent
     }
 
     /**
-     * Resume listening to sensor events.
+     * Resume receiving samples from the activity's source.
      */
     @Override
     protected void onResume() {
         super.onResume();
 
-        // This may also be called before onCreate, so we need to make sure our manager and sensor
-        // have been initialized.
-        if (manager != null && sensor != null) {
-            manager.registerListener(this, sensor, POLLING_INTERVAL);
+        if (source instanceof AndroidSensorSource) {
+            if (sensorAxes != null) {
+                ((AndroidSensorSource) source).start(ingestAxes);
+            } else {
+                source.start(ingestSensorSample);
+            }
+        } else if (source != null) {
+            source.start(ingestSample);
         }
     }
 
     /**
-     * Stop listening to sensor events when the activity is paused.
+     * Stop the ingestion thread when the activity is destroyed.
+     *
+     * If a session is being recorded, it is closed on the ingestion thread once any samples still
+     * waiting there have been added and recorded, so the final flush doesn't block the UI thread.
+     * The source was stopped when the activity was paused, so nothing records samples at the same
+     * time.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        uiHandler.removeCallbacks(showAverage);
+
+        ingestHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                closeRecorder();
+                ingestThread.quit();
+            }
+        });
+    }
+
+    /**
+     * Stop receiving samples when the activity is paused.
      */
     @Override
     protected void onPause() {
         super.onPause();
 
-        manager.unregisterListener(this);
+        if (source != null) {
+            source.stop();
+        }
     }
 
     /**
-     * Receive data from the sensor the activity is listening to.
+     * Add a batch of samples to the series, then record and analyze them.
+     *
+     * The series' lock is only held while the batch is added. The recorder and the spectrum are
+     * fed afterwards, so the lock isn't held any longer than the series needs it. This is called
+     * on the ingestion thread.
      *
-     * @param sensorEvent The sensor event that was emitted.
+     * @param count The number of samples at the start of the batch buffers.
      */
-    @Override
-    public void onSensorChanged(SensorEvent sensorEvent) {
-        // We only want the magnitude of the sensor event's value
-        float x = sensorEvent.values[0];
-        float y = sensorEvent.values[1];
-        float z = sensorEvent.values[2];
+    private void addBatch(int count) {
+        Lock lock = sensorData.getLock();
+        lock.lock();
+        try {
+            if (sensorAxes != null) {
+                sensorAxes.addPoints(drainedTimestamps, drainedAxes, 0, count);
+            } else {
+                sensorData.addPoints(drainedTimestamps, drainedValues, 0, count);
+            }
 
-        float value = (float) Math.sqrt(x*x + y*y + z*z);
+            latestAverage = sensorData.getAverage();
+        } finally {
+            lock.unlock();
+        }
 
-        Log.v(TAG, String.format("Received sensor value: %f", value));
+        // For a sensor with several axes, the batch's values are the magnitudes of its events
+        for (int i = 0; i < count; i++) {
+            recordSample(drainedTimestamps[i], drainedValues[i]);
+            analyzeSample(drainedTimestamps[i], drainedValues[i]);
+        }
 
-        sensorData.addPoint(new DataPoint(value));
+        if (animationScheduled.compareAndSet(false, true)) {
+            uiHandler.post(showAverage);
+        }
+    }
 
-        updateAnimation();
+    /**
+     * Add a sample to the spectrum being shown, if there is one.
+     *
+     * This is called on the ingestion thread, so the plot's frames aren't delayed by the FFT.
+     *
+     * @param timestamp The sample's timestamp, on the plot's time base.
+     * @param value The sample's value.
+     */
+    private void analyzeSample(long timestamp, float value) {
+        if (spectrumAnalyzer != null) {
+            spectrumAnalyzer.visit(timestamp, value);
+        }
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int i) { }
+    /**
+     * Finish adding a sensor event to the current batch.
+     *
+     * This is called on the ingestion thread, which the device's sensor delivers its events on, so
+     * events are collected straight into the batch buffers instead of passing through a queue. The
+     * batch is added once it is full, or once the events already waiting on the thread have been
+     * handled, so a burst of events is added in one go.
+     */
+    private void batchSample() {
+        batchCount++;
+
+        if (batchCount == drainedTimestamps.length) {
+            flushBatch();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            ingestHandler.post(flushSamples);
+        }
+    }
+
+    /**
+     * Stop recording the session, if one is being recorded.
+     *
+     * This blocks until the recorded samples are flushed to storage.
+     */
+    private void closeRecorder() {
+        if (recorder == null) {
+            return;
+        }
+
+        try {
+            recorder.close();
+
+            Log.i(TAG, String.format(
+                    "Recorded %d samples; %d dropped.",
+                    recorder.getRecordedCount(),
+                    recorder.getDroppedCount()));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to record the session.", e);
+        }
+    }
+
+    /**
+     * Create the source of the samples to plot.
+     *
+     * The source is chosen by the intent's {@code EXTRA_SENSOR_SOURCE} extra. The device's sensor
+     * is used by default, and if a replay is requested but no session has been recorded.
+     *
+     * @param extras The extras of the intent that launched the activity.
+     *
+     * @return The activity's source.
+     */
+    private SensorSource createSource(Bundle extras) {
+        int type = extras.getInt(getString(R.string.EXTRA_SENSOR_TYPE));
+        int rate = extras.getInt(getString(R.string.EXTRA_SAMPLE_RATE), DEFAULT_SAMPLE_RATE);
+
+        String name = extras.getString(getString(R.string.EXTRA_SENSOR_SOURCE), SOURCE_SENSOR);
+
+        if (SOURCE_BURSTS.equals(name)) {
+            return new SyntheticSource(
+                    type,
+                    Signals.bursts(5 * NANOS_PER_SECOND, NANOS_PER_SECOND, 9.81f, 4, 0.05f),
+                    rate);
+        }
+
+        if (SOURCE_SINE.equals(name)) {
+            return new SyntheticSource(type, Signals.sine(0.5, 2, 9.81f, 0.1f), rate);
+        }
+
+        if (SOURCE_STEPS.equals(name)) {
+            return new SyntheticSource(
+                    type,
+                    Signals.steps(2 * NANOS_PER_SECOND, 5, 15, 0.1f),
+                    rate);
+        }
+
+        if (SOURCE_REPLAY.equals(name)) {
+            File session = findNewestSession();
+
+            if (session != null) {
+                try {
+                    return new ReplaySource(
+                            new SessionReader(session),
+                            extras.getFloat(
+                                    getString(R.string.EXTRA_REPLAY_SPEED),
+                                    DEFAULT_REPLAY_SPEED));
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to open the session " + session + ".", e);
+                }
+            } else {
+                Log.w(TAG, "There are no recorded sessions to replay.");
+            }
+        }
+
+        return new AndroidSensorSource(
+                (SensorManager) getSystemService(Context.SENSOR_SERVICE),
+                type,
+                extras.getInt(
+                        getString(R.string.EXTRA_MAX_REPORT_LATENCY),
+                        DEFAULT_MAX_REPORT_LATENCY),
+                ingestHandler);
+    }
+
+    /**
+     * Add the sensor events collected so far to the series.
+     *
+     * This is called on the ingestion thread.
+     */
+    private void flushBatch() {
+        if (batchCount > 0) {
+            addBatch(batchCount);
+            batchCount = 0;
+        }
+    }
+
+    /**
+     * Find the most recently recorded session.
+     *
+     * @return The directory of the newest session, or null if no sessions have been recorded.
+     */
+    private File findNewestSession() {
+        File sessions = new File(getFilesDir(), SESSIONS_DIRECTORY);
+
+        String[] names = sessions.list();
+        if (names == null || names.length == 0) {
+            return null;
+        }
+
+        // Sessions are named after the time they started, so the newest sorts last
+        Arrays.sort(names);
+
+        return new File(sessions, names[names.length - 1]);
+    }
+
+    /**
+     * Set up the thread that sensor events are delivered on and samples are added to the series
+     * on, and the callbacks that pass samples to it.
+     */
+    private void initIngestion() {
+        ingestThread = new HandlerThread("SensorIngest", Process.THREAD_PRIORITY_MORE_FAVORABLE);
+        ingestThread.start();
+
+        ingestHandler = new Handler(ingestThread.getLooper());
+        uiHandler = new Handler(Looper.getMainLooper());
+
+        animationScheduled = new AtomicBoolean();
+        drainScheduled = new AtomicBoolean();
+
+        // Called on the ingestion thread with the axes of each new event from the device's sensor
+        ingestAxes = new MultiSampleVisitor() {
+            @Override
+            public void visit(long timestamp, float[] values) {
+                drainedTimestamps[batchCount] = timestamp;
+                for (int i = 0; i < drainedAxes.length; i++) {
+                    drainedAxes[i][batchCount] = values[i];
+                }
+
+                // Sessions hold a single value per sample, so the magnitude is recorded, and its
+                // spectrum is the one shown
+                drainedValues[batchCount] =
+                        MultiChannelSeries.magnitude(values, drainedAxes.length);
+
+                batchSample();
+            }
+        };
+
+        // Called on the ingestion thread with each new event from the device's sensor. Sensor
+        // events are already on the plot's time base.
+        ingestSensorSample = new SampleVisitor() {
+            @Override
+            public void visit(long timestamp, float value) {
+                drainedTimestamps[batchCount] = timestamp;
+                drainedValues[batchCount] = value;
+
+                batchSample();
+            }
+        };
+
+        // Called on the source's thread with each new replayed or synthetic sample
+        ingestSample = new SampleVisitor() {
+            @Override
+            public void visit(long eventTimestamp, float value) {
+                // Replayed and synthetic samples are stamped with System.nanoTime, which isn't
+                // always the plot's clock
+                long timestamp = clock.fromEventTimestamp(eventTimestamp);
+
+                if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                    Log.v(TAG, String.format("Received sensor value: %f", value));
+                }
 
-    private void updateAnimation() {
-        float value = sensorData.getAverage();
+                queueSample(sampleQueue.offer(timestamp, value));
+            }
+        };
+
+        // Called on the ingestion thread to add queued samples to the series. The lock is taken
+        // once per batch rather than once for the whole queue, so a large backlog doesn't keep
+        // the plot's frames from reading the series.
+        drainSamples = new Runnable() {
+            @Override
+            public void run() {
+                // Clear the flag before draining so that a sample queued during the drain
+                // schedules another one.
+                drainScheduled.set(false);
+
+                int count;
+                while ((count = sampleQueue.drain(drainedTimestamps, drainedValues)) > 0) {
+                    addBatch(count);
+                }
+            }
+        };
+
+        // Called on the ingestion thread once the sensor events already waiting there have been
+        // collected into the batch
+        flushSamples = new Runnable() {
+            @Override
+            public void run() {
+                flushScheduled = false;
+                flushBatch();
+            }
+        };
+
+        // Called on the UI thread with the average of the newest samples
+        showAverage = new Runnable() {
+            @Override
+            public void run() {
+                animationScheduled.set(false);
+                updateAnimation(latestAverage);
+            }
+        };
+    }
+
+    /**
+     * Create the series that hold the sensor's data, and the buffers used to pass samples to them.
+     *
+     * A sensor with several axes gets a channel for each one, next to a single column of
+     * timestamps, and the plotted data is their magnitude. Otherwise the data is a plain series.
+     * Only replayed and synthetic samples need a queue to reach the ingestion thread, and they
+     * always have a single value.
+     *
+     * @param axisCount The number of axes the sensor reports.
+     */
+    private void initSeries(int axisCount) {
+        if (!(source instanceof AndroidSensorSource)) {
+            sampleQueue = new SampleQueue(SAMPLE_QUEUE_CAPACITY, 1);
+        }
+
+        drainedTimestamps = new long[DRAIN_BATCH_SIZE];
+        drainedAxes = new float[axisCount][DRAIN_BATCH_SIZE];
+
+        // With several axes, the magnitude of each event is kept next to its axes for the recorder
+        // and the spectrum
+        drainedValues = axisCount > 1 ? new float[DRAIN_BATCH_SIZE] : drainedAxes[0];
+
+        // Stamped using the sensor's own timestamps
+        if (axisCount > 1) {
+            sensorAxes = new MultiChannelSeries(Arrays.copyOf(AXIS_TITLES, axisCount));
+            sensorData = sensorAxes.addMagnitudeChannel("Data");
+        } else {
+            sensorData = new TimeSeries("Data");
+        }
+    }
+
+    /**
+     * Finish handing a sample to the ingestion thread.
+     *
+     * This is called on the source's thread.
+     *
+     * @param queued A boolean indicating if the sample fit in the queue.
+     */
+    private void queueSample(boolean queued) {
+        if (!queued) {
+            Log.w(TAG, String.format(
+                    "Sample queue is full; %d samples dropped so far.",
+                    sampleQueue.getDroppedCount()));
+        }
+
+        // Only one drain is ever pending, so a burst of samples results in a single message to
+        // the ingestion thread.
+        if (drainScheduled.compareAndSet(false, true)) {
+            ingestHandler.post(drainSamples);
+        }
+    }
+
+    /**
+     * Record a sample to the session, if one is being recorded.
+     *
+     * This is called on the ingestion thread.
+     *
+     * @param timestamp The sample's timestamp.
+     * @param value The sample's value.
+     */
+    private void recordSample(long timestamp, float value) {
+        if (recorder != null && !recorder.record(timestamp, value)) {
+            Log.w(TAG, String.format(
+                    "Recorder is behind; %d samples dropped so far.",
+                    recorder.getDroppedCount()));
+        }
+    }
+
+    /**
+     * Show the animation that matches the sensor's current level.
+     *
+     * @param value The average of the sensor's newest samples.
+     */
+    private void updateAnimation(float value) {
         int newAnimation = 0;
 
         if (sensorType == Sensor.TYPE_ACCELEROMETER) {
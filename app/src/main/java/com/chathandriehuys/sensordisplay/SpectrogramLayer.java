@@ -0,0 +1,335 @@
+package com.chathandriehuys.sensordisplay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+
+/**
+ * A scrolling image of a {@link SpectrumSeries}, drawn by a {@link PlotView}.
+ *
+ * Each frame of the series is one column of an offscreen bitmap, with the lowest frequency at the
+ * bottom. The bitmap is used as a ring in the same way as the series, so only the columns of new
+ * frames are written each time the plot is drawn, and the ring is drawn as at most two pieces.
+ *
+ * Amplitudes are colored on a decibel scale relative to the loudest recent amplitude, so quiet
+ * components are still visible next to loud ones.
+ */
+class SpectrogramLayer {
+    private static final float DYNAMIC_RANGE = 60;
+    private static final float PEAK_DECAY = 0.99f;
+    private static final int PALETTE_SIZE = 256;
+    private static final int[] PALETTE_STOPS = {
+            Color.rgb(0, 0, 0),
+            Color.rgb(40, 0, 120),
+            Color.rgb(180, 0, 140),
+            Color.rgb(255, 80, 0),
+            Color.rgb(255, 220, 0),
+            Color.rgb(255, 255, 255),
+    };
+
+    private Bitmap bitmap;
+
+    private float peak;
+    private float sampleRate;
+
+    private float[] amplitudes;
+
+    private int[] column;
+    private int[] palette;
+
+    private long drawnFrameCount;
+    private long firstFrame;
+
+    private long[] timestamps;
+
+    private Paint paint;
+
+    private Rect source;
+
+    private RectF destination;
+
+    private SpectrumSeries spectrum;
+
+    /**
+     * Create a layer that draws a spectrum series.
+     *
+     * @param spectrum The series to draw.
+     */
+    SpectrogramLayer(SpectrumSeries spectrum) {
+        this.spectrum = spectrum;
+
+        int capacity = spectrum.getCapacity();
+        int binCount = spectrum.getBinCount();
+
+        bitmap = Bitmap.createBitmap(capacity, binCount, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.TRANSPARENT);
+
+        amplitudes = new float[binCount];
+        column = new int[binCount];
+        palette = createPalette();
+        timestamps = new long[capacity];
+
+        paint = new Paint();
+        paint.setFilterBitmap(true);
+
+        source = new Rect();
+        destination = new RectF();
+    }
+
+    /**
+     * Determine if the sample rate of the series has changed since the last time this was called.
+     *
+     * The sample rate determines the highest frequency in the spectrum, and therefore the plot's
+     * range.
+     *
+     * @return A boolean indicating if the series' sample rate has changed.
+     */
+    boolean consumeRangeChange() {
+        float current = spectrum.getSampleRate();
+        boolean changed = current != sampleRate;
+
+        sampleRate = current;
+
+        return changed;
+    }
+
+    /**
+     * Draw the frames of the series that fall within the plot's domain.
+     *
+     * Each frame is drawn ending at its timestamp, and spanning the average time between frames.
+     * Frames added since the last call to {@link #update()} aren't drawn.
+     *
+     * @param canvas The canvas to draw on, which should already be clipped to the plot area.
+     * @param now The current time, in nanoseconds on the {@link SensorClock} time base.
+     * @param scaleX The change in x-coordinate per nanosecond of age.
+     * @param offsetX The x-coordinate of a frame with an age of 0.
+     * @param top The y-coordinate of the Nyquist frequency.
+     * @param bottom The y-coordinate of 0 Hz.
+     */
+    void draw(Canvas canvas, long now, float scaleX, float offsetX, float top, float bottom) {
+        long oldest = getOldestFrame();
+        long newest = drawnFrameCount - 1;
+
+        // The spacing of the frames can only be found once there are two of them
+        if (newest - oldest < 1) {
+            return;
+        }
+
+        int capacity = timestamps.length;
+        long step = (timestamps[(int) (newest % capacity)] - timestamps[(int) (oldest % capacity)])
+                / (newest - oldest);
+
+        // The ring wraps around at most once, so it is drawn as at most two pieces
+        long wrap = oldest + capacity - oldest % capacity;
+
+        long end = Math.min(wrap, newest + 1);
+        drawFrames(canvas, now, scaleX, offsetX, top, bottom, step, oldest, end);
+
+        if (wrap <= newest) {
+            drawFrames(canvas, now, scaleX, offsetX, top, bottom, step, wrap, newest + 1);
+        }
+    }
+
+    /**
+     * Get the series drawn by the layer.
+     *
+     * @return The layer's series.
+     */
+    SpectrumSeries getSpectrum() {
+        return spectrum;
+    }
+
+    /**
+     * Get the amount of time covered by the frames that have been written to the bitmap.
+     *
+     * @return The time between the start of the oldest frame and the end of the newest, in
+     *         nanoseconds, or 0 if fewer than two frames have been written.
+     */
+    long getDuration() {
+        long oldest = getOldestFrame();
+        long newest = drawnFrameCount - 1;
+
+        if (newest - oldest < 1) {
+            return 0;
+        }
+
+        long span = timestamps[(int) (newest % timestamps.length)]
+                - timestamps[(int) (oldest % timestamps.length)];
+
+        // The oldest frame also covers the step before its timestamp
+        return span + span / (newest - oldest);
+    }
+
+    /**
+     * Get the timestamp of the newest frame that has been written to the bitmap.
+     *
+     * @return The newest frame's timestamp, or {@link Long#MIN_VALUE} if no frames have been
+     *         written.
+     */
+    long getNewestTimestamp() {
+        if (drawnFrameCount == 0) {
+            return Long.MIN_VALUE;
+        }
+
+        return timestamps[(int) ((drawnFrameCount - 1) % timestamps.length)];
+    }
+
+    /**
+     * Release the layer's bitmap. The layer can't be drawn afterwards.
+     */
+    void recycle() {
+        bitmap.recycle();
+    }
+
+    /**
+     * Write the columns of any frames added since the last update to the bitmap.
+     *
+     * If the layer has fallen so far behind that the series no longer keeps some of the new
+     * frames, it skips ahead, leaving some room so that frames aren't dropped by the series while
+     * they are being read.
+     */
+    void update() {
+        long frameCount = spectrum.getFrameCount();
+        long first = drawnFrameCount;
+
+        if (frameCount - first > timestamps.length / 2) {
+            first = frameCount - timestamps.length / 2;
+            firstFrame = first;
+        }
+
+        int binCount = amplitudes.length;
+
+        for (long frame = first; frame < frameCount; frame++) {
+            int index = (int) (frame % timestamps.length);
+            timestamps[index] = spectrum.getFrame(frame, amplitudes);
+
+            float max = 0;
+            for (int i = 0; i < binCount; i++) {
+                max = Math.max(max, amplitudes[i]);
+            }
+
+            // Let the reference level fall slowly, so the colors adapt to a quieter signal without
+            // flickering from frame to frame
+            peak = Math.max(peak * PEAK_DECAY, max);
+
+            for (int i = 0; i < binCount; i++) {
+                column[binCount - 1 - i] = palette[getPaletteIndex(amplitudes[i])];
+            }
+
+            bitmap.setPixels(column, 0, 1, index, 0, 1, binCount);
+        }
+
+        drawnFrameCount = frameCount;
+    }
+
+    /**
+     * Create the colors amplitudes are mapped to, from black for silence through to white.
+     *
+     * @return The palette, from the quietest to the loudest color.
+     */
+    private static int[] createPalette() {
+        int[] colors = new int[PALETTE_SIZE];
+        int segments = PALETTE_STOPS.length - 1;
+
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            float position = (float) i * segments / (PALETTE_SIZE - 1);
+            int segment = Math.min((int) position, segments - 1);
+            float fraction = position - segment;
+
+            int from = PALETTE_STOPS[segment];
+            int to = PALETTE_STOPS[segment + 1];
+
+            colors[i] = Color.rgb(
+                    interpolate((from >> 16) & 0xff, (to >> 16) & 0xff, fraction),
+                    interpolate((from >> 8) & 0xff, (to >> 8) & 0xff, fraction),
+                    interpolate(from & 0xff, to & 0xff, fraction));
+        }
+
+        return colors;
+    }
+
+    /**
+     * Draw a run of frames that are stored next to each other in the bitmap.
+     *
+     * @param canvas The canvas to draw on.
+     * @param now The current time, in nanoseconds.
+     * @param scaleX The change in x-coordinate per nanosecond of age.
+     * @param offsetX The x-coordinate of a frame with an age of 0.
+     * @param top The y-coordinate of the Nyquist frequency.
+     * @param bottom The y-coordinate of 0 Hz.
+     * @param step The average time between frames, in nanoseconds.
+     * @param start The number of the first frame to draw.
+     * @param end The number of the frame after the last frame to draw.
+     */
+    private void drawFrames(
+            Canvas canvas,
+            long now,
+            float scaleX,
+            float offsetX,
+            float top,
+            float bottom,
+            long step,
+            long start,
+            long end) {
+        int capacity = timestamps.length;
+        int first = (int) (start % capacity);
+        int last = (int) ((end - 1) % capacity);
+
+        long startTime = timestamps[first] - step;
+        long endTime = timestamps[last];
+
+        source.set(first, 0, last + 1, amplitudes.length);
+        destination.set(
+                offsetX + scaleX * (now - startTime),
+                top,
+                offsetX + scaleX * (now - endTime),
+                bottom);
+
+        canvas.drawBitmap(bitmap, source, destination, paint);
+    }
+
+    /**
+     * Get the number of the oldest frame in the bitmap.
+     *
+     * @return The oldest frame that has been written to the bitmap and not yet overwritten.
+     */
+    private long getOldestFrame() {
+        return Math.max(drawnFrameCount - timestamps.length, firstFrame);
+    }
+
+    /**
+     * Find the color of an amplitude.
+     *
+     * @param amplitude The amplitude of a frequency bin.
+     *
+     * @return The index of the amplitude's color in the palette.
+     */
+    private int getPaletteIndex(float amplitude) {
+        if (amplitude <= 0 || peak <= 0) {
+            return 0;
+        }
+
+        double decibels = 20 * Math.log10(amplitude / peak);
+        double level = (decibels + DYNAMIC_RANGE) / DYNAMIC_RANGE;
+
+        return (int) (Math.max(Math.min(level, 1), 0) * (PALETTE_SIZE - 1));
+    }
+
+    /**
+     * Interpolate between two color components.
+     *
+     * @param from The first component.
+     * @param to The second component.
+     * @param fraction How far to move from the first component towards the second, between 0 and
+     *                 1.
+     *
+     * @return The interpolated component.
+     */
+    private static int interpolate(int from, int to, float fraction) {
+        return Math.round(from + (to - from) * fraction);
+    }
+}
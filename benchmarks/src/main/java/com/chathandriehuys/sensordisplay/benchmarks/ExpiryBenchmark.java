@@ -0,0 +1,82 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the cost of expiring a whole window at once.
+ *
+ * This is what happens when a sensor stops reporting for longer than the series' domain and the
+ * series is then asked to expire its points, for example before it is drawn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class ExpiryBenchmark {
+    /**
+     * The number of points in the series' window.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int windowSize;
+
+    private float[] values;
+
+    private long[] timestamps;
+
+    private long expiryTime;
+
+    private TimeSeries series;
+
+    /**
+     * Generate the points used to fill the series.
+     */
+    @Setup(Level.Trial)
+    public void generatePoints() {
+        TimeSeries template = new TimeSeries("Benchmark");
+        long spacing = Samples.spacingForWindow(template, windowSize);
+
+        timestamps = Samples.timestamps(windowSize, spacing);
+        values = Samples.values(windowSize);
+
+        expiryTime = timestamps[windowSize - 1] + 2 * template.getDomain().getMax();
+    }
+
+    /**
+     * Fill a new series before each expiry.
+     */
+    @Setup(Level.Invocation)
+    public void fillSeries() {
+        series = new TimeSeries("Benchmark");
+        series.addPoints(timestamps, values, 0, windowSize);
+    }
+
+    /**
+     * Expire every point in the series.
+     *
+     * @return The number of points left, so the work can't be eliminated.
+     */
+    @Benchmark
+    public int expireWindow() {
+        series.expire(expiryTime);
+
+        return series.size();
+    }
+}
@@ -0,0 +1,86 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures how the cost of adding a point grows with the number of derived series.
+ *
+ * Each derived series adds a column next to the source series' timestamps, and is evaluated in the
+ * same pass that adds each point to the source series.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class FanOutBenchmark {
+    private static final int VALUE_COUNT = 4096;
+    private static final int WINDOW_SIZE = 1000;
+
+    /**
+     * The number of series derived from the source series.
+     */
+    @Param({"0", "1", "4", "16"})
+    public int derivedCount;
+
+    private float[] values;
+
+    private int next;
+
+    private long spacing;
+    private long time;
+
+    private TimeSeries series;
+
+    /**
+     * Create a source series with its derived series, and fill their windows.
+     */
+    @Setup
+    public void setUp() {
+        series = new TimeSeries("Benchmark");
+        spacing = Samples.spacingForWindow(series, WINDOW_SIZE);
+        values = Samples.values(VALUE_COUNT);
+
+        // Alternate between the kinds of derived series
+        for (int i = 0; i < derivedCount; i++) {
+            if (i % 2 == 0) {
+                series.getAverageSeries();
+            } else {
+                series.getVarianceSeries();
+            }
+        }
+
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            addPoint();
+        }
+    }
+
+    /**
+     * Add a single point to the source series.
+     *
+     * @return The source series, so the work can't be eliminated.
+     */
+    @Benchmark
+    public TimeSeries addPoint() {
+        time += spacing;
+        series.addPoint(time, values[next++ & (VALUE_COUNT - 1)]);
+
+        return series;
+    }
+}
@@ -0,0 +1,108 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.HistoryCursor;
+import com.chathandriehuys.sensordisplay.SampleHistory;
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the cost of keeping a compressed history, and of streaming it back out.
+ *
+ * Appends are reported per sample, so they can be compared with {@link IngestBenchmark}. Decoding
+ * is reported per pass over the whole history.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class HistoryBenchmark {
+    private static final int BATCH_SIZE = 100000;
+
+    /**
+     * The number of samples in the history.
+     */
+    @Param({"10000", "100000"})
+    public int historySize;
+
+    private float[] values;
+
+    private long[] timestamps;
+
+    private HistoryCursor cursor;
+
+    private SampleHistory history;
+
+    private TimeSeries series;
+
+    /**
+     * Create a series whose history holds the requested number of samples.
+     */
+    @Setup
+    public void setUp() {
+        series = new TimeSeries("Benchmark");
+        cursor = new HistoryCursor();
+
+        long spacing = Samples.spacingForWindow(series, 1000);
+
+        timestamps = Samples.timestamps(BATCH_SIZE, spacing);
+        values = Samples.values(BATCH_SIZE);
+
+        // The history keeps everything that is added, so each append seals blocks at a steady rate
+        history = series.keepHistory(Long.MAX_VALUE / 2);
+        series.addPoints(timestamps, values, 0, historySize);
+    }
+
+    /**
+     * Add a batch of points to a series that keeps a history.
+     *
+     * @return The number of samples in the history.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long add() {
+        long offset = timestamps[BATCH_SIZE - 1] + 1;
+
+        // Keep the timestamps increasing across invocations
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            timestamps[i] += offset;
+        }
+
+        series.addPoints(timestamps, values, 0, BATCH_SIZE);
+
+        return history.size();
+    }
+
+    /**
+     * Decode every sample in the history.
+     *
+     * @return The sum of the decoded values, so the decoding can't be optimized away.
+     */
+    @Benchmark
+    public float decode() {
+        float sum = 0;
+
+        history.seek(Long.MIN_VALUE, cursor);
+        while (cursor.next()) {
+            sum += cursor.getValue();
+        }
+
+        return sum;
+    }
+}
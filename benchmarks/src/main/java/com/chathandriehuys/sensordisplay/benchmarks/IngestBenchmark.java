@@ -0,0 +1,104 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the rate points can be added to a series that is already full.
+ *
+ * The series starts with a full window, so every added point also expires the oldest point. This
+ * is the steady state while a sensor is being plotted.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class IngestBenchmark {
+    private static final int BATCH_SIZE = 64;
+    private static final int VALUE_COUNT = 4096;
+
+    /**
+     * The number of points in the series' window.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int windowSize;
+
+    private float[] batchValues;
+    private float[] values;
+
+    private int next;
+
+    private long[] batchTimestamps;
+
+    private long spacing;
+    private long time;
+
+    private TimeSeries series;
+
+    /**
+     * Create a series with a full window.
+     */
+    @Setup
+    public void setUp() {
+        series = new TimeSeries("Benchmark");
+        spacing = Samples.spacingForWindow(series, windowSize);
+        values = Samples.values(VALUE_COUNT);
+
+        batchTimestamps = new long[BATCH_SIZE];
+        batchValues = new float[BATCH_SIZE];
+
+        for (int i = 0; i < windowSize; i++) {
+            addPoint();
+        }
+    }
+
+    /**
+     * Add a single point.
+     *
+     * @return The series, so the work can't be eliminated.
+     */
+    @Benchmark
+    public TimeSeries addPoint() {
+        time += spacing;
+        series.addPoint(time, values[next++ & (VALUE_COUNT - 1)]);
+
+        return series;
+    }
+
+    /**
+     * Add a batch of points, in the same way a batch of sensor events is delivered.
+     *
+     * @return The series, so the work can't be eliminated.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public TimeSeries addPoints() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            time += spacing;
+
+            batchTimestamps[i] = time;
+            batchValues[i] = values[next++ & (VALUE_COUNT - 1)];
+        }
+
+        series.addPoints(batchTimestamps, batchValues, 0, BATCH_SIZE);
+
+        return series;
+    }
+}
@@ -0,0 +1,122 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+
+/**
+ * A fixed-size histogram of latencies, for reading off percentiles.
+ *
+ * Latencies below 1024 ns are counted exactly. Larger latencies share buckets with others within
+ * about 0.2% of them, so every bucket needed is allocated up front and recording a latency never
+ * allocates.
+ */
+final class LatencyHistogram {
+    // Latencies below this are counted in a bucket of their own
+    private static final int EXACT_LIMIT = 1024;
+    private static final int EXACT_BITS = 10;
+
+    // Each power of two above the exact range is split into this many buckets
+    private static final int SUB_BUCKET_BITS = 9;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private long[] counts;
+
+    private long max;
+    private long total;
+
+    /**
+     * Create an empty histogram.
+     */
+    LatencyHistogram() {
+        counts = new long[EXACT_LIMIT + (Long.SIZE - EXACT_BITS) * SUB_BUCKETS];
+    }
+
+    /**
+     * Get the largest latency recorded.
+     *
+     * @return The largest latency, in nanoseconds.
+     */
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * Get a percentile of the recorded latencies.
+     *
+     * @param percentile The percentile to get, between 0 and 100.
+     *
+     * @return The smallest recorded latency that at least the given percentage of latencies are
+     *         no larger than, rounded down to its bucket, or 0 if nothing has been recorded.
+     */
+    long getPercentile(double percentile) {
+        long target = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if (seen >= target) {
+                return Math.min(getBucketStart(i), max);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Get the number of latencies recorded.
+     *
+     * @return The number of latencies recorded.
+     */
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Record a number of occurrences of a latency.
+     *
+     * @param latency The latency, in nanoseconds.
+     * @param count The number of times the latency occurred.
+     */
+    void record(long latency, long count) {
+        latency = Math.max(latency, 0);
+
+        counts[getBucket(latency)] += count;
+        total += count;
+        max = Math.max(max, latency);
+    }
+
+    /**
+     * Find the bucket a latency is counted in.
+     *
+     * @param latency The latency, in nanoseconds.
+     *
+     * @return The index of the latency's bucket.
+     */
+    private static int getBucket(long latency) {
+        if (latency < EXACT_LIMIT) {
+            return (int) latency;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(latency);
+        int subBucket = (int) (latency >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return EXACT_LIMIT + (exponent - EXACT_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get the smallest latency counted in a bucket.
+     *
+     * @param bucket The index of the bucket.
+     *
+     * @return The smallest latency in the bucket, in nanoseconds.
+     */
+    private static long getBucketStart(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+
+        int exponent = (bucket - EXACT_LIMIT) / SUB_BUCKETS + EXACT_BITS;
+        long subBucket = (bucket - EXACT_LIMIT) % SUB_BUCKETS;
+
+        return (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+    }
+}
@@ -0,0 +1,149 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.MultiChannelSeries;
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the rate three-axis samples can be added to a full window.
+ *
+ * The axes and their magnitude are either kept as channels of one {@link MultiChannelSeries},
+ * sharing a single column of timestamps, or as four independent series that each keep their own
+ * copy of the timestamps and expire separately.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class MultiChannelBenchmark {
+    private static final int AXIS_COUNT = 3;
+    private static final int BATCH_SIZE = 64;
+    private static final int VALUE_COUNT = 4096;
+
+    /**
+     * The number of samples in the series' window.
+     */
+    @Param({"1000", "100000"})
+    public int windowSize;
+
+    private float[] values;
+
+    private float[][] batchAxes;
+
+    private int next;
+
+    private long[] batchTimestamps;
+
+    private long spacing;
+    private long time;
+
+    private MultiChannelSeries channels;
+
+    private TimeSeries[] separateSeries;
+
+    /**
+     * Create the series with full windows.
+     */
+    @Setup
+    public void setUp() {
+        channels = new MultiChannelSeries("X", "Y", "Z");
+        channels.addMagnitudeChannel("Magnitude");
+
+        separateSeries = new TimeSeries[AXIS_COUNT + 1];
+        for (int i = 0; i < separateSeries.length; i++) {
+            separateSeries[i] = new TimeSeries("Series " + i);
+        }
+
+        spacing = Samples.spacingForWindow(separateSeries[0], windowSize);
+        values = Samples.values(VALUE_COUNT);
+
+        batchTimestamps = new long[BATCH_SIZE];
+        batchAxes = new float[AXIS_COUNT + 1][BATCH_SIZE];
+
+        for (int i = 0; i < windowSize; i += BATCH_SIZE) {
+            addChannels();
+        }
+
+        // Fill the separate series with the same samples
+        time = 0;
+        next = 0;
+
+        for (int i = 0; i < windowSize; i += BATCH_SIZE) {
+            addSeparateSeries();
+        }
+    }
+
+    /**
+     * Add a batch of samples to the channels of a single series.
+     *
+     * @return The series, so the work can't be eliminated.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public MultiChannelSeries addChannels() {
+        fillBatch();
+
+        channels.addPoints(batchTimestamps, batchAxes, 0, BATCH_SIZE);
+
+        return channels;
+    }
+
+    /**
+     * Add a batch of samples to a separate series for each axis, and one for the magnitude.
+     *
+     * @return The series, so the work can't be eliminated.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public TimeSeries[] addSeparateSeries() {
+        fillBatch();
+
+        // The magnitude is calculated per sample, as it would be without the channels
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            float sumOfSquares = 0;
+
+            for (int axis = 0; axis < AXIS_COUNT; axis++) {
+                sumOfSquares += batchAxes[axis][i] * batchAxes[axis][i];
+            }
+
+            batchAxes[AXIS_COUNT][i] = (float) Math.sqrt(sumOfSquares);
+        }
+
+        for (int i = 0; i < separateSeries.length; i++) {
+            separateSeries[i].addPoints(batchTimestamps, batchAxes[i], 0, BATCH_SIZE);
+        }
+
+        return separateSeries;
+    }
+
+    /**
+     * Fill the batch with the next samples.
+     */
+    private void fillBatch() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            time += spacing;
+            batchTimestamps[i] = time;
+
+            for (int axis = 0; axis < AXIS_COUNT; axis++) {
+                batchAxes[axis][i] = values[next++ & (VALUE_COUNT - 1)];
+            }
+        }
+    }
+}
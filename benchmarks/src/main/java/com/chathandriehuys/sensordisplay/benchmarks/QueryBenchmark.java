@@ -0,0 +1,133 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.FloatInterval;
+import com.chathandriehuys.sensordisplay.SeriesSlice;
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the cost of the queries made while drawing a series.
+ *
+ * These should all take constant or logarithmic time, regardless of how many points are read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class QueryBenchmark {
+    /**
+     * The number of points in the series' window.
+     */
+    @Param({"100", "1000", "10000", "100000"})
+    public int windowSize;
+
+    private FloatInterval range;
+
+    private long sliceEnd;
+    private long sliceStart;
+
+    private SeriesSlice slice;
+
+    private TimeSeries series;
+
+    /**
+     * Create a series with a full window.
+     */
+    @Setup
+    public void setUp() {
+        series = new TimeSeries("Benchmark");
+        range = new FloatInterval(0, 0);
+        slice = new SeriesSlice();
+
+        long spacing = Samples.spacingForWindow(series, windowSize);
+
+        // A period covering the middle half of the window
+        sliceStart = windowSize / 4 * spacing;
+        sliceEnd = 3 * windowSize / 4 * spacing;
+
+        series.addPoints(
+                Samples.timestamps(windowSize, spacing),
+                Samples.values(windowSize),
+                0,
+                windowSize);
+
+        // Build the order statistics up front, rather than in the first measured call
+        series.getMedian();
+    }
+
+    /**
+     * Get the series' average.
+     *
+     * @return The average.
+     */
+    @Benchmark
+    public float getAverage() {
+        return series.getAverage();
+    }
+
+    /**
+     * Get the series' excess kurtosis, which needs every accumulated moment.
+     *
+     * @return The excess kurtosis.
+     */
+    @Benchmark
+    public double getKurtosis() {
+        return series.getStatistics().getKurtosis();
+    }
+
+    /**
+     * Get the series' median from its order statistics.
+     *
+     * @return The median.
+     */
+    @Benchmark
+    public float getMedian() {
+        return series.getMedian();
+    }
+
+    /**
+     * Get the series' range.
+     *
+     * @return The maximum of the range.
+     */
+    @Benchmark
+    public float getRange() {
+        return series.getRange(range).getMax();
+    }
+
+    /**
+     * Find the points in a period of the series by binary search.
+     *
+     * @return The number of points in the period.
+     */
+    @Benchmark
+    public int getSlice() {
+        return series.getSlice(sliceStart, sliceEnd, slice).size();
+    }
+
+    /**
+     * Get the series' variance.
+     *
+     * @return The variance.
+     */
+    @Benchmark
+    public float getVariance() {
+        return series.getVariance();
+    }
+}
@@ -0,0 +1,307 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.SessionReader;
+import com.chathandriehuys.sensordisplay.Signal;
+import com.chathandriehuys.sensordisplay.Signals;
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+
+/**
+ * Feeds a recorded or synthetic stream through a series as fast as possible, with no UI.
+ *
+ * The series is set up the same way as the plot's series, with average and variance series
+ * derived from it. Only the calls that add points to the series are timed, and the report covers
+ * throughput, per-sample latency percentiles, allocation rate, and peak heap usage. Run it with:
+ *
+ * <pre>
+ * ./gradlew :benchmarks:replay -Preplay='--signal sine --rate 20000 --samples 50000000'
+ * </pre>
+ *
+ * The series' window is 5 seconds long, so the rate of a synthetic stream also sets the number of
+ * points in the window.
+ */
+public final class ReplayThroughput {
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final long DEFAULT_RATE = 200;
+    private static final long DEFAULT_SAMPLES = 10000000L;
+    private static final long DEFAULT_WARMUP = 1000000L;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private static final String USAGE = "Usage: ReplayThroughput"
+            + " (--session <directory> | --signal sine|steps|bursts) [--rate <Hz>]"
+            + " [--samples <count>] [--warmup <count>] [--batch <size>]";
+
+    private float[] values;
+
+    private int batchSize;
+
+    private long rate;
+    private long replayOffset;
+    private long replayPosition;
+    private long sampleCount;
+    private long warmupCount;
+
+    private long[] timestamps;
+
+    private SessionReader reader;
+
+    private Signal signal;
+
+    /**
+     * Create a tool from its command line arguments.
+     *
+     * @param args The command line arguments.
+     *
+     * @throws IOException If the session to replay can't be read.
+     */
+    private ReplayThroughput(String[] args) throws IOException {
+        batchSize = 1;
+        rate = DEFAULT_RATE;
+        sampleCount = DEFAULT_SAMPLES;
+        warmupCount = DEFAULT_WARMUP;
+
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing a value for " + args[i] + ".");
+            }
+
+            String name = args[i];
+            String value = args[++i];
+
+            if (name.equals("--batch")) {
+                batchSize = Integer.parseInt(value);
+            } else if (name.equals("--rate")) {
+                rate = Long.parseLong(value);
+            } else if (name.equals("--samples")) {
+                sampleCount = Long.parseLong(value);
+            } else if (name.equals("--session")) {
+                reader = new SessionReader(new File(value));
+            } else if (name.equals("--signal")) {
+                signal = createSignal(value);
+            } else if (name.equals("--warmup")) {
+                warmupCount = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option " + name + ".");
+            }
+        }
+
+        if ((reader == null) == (signal == null)) {
+            throw new IllegalArgumentException("Exactly one of a session or a signal is needed.");
+        }
+
+        if (reader != null && reader.size() == 0) {
+            throw new IllegalArgumentException("The session is empty.");
+        }
+
+        if (batchSize < 1 || batchSize > CHUNK_SIZE || rate < 1 || sampleCount < 1) {
+            throw new IllegalArgumentException("The batch size, rate, and sample count must be "
+                    + "positive, and batches can hold at most " + CHUNK_SIZE + " samples.");
+        }
+
+        timestamps = new long[CHUNK_SIZE];
+        values = new float[CHUNK_SIZE];
+    }
+
+    /**
+     * Run the tool.
+     *
+     * @param args The command line arguments.
+     *
+     * @throws IOException If the session to replay can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        ReplayThroughput tool;
+        try {
+            tool = new ReplayThroughput(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+
+            return;
+        }
+
+        tool.run();
+    }
+
+    /**
+     * Copy the next chunk of the stream into the sample buffers.
+     *
+     * Sessions are replayed from the start again once they run out, shifted so that timestamps
+     * keep increasing. Synthetic signals are sampled at exact intervals.
+     *
+     * @param stream The number of samples already taken from the stream.
+     *
+     * @return The number of samples in the chunk.
+     */
+    private int fill(long stream) {
+        if (signal != null) {
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                long time = (stream + i) * NANOS_PER_SECOND / rate;
+
+                timestamps[i] = time;
+                values[i] = signal.getValue(time);
+            }
+
+            return CHUNK_SIZE;
+        }
+
+        if (replayPosition == reader.size()) {
+            // Leave the same gap between the end of the session and its repeat as at its start
+            long duration = reader.getTimestamp(reader.size() - 1) - reader.getTimestamp(0);
+            replayOffset += duration + NANOS_PER_SECOND / rate;
+            replayPosition = 0;
+        }
+
+        int count = reader.read(replayPosition, timestamps, values);
+        for (int i = 0; i < count; i++) {
+            timestamps[i] += replayOffset;
+        }
+
+        replayPosition += count;
+
+        return count;
+    }
+
+    /**
+     * Feed samples through a series.
+     *
+     * @param series The series to add the samples to.
+     * @param start The number of samples already taken from the stream.
+     * @param count The number of samples to feed.
+     * @param latencies The histogram to record latencies in, or null to not record them.
+     */
+    private void feed(TimeSeries series, long start, long count, LatencyHistogram latencies) {
+        long fed = 0;
+
+        while (fed < count) {
+            int chunk = (int) Math.min(fill(start + fed), count - fed);
+
+            for (int offset = 0; offset < chunk; offset += batchSize) {
+                int batch = Math.min(batchSize, chunk - offset);
+
+                long begin = System.nanoTime();
+                if (batch == 1) {
+                    series.addPoint(timestamps[offset], values[offset]);
+                } else {
+                    series.addPoints(timestamps, values, offset, batch);
+                }
+                long end = System.nanoTime();
+
+                // Every sample in a batch is charged an equal share of the batch's time
+                if (latencies != null) {
+                    latencies.record((end - begin) / batch, batch);
+                }
+            }
+
+            fed += chunk;
+        }
+    }
+
+    /**
+     * Feed the stream through a series and print a report of the results.
+     */
+    private void run() {
+        TimeSeries series = new TimeSeries("Replay");
+        series.getAverageSeries();
+        series.getVarianceSeries();
+
+        // Let the JIT compile the ingest path before anything is measured
+        feed(series, 0, warmupCount, null);
+
+        LatencyHistogram latencies = new LatencyHistogram();
+
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        for (MemoryPoolMXBean pool : pools) {
+            pool.resetPeakUsage();
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = getAllocatedBytes(threads);
+
+        long start = System.nanoTime();
+        feed(series, warmupCount, sampleCount, latencies);
+        long elapsed = System.nanoTime() - start;
+
+        long allocated = allocatedBefore < 0 ? -1 : getAllocatedBytes(threads) - allocatedBefore;
+
+        // The pools peak at different times, so their sum is an upper bound on the peak
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        double seconds = elapsed / (double) NANOS_PER_SECOND;
+
+        System.out.println(String.format("Samples:        %d (batches of %d)",
+                sampleCount, batchSize));
+        System.out.println(String.format("Window:         %d points", series.size()));
+        System.out.println(String.format("Throughput:     %.0f samples/s",
+                sampleCount / seconds));
+        System.out.println(String.format("Latency (ns):   p50 %d, p90 %d, p99 %d, p99.9 %d, max %d",
+                latencies.getPercentile(50),
+                latencies.getPercentile(90),
+                latencies.getPercentile(99),
+                latencies.getPercentile(99.9),
+                latencies.getMax()));
+
+        if (allocated >= 0) {
+            System.out.println(String.format("Allocation:     %.1f MB/s, %.2f bytes/sample",
+                    allocated / BYTES_PER_MEGABYTE / seconds,
+                    allocated / (double) sampleCount));
+        } else {
+            System.out.println("Allocation:     not supported by this JVM");
+        }
+
+        System.out.println(String.format("Peak heap:      %.1f MB",
+                peakHeap / BYTES_PER_MEGABYTE));
+    }
+
+    /**
+     * Create a synthetic signal by name.
+     *
+     * @param name The name of the signal.
+     *
+     * @return The signal.
+     */
+    private static Signal createSignal(String name) {
+        if (name.equals("sine")) {
+            return Signals.sine(0.5, 2, 9.81f, 0.1f);
+        } else if (name.equals("steps")) {
+            return Signals.steps(2 * NANOS_PER_SECOND, 5, 15, 0.1f);
+        } else if (name.equals("bursts")) {
+            return Signals.bursts(5 * NANOS_PER_SECOND, NANOS_PER_SECOND, 9.81f, 4, 0.05f);
+        }
+
+        throw new IllegalArgumentException("Unknown signal " + name + ".");
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far.
+     *
+     * @param threads The JVM's thread bean.
+     *
+     * @return The number of bytes allocated, or -1 if the JVM doesn't track allocations.
+     */
+    private static long getAllocatedBytes(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,65 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.TimeSeries;
+
+import java.util.Random;
+
+
+/**
+ * Generates the sample data fed to the benchmarks.
+ *
+ * Every benchmark uses the same seeded data, so results are comparable between runs.
+ */
+final class Samples {
+    private static final long SEED = 42;
+
+    private Samples() {}
+
+    /**
+     * Generate evenly spaced timestamps.
+     *
+     * @param count The number of timestamps to generate.
+     * @param spacing The time between consecutive timestamps, in nanoseconds.
+     *
+     * @return The generated timestamps, starting at the given spacing.
+     */
+    static long[] timestamps(int count, long spacing) {
+        long[] timestamps = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = (i + 1) * spacing;
+        }
+
+        return timestamps;
+    }
+
+    /**
+     * Generate values that look like a noisy sensor reading.
+     *
+     * @param count The number of values to generate.
+     *
+     * @return The generated values.
+     */
+    static float[] values(int count) {
+        Random random = new Random(SEED);
+        float[] values = new float[count];
+
+        for (int i = 0; i < count; i++) {
+            values[i] = 9.81f + (float) Math.sin(i / 100.0) + (float) random.nextGaussian() * 0.1f;
+        }
+
+        return values;
+    }
+
+    /**
+     * Get the time between samples that fills a series' window with a given number of points.
+     *
+     * @param series The series that will hold the points.
+     * @param windowSize The number of points that should be in the window.
+     *
+     * @return The time between samples, in nanoseconds.
+     */
+    static long spacingForWindow(TimeSeries series, int windowSize) {
+        return series.getDomain().getMax() / windowSize;
+    }
+}
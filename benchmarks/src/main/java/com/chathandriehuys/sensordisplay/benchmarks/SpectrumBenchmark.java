@@ -0,0 +1,85 @@
+package com.chathandriehuys.sensordisplay.benchmarks;
+
+import com.chathandriehuys.sensordisplay.SpectrumAnalyzer;
+import com.chathandriehuys.sensordisplay.WindowFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures the cost of calculating a signal's spectrum as it arrives.
+ *
+ * The cost is reported per sample, including each sample's share of the frames it is analyzed in,
+ * so it can be compared with {@link IngestBenchmark}. Each frame overlaps the previous one by
+ * three quarters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+public class SpectrumBenchmark {
+    private static final int BATCH_SIZE = 100000;
+
+    /**
+     * The number of samples in each frame.
+     */
+    @Param({"256", "1024"})
+    public int frameSize;
+
+    /**
+     * The window each frame is tapered with.
+     */
+    @Param({"RECTANGULAR", "HANN"})
+    public WindowFunction window;
+
+    private float[] values;
+
+    private long[] timestamps;
+
+    private long offset;
+
+    private SpectrumAnalyzer analyzer;
+
+    /**
+     * Create an analyzer, and the samples to feed it.
+     */
+    @Setup
+    public void setUp() {
+        analyzer = new SpectrumAnalyzer(frameSize, frameSize / 4, window);
+
+        timestamps = Samples.timestamps(BATCH_SIZE, 1000000);
+        values = Samples.values(BATCH_SIZE);
+    }
+
+    /**
+     * Feed a batch of samples to the analyzer.
+     *
+     * @return The number of frames that have been analyzed.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long analyze() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            analyzer.visit(offset + timestamps[i], values[i]);
+        }
+
+        offset += timestamps[BATCH_SIZE - 1] + 1;
+
+        return analyzer.getSeries().getFrameCount();
+    }
+}
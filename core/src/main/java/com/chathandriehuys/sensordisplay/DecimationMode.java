@@ -0,0 +1,24 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * The ways a dense series can be reduced before it is plotted.
+ */
+public enum DecimationMode {
+    /**
+     * Plot every point in the series.
+     */
+    NONE,
+
+    /**
+     * Keep the first, last, smallest, and largest point in each pixel column. This preserves every
+     * peak in the series.
+     */
+    MIN_MAX,
+
+    /**
+     * Keep a single point per pixel column, chosen using the Largest-Triangle-Three-Buckets
+     * algorithm. This gives a smoother line that still follows the shape of the series.
+     */
+    LTTB
+}
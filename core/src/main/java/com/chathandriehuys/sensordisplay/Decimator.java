@@ -0,0 +1,599 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * Reduces a series to a few points per pixel column for plotting.
+ *
+ * The decimator listens to a series and sorts each new point into a bucket covering a fixed slice
+ * of time, typically the width of one pixel column. Each bucket keeps its first, last, smallest,
+ * and largest point along with the mean of its points, so the buckets are maintained in constant
+ * time per point and the cost of producing the plotted points depends only on the number of
+ * buckets, not on the sampling rate of the series.
+ *
+ * Buckets are aligned to multiples of the bucket width rather than to the current time, so a
+ * bucket's contents never change once newer points start arriving in the next bucket. The oldest
+ * bucket may still contain points that have already expired from the series.
+ *
+ * Because of that alignment, widening the buckets to a multiple of their current width only has to
+ * merge neighbouring buckets, which costs one pass over the buckets rather than over the points of
+ * the series. Plots that zoom can keep to widths that are powers of two so that zooming out never
+ * has to go back to the series.
+ */
+public class Decimator implements TimeSeriesListener {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private DecimationMode mode;
+
+    private TimeSeries series;
+
+    private long bucketWidth;
+
+    private int head;
+    private int mask;
+    private int size;
+
+    // Bucket contents, stored as parallel arrays in a ring buffer
+    private long[] indices;
+    private long[] firstTimes, lastTimes, minTimes, maxTimes;
+    private float[] firstValues, lastValues, minValues, maxValues;
+    private double[] timeSums, valueSums;
+    private int[] counts;
+
+    /**
+     * Create a decimator for a series.
+     *
+     * The decimator is registered as a listener on the series, but does not do any work until a
+     * bucket width is set.
+     *
+     * @param series The series to decimate.
+     * @param mode The method used to choose which points to plot.
+     */
+    public Decimator(TimeSeries series, DecimationMode mode) {
+        this.series = series;
+        this.mode = mode;
+
+        allocate(INITIAL_CAPACITY);
+
+        series.addListener(this);
+    }
+
+    /**
+     * Get the amount of time covered by each bucket.
+     *
+     * @return The width of each bucket, in nanoseconds, or 0 if no width has been set.
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Get the method used to choose which points to plot.
+     *
+     * @return The decimator's mode.
+     */
+    public DecimationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the largest number of points that {@link #getPoints(long, long[], float[])} can return.
+     *
+     * @return The maximum number of points the decimator can produce.
+     */
+    public int getMaxPointCount() {
+        return 4 * size;
+    }
+
+    /**
+     * Get the decimated points of the series.
+     *
+     * @param oldest The timestamp of the oldest point that should be plotted. Buckets that end
+     *               before this time are skipped.
+     * @param timestamps The array to write the points' timestamps to. This must be able to hold
+     *                   {@link #getMaxPointCount()} points.
+     * @param values The array to write the points' values to. This must be able to hold
+     *               {@link #getMaxPointCount()} points.
+     *
+     * @return The number of points written, in chronological order.
+     */
+    public int getPoints(long oldest, long[] timestamps, float[] values) {
+        return getPoints(oldest, Long.MAX_VALUE, timestamps, values);
+    }
+
+    /**
+     * Get the decimated points of the series that fall within a period of time.
+     *
+     * The buckets overlapping the period are found by binary search, so only those buckets are
+     * read.
+     *
+     * @param oldest The timestamp of the oldest point that should be plotted. Buckets that end
+     *               before this time are skipped.
+     * @param newest The timestamp of the newest point that should be plotted. Buckets that start
+     *               after this time are skipped.
+     * @param timestamps The array to write the points' timestamps to. This must be able to hold
+     *                   {@link #getMaxPointCount()} points.
+     * @param values The array to write the points' values to. This must be able to hold
+     *               {@link #getMaxPointCount()} points.
+     *
+     * @return The number of points written, in chronological order.
+     */
+    public int getPoints(long oldest, long newest, long[] timestamps, float[] values) {
+        if (size == 0) {
+            return 0;
+        }
+
+        int start = countBuckets(oldest / bucketWidth - 1);
+        int end = countBuckets(newest / bucketWidth);
+
+        if (mode == DecimationMode.LTTB) {
+            return getTrianglePoints(start, end, timestamps, values);
+        }
+
+        return getMinMaxPoints(start, end, timestamps, values);
+    }
+
+    /**
+     * Add a point from the series to its bucket.
+     *
+     * @param series The series the point was added to.
+     * @param timestamp The timestamp of the point added to the series.
+     * @param value The value of the point added to the series.
+     */
+    @Override
+    public void pointAdded(TimeSeries series, long timestamp, float value) {
+        if (bucketWidth == 0) {
+            return;
+        }
+
+        add(timestamp, value);
+        removeExpiredBuckets();
+    }
+
+    /**
+     * Add a batch of points from the series to their buckets.
+     *
+     * @param series The series the points were added to.
+     * @param timestamps The timestamps of the points added to the series.
+     * @param values The values of the points added to the series.
+     * @param offset The index in the arrays of the first point that was added.
+     * @param count The number of points that were added.
+     */
+    @Override
+    public void pointsAdded(
+            TimeSeries series,
+            long[] timestamps,
+            float[] values,
+            int offset,
+            int count) {
+        if (bucketWidth == 0) {
+            return;
+        }
+
+        for (int i = offset; i < offset + count; i++) {
+            add(timestamps[i], values[i]);
+        }
+
+        removeExpiredBuckets();
+    }
+
+    /**
+     * Set the amount of time covered by each bucket.
+     *
+     * If the new width is a multiple of the current width, the existing buckets are merged into
+     * the wider ones. Otherwise, the buckets are rebuilt from the points currently in the series.
+     *
+     * @param bucketWidth The width of each bucket, in nanoseconds.
+     */
+    public void setBucketWidth(long bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("The bucket width must be positive.");
+        }
+
+        if (bucketWidth == this.bucketWidth) {
+            return;
+        }
+
+        if (this.bucketWidth > 0 && bucketWidth % this.bucketWidth == 0) {
+            merge(bucketWidth);
+
+            return;
+        }
+
+        this.bucketWidth = bucketWidth;
+
+        head = 0;
+        size = 0;
+
+        for (int i = 0; i < series.size(); i++) {
+            add(series.getTimestamp(i), series.getValue(i));
+        }
+    }
+
+    /**
+     * Add a point to the bucket covering its timestamp.
+     *
+     * Points must be added in chronological order.
+     *
+     * @param timestamp The point's timestamp.
+     * @param value The point's value.
+     */
+    private void add(long timestamp, float value) {
+        long index = timestamp / bucketWidth;
+
+        if (size > 0 && indices[slot(size - 1)] == index) {
+            int slot = slot(size - 1);
+
+            lastTimes[slot] = timestamp;
+            lastValues[slot] = value;
+
+            if (value < minValues[slot]) {
+                minTimes[slot] = timestamp;
+                minValues[slot] = value;
+            }
+
+            if (value > maxValues[slot]) {
+                maxTimes[slot] = timestamp;
+                maxValues[slot] = value;
+            }
+
+            timeSums[slot] += timestamp - index * bucketWidth;
+            valueSums[slot] += value;
+            counts[slot]++;
+
+            return;
+        }
+
+        if (size == indices.length) {
+            grow();
+        }
+
+        int slot = slot(size);
+        size++;
+
+        indices[slot] = index;
+
+        firstTimes[slot] = lastTimes[slot] = minTimes[slot] = maxTimes[slot] = timestamp;
+        firstValues[slot] = lastValues[slot] = minValues[slot] = maxValues[slot] = value;
+
+        timeSums[slot] = timestamp - index * bucketWidth;
+        valueSums[slot] = value;
+        counts[slot] = 1;
+    }
+
+    /**
+     * Allocate the arrays used to store buckets.
+     *
+     * @param capacity The number of buckets to allocate space for. This must be a power of two.
+     */
+    private void allocate(int capacity) {
+        indices = new long[capacity];
+
+        firstTimes = new long[capacity];
+        lastTimes = new long[capacity];
+        minTimes = new long[capacity];
+        maxTimes = new long[capacity];
+
+        firstValues = new float[capacity];
+        lastValues = new float[capacity];
+        minValues = new float[capacity];
+        maxValues = new float[capacity];
+
+        timeSums = new double[capacity];
+        valueSums = new double[capacity];
+        counts = new int[capacity];
+
+        mask = capacity - 1;
+    }
+
+    /**
+     * Count the buckets up to and including a given bucket index.
+     *
+     * @param index The index of the last bucket to count, as a multiple of the bucket width.
+     *
+     * @return The number of buckets with an index no larger than the given index.
+     */
+    private int countBuckets(long index) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (indices[slot(middle)] <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Write a point to the output arrays unless it is the same as the previous point.
+     *
+     * @param timestamps The array to write the point's timestamp to.
+     * @param values The array to write the point's value to.
+     * @param count The number of points already written.
+     * @param timestamp The point's timestamp.
+     * @param value The point's value.
+     *
+     * @return The number of points written after this point.
+     */
+    private static int emit(
+            long[] timestamps,
+            float[] values,
+            int count,
+            long timestamp,
+            float value) {
+        if (count > 0 && timestamps[count - 1] == timestamp) {
+            return count;
+        }
+
+        timestamps[count] = timestamp;
+        values[count] = value;
+
+        return count + 1;
+    }
+
+    /**
+     * Emit up to four points per bucket: the first, smallest, largest, and last point.
+     *
+     * @param start The position of the first bucket to emit.
+     * @param end The position after the last bucket to emit.
+     * @param timestamps The array to write the points' timestamps to.
+     * @param values The array to write the points' values to.
+     *
+     * @return The number of points written.
+     */
+    private int getMinMaxPoints(int start, int end, long[] timestamps, float[] values) {
+        int count = 0;
+
+        for (int i = start; i < end; i++) {
+            int slot = slot(i);
+
+            count = emit(timestamps, values, count, firstTimes[slot], firstValues[slot]);
+
+            // The extremes are emitted in the order they occurred
+            if (minTimes[slot] <= maxTimes[slot]) {
+                count = emit(timestamps, values, count, minTimes[slot], minValues[slot]);
+                count = emit(timestamps, values, count, maxTimes[slot], maxValues[slot]);
+            } else {
+                count = emit(timestamps, values, count, maxTimes[slot], maxValues[slot]);
+                count = emit(timestamps, values, count, minTimes[slot], minValues[slot]);
+            }
+
+            count = emit(timestamps, values, count, lastTimes[slot], lastValues[slot]);
+        }
+
+        return count;
+    }
+
+    /**
+     * Emit one point per bucket using the Largest-Triangle-Three-Buckets algorithm.
+     *
+     * The first point of the first bucket and the last point of the last bucket are always kept.
+     * For every other bucket, the point that forms the largest triangle with the previously chosen
+     * point and the mean of the next bucket is kept. Only each bucket's first, last, smallest, and
+     * largest points are considered, which keeps the work per bucket constant.
+     *
+     * @param start The position of the first bucket to emit.
+     * @param end The position after the last bucket to emit.
+     * @param timestamps The array to write the points' timestamps to.
+     * @param values The array to write the points' values to.
+     *
+     * @return The number of points written.
+     */
+    private int getTrianglePoints(int start, int end, long[] timestamps, float[] values) {
+        if (start >= end) {
+            return 0;
+        }
+
+        int firstSlot = slot(start);
+        int count = emit(timestamps, values, 0, firstTimes[firstSlot], firstValues[firstSlot]);
+
+        for (int i = start; i < end - 1; i++) {
+            int slot = slot(i);
+            int next = slot(i + 1);
+
+            // Work relative to the previous point so the timestamps fit in a float
+            long origin = timestamps[count - 1];
+            float originValue = values[count - 1];
+
+            float nextTime = (float) (indices[next] * bucketWidth - origin
+                    + timeSums[next] / counts[next]);
+            float nextValue = (float) (valueSums[next] / counts[next] - originValue);
+
+            long bestTime = firstTimes[slot];
+            float bestValue = firstValues[slot];
+            float bestArea = triangleArea(
+                    bestTime - origin,
+                    bestValue - originValue,
+                    nextTime,
+                    nextValue);
+
+            float area = triangleArea(
+                    minTimes[slot] - origin,
+                    minValues[slot] - originValue,
+                    nextTime,
+                    nextValue);
+            if (area > bestArea) {
+                bestArea = area;
+                bestTime = minTimes[slot];
+                bestValue = minValues[slot];
+            }
+
+            area = triangleArea(
+                    maxTimes[slot] - origin,
+                    maxValues[slot] - originValue,
+                    nextTime,
+                    nextValue);
+            if (area > bestArea) {
+                bestArea = area;
+                bestTime = maxTimes[slot];
+                bestValue = maxValues[slot];
+            }
+
+            area = triangleArea(
+                    lastTimes[slot] - origin,
+                    lastValues[slot] - originValue,
+                    nextTime,
+                    nextValue);
+            if (area > bestArea) {
+                bestTime = lastTimes[slot];
+                bestValue = lastValues[slot];
+            }
+
+            count = emit(timestamps, values, count, bestTime, bestValue);
+        }
+
+        int lastSlot = slot(end - 1);
+
+        return emit(timestamps, values, count, lastTimes[lastSlot], lastValues[lastSlot]);
+    }
+
+    /**
+     * Double the number of buckets that can be stored.
+     */
+    private void grow() {
+        long[] oldIndices = indices;
+        long[] oldFirstTimes = firstTimes, oldLastTimes = lastTimes;
+        long[] oldMinTimes = minTimes, oldMaxTimes = maxTimes;
+        float[] oldFirstValues = firstValues, oldLastValues = lastValues;
+        float[] oldMinValues = minValues, oldMaxValues = maxValues;
+        double[] oldTimeSums = timeSums, oldValueSums = valueSums;
+        int[] oldCounts = counts;
+        int oldMask = mask;
+
+        allocate(indices.length * 2);
+
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) & oldMask;
+
+            indices[i] = oldIndices[from];
+            firstTimes[i] = oldFirstTimes[from];
+            lastTimes[i] = oldLastTimes[from];
+            minTimes[i] = oldMinTimes[from];
+            maxTimes[i] = oldMaxTimes[from];
+            firstValues[i] = oldFirstValues[from];
+            lastValues[i] = oldLastValues[from];
+            minValues[i] = oldMinValues[from];
+            maxValues[i] = oldMaxValues[from];
+            timeSums[i] = oldTimeSums[from];
+            valueSums[i] = oldValueSums[from];
+            counts[i] = oldCounts[from];
+        }
+
+        head = 0;
+    }
+
+    /**
+     * Merge the buckets into wider buckets.
+     *
+     * Each wider bucket is made up of whole buckets of the current width, so merging them gives
+     * exactly the buckets that would be built from the same points. The buckets are merged in
+     * place, from oldest to newest.
+     *
+     * @param width The new bucket width, which must be a multiple of the current width.
+     */
+    private void merge(long width) {
+        long factor = width / bucketWidth;
+        int merged = 0;
+
+        for (int i = 0; i < size; i++) {
+            int from = slot(i);
+            long index = indices[from] / factor;
+
+            // Time sums are relative to the start of their bucket, which moves back
+            double timeSum = timeSums[from]
+                    + counts[from] * (double) (indices[from] * bucketWidth - index * width);
+
+            if (merged > 0 && indices[slot(merged - 1)] == index) {
+                int to = slot(merged - 1);
+
+                lastTimes[to] = lastTimes[from];
+                lastValues[to] = lastValues[from];
+
+                // Ties go to the earlier point, the same as when points are added
+                if (minValues[from] < minValues[to]) {
+                    minTimes[to] = minTimes[from];
+                    minValues[to] = minValues[from];
+                }
+
+                if (maxValues[from] > maxValues[to]) {
+                    maxTimes[to] = maxTimes[from];
+                    maxValues[to] = maxValues[from];
+                }
+
+                timeSums[to] += timeSum;
+                valueSums[to] += valueSums[from];
+                counts[to] += counts[from];
+
+                continue;
+            }
+
+            int to = slot(merged);
+            merged++;
+
+            indices[to] = index;
+            firstTimes[to] = firstTimes[from];
+            lastTimes[to] = lastTimes[from];
+            minTimes[to] = minTimes[from];
+            maxTimes[to] = maxTimes[from];
+            firstValues[to] = firstValues[from];
+            lastValues[to] = lastValues[from];
+            minValues[to] = minValues[from];
+            maxValues[to] = maxValues[from];
+            timeSums[to] = timeSum;
+            valueSums[to] = valueSums[from];
+            counts[to] = counts[from];
+        }
+
+        size = merged;
+        bucketWidth = width;
+    }
+
+    /**
+     * Drop the buckets that only contain points which have expired from the series.
+     */
+    private void removeExpiredBuckets() {
+        if (series.size() == 0) {
+            head = 0;
+            size = 0;
+
+            return;
+        }
+
+        long oldestIndex = series.getTimestamp(0) / bucketWidth;
+
+        while (size > 0 && indices[head] < oldestIndex) {
+            head = (head + 1) & mask;
+            size--;
+        }
+    }
+
+    /**
+     * Get the array slot of a bucket.
+     *
+     * @param position The position of the bucket, where 0 is the oldest bucket.
+     *
+     * @return The index of the bucket in the storage arrays.
+     */
+    private int slot(int position) {
+        return (head + position) & mask;
+    }
+
+    /**
+     * Calculate twice the area of a triangle with one corner at the origin.
+     *
+     * @param x1 The x-coordinate of the second corner.
+     * @param y1 The y-coordinate of the second corner.
+     * @param x2 The x-coordinate of the third corner.
+     * @param y2 The y-coordinate of the third corner.
+     *
+     * @return Twice the area of the triangle.
+     */
+    private static float triangleArea(float x1, float y1, float x2, float y2) {
+        return Math.abs(x1 * y2 - x2 * y1);
+    }
+}
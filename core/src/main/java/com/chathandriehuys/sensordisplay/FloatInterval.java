@@ -0,0 +1,88 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A mutable interval of float values.
+ *
+ * This is intended to be used to represent the domain or range of a series. The bounds are stored
+ * as primitives and can be updated in place, so an interval can be reused to hold a new domain or
+ * range without allocating or boxing.
+ */
+public class FloatInterval {
+    private float min, max;
+
+    /**
+     * Create a new interval.
+     *
+     * @param min The interval's minimum value.
+     * @param max The interval's maximum value.
+     */
+    public FloatInterval(float min, float max) {
+        set(min, max);
+    }
+
+    /**
+     * Determine if another interval has the same bounds as this one.
+     *
+     * @param other The interval to compare to.
+     *
+     * @return A boolean indicating if both intervals have the same minimum and maximum.
+     */
+    public boolean boundsEqual(FloatInterval other) {
+        return min == other.min && max == other.max;
+    }
+
+    /**
+     * Widen the interval by the same amount on both sides.
+     *
+     * @param amount The amount to lower the minimum and raise the maximum by.
+     */
+    public void expand(float amount) {
+        min -= amount;
+        max += amount;
+    }
+
+    /**
+     * Get the interval's maximum value.
+     *
+     * @return The interval's maximum value.
+     */
+    public float getMax() { return max; }
+
+    /**
+     * Get the interval's minimum value.
+     *
+     * @return The interval's minimum value.
+     */
+    public float getMin() { return min; }
+
+    /**
+     * Set the interval's bounds.
+     *
+     * @param min The interval's new minimum value.
+     * @param max The interval's new maximum value.
+     */
+    public void set(float min, float max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Copy the bounds of another interval.
+     *
+     * @param other The interval to copy.
+     */
+    public void set(FloatInterval other) {
+        set(other.min, other.max);
+    }
+
+    /**
+     * Expand the interval to also cover another interval.
+     *
+     * @param other The interval to include.
+     */
+    public void union(FloatInterval other) {
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+}
@@ -0,0 +1,244 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A streaming reader for the samples in a {@link SampleHistory}.
+ *
+ * Compressed blocks are decoded one sample at a time as the cursor moves forward, so reading a
+ * period of history never decompresses more than it reads, and never allocates. A cursor can be
+ * reused for any number of reads, but only stays valid until the next sample is added to its
+ * history.
+ *
+ * <pre>
+ * history.seek(from, cursor);
+ * while (cursor.next() &amp;&amp; cursor.getTimestamp() &lt;= to) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @see SampleHistory#seek(long, HistoryCursor)
+ */
+public class HistoryCursor {
+    private boolean buffered;
+
+    private float value;
+
+    private int blockIndex;
+    private int headIndex;
+    private int position;
+    private int previousLeading;
+    private int previousTrailing;
+    private int remaining;
+    private int valueBits;
+
+    private long delta;
+    private long timestamp;
+
+    private long[] words;
+
+    private SampleBlock block;
+
+    private SampleHistory history;
+
+    /**
+     * Create a cursor that isn't positioned in any history yet.
+     */
+    public HistoryCursor() {
+        history = null;
+    }
+
+    /**
+     * Get the timestamp of the sample the cursor is on.
+     *
+     * @return The current sample's timestamp, in nanoseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the value of the sample the cursor is on.
+     *
+     * @return The current sample's value.
+     */
+    public float getValue() {
+        return value;
+    }
+
+    /**
+     * Move to the next sample.
+     *
+     * @return A boolean indicating if there was another sample. Once this returns false, the
+     *         cursor stays at the end of the history.
+     */
+    public boolean next() {
+        if (buffered) {
+            buffered = false;
+
+            return true;
+        }
+
+        return advance();
+    }
+
+    /**
+     * Position the cursor before the first sample at or after a given time.
+     *
+     * @param history The history to read.
+     * @param blockIndex The index of the first block that could hold the sample.
+     * @param from The time to seek to, in nanoseconds.
+     */
+    void seek(SampleHistory history, int blockIndex, long from) {
+        this.history = history;
+
+        buffered = false;
+        moveToBlock(blockIndex);
+
+        // Decode forwards through the first block to the requested time
+        while (advance()) {
+            if (timestamp >= from) {
+                buffered = true;
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decode the next sample.
+     *
+     * @return A boolean indicating if there was another sample.
+     */
+    private boolean advance() {
+        if (history == null) {
+            return false;
+        }
+
+        while (block != null) {
+            if (remaining > 0) {
+                decodeNext();
+
+                return true;
+            }
+
+            moveToBlock(blockIndex + 1);
+        }
+
+        // The uncompressed head block follows the sealed blocks
+        if (headIndex < history.getHeadCount()) {
+            timestamp = history.getHeadTimestamp(headIndex);
+            value = history.getHeadValue(headIndex);
+            headIndex++;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Decode the next sample from the current compressed block.
+     */
+    private void decodeNext() {
+        if (remaining == block.getCount()) {
+            timestamp = block.getFirstTimestamp();
+            valueBits = (int) readBits(32);
+
+            delta = 0;
+            previousLeading = -1;
+        } else {
+            delta += readDeltaOfDelta();
+            timestamp += delta;
+
+            if (readBits(1) != 0) {
+                int xor;
+
+                if (readBits(1) == 0) {
+                    int length = 32 - previousLeading - previousTrailing;
+                    xor = (int) readBits(length) << previousTrailing;
+                } else {
+                    int leading = (int) readBits(SampleBlock.LEADING_ZERO_BITS);
+                    int length = (int) readBits(SampleBlock.LENGTH_BITS) + 1;
+                    int trailing = 32 - leading - length;
+
+                    xor = (int) readBits(length) << trailing;
+
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+
+                valueBits ^= xor;
+            }
+        }
+
+        value = Float.intBitsToFloat(valueBits);
+        remaining--;
+    }
+
+    /**
+     * Start reading a block.
+     *
+     * @param index The index of the block. Indices past the last sealed block move to the head.
+     */
+    private void moveToBlock(int index) {
+        blockIndex = index;
+        headIndex = 0;
+
+        if (index < history.getBlockCount()) {
+            block = history.getBlock(index);
+            words = block.getWords();
+            position = 0;
+            remaining = block.getCount();
+        } else {
+            block = null;
+            words = null;
+        }
+    }
+
+    /**
+     * Read bits from the current block's bit stream.
+     *
+     * @param bits The number of bits to read, between 1 and 64.
+     *
+     * @return The bits, in the lowest bits of the result.
+     */
+    private long readBits(int bits) {
+        int word = position >>> 6;
+        int offset = position & 63;
+        int free = 64 - offset;
+
+        long result = (words[word] << offset) >>> (64 - bits);
+        if (bits > free) {
+            result |= words[word + 1] >>> (64 - (bits - free));
+        }
+
+        position += bits;
+
+        return result;
+    }
+
+    /**
+     * Read a timestamp's delta of delta from the current block's bit stream.
+     *
+     * @return The change in the time between samples.
+     */
+    private long readDeltaOfDelta() {
+        if (readBits(1) == 0) {
+            return 0;
+        }
+
+        int bits;
+        if (readBits(1) == 0) {
+            bits = SampleBlock.BUCKET_BITS_0;
+        } else if (readBits(1) == 0) {
+            bits = SampleBlock.BUCKET_BITS_1;
+        } else if (readBits(1) == 0) {
+            bits = SampleBlock.BUCKET_BITS_2;
+        } else {
+            bits = 64;
+        }
+
+        // Sign-extend the field
+        return (readBits(bits) << (64 - bits)) >> (64 - bits);
+    }
+}
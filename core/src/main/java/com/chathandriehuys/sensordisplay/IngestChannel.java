@@ -0,0 +1,204 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+
+/**
+ * The path from one sensor source into its series, inside an {@link IngestEngine}.
+ *
+ * The source offers each sample to a bounded {@link SampleQueue} on its own thread. Whenever the
+ * queue becomes non-empty, a drain is submitted to the engine's executor, which moves everything
+ * in the queue into the series in bulk. At most one drain per channel runs at a time, so the
+ * series only ever has a single writer, even when the executor is a pool of threads. Each batch is
+ * added while holding the series' lock, so the series can be read on other threads under the same
+ * lock while the channel is running.
+ *
+ * If drains fall behind the source, the queue fills up and new samples are dropped and counted,
+ * rather than the source being blocked. The counts are the channel's back-pressure figures.
+ */
+public class IngestChannel {
+    private static final int DRAIN_BATCH_SIZE = 1024;
+
+    private AtomicBoolean drainScheduled;
+
+    private Executor executor;
+
+    private float[] drainedValues;
+
+    private volatile long ingestedCount;
+    private volatile long receivedCount;
+
+    private long[] drainedTimestamps;
+
+    private Runnable drain;
+
+    private SampleQueue queue;
+
+    private SampleVisitor consumer;
+
+    private SensorSource source;
+
+    private TimeSeries series;
+
+    /**
+     * Create a channel from a source into a series.
+     *
+     * @param source The source of the channel's samples.
+     * @param series The series to add the samples to.
+     * @param executor The executor to run drains on.
+     * @param queueCapacity The number of samples that can wait for a drain before new ones are
+     *                      dropped.
+     */
+    IngestChannel(
+            SensorSource source,
+            TimeSeries series,
+            Executor executor,
+            int queueCapacity) {
+        this.source = source;
+        this.series = series;
+        this.executor = executor;
+
+        queue = new SampleQueue(queueCapacity);
+        drainScheduled = new AtomicBoolean();
+
+        // Batches are kept small so the series' lock is never held for long
+        int batchSize = Math.min(queueCapacity, DRAIN_BATCH_SIZE);
+        drainedTimestamps = new long[batchSize];
+        drainedValues = new float[batchSize];
+
+        consumer = new SampleVisitor() {
+            @Override
+            public void visit(long timestamp, float value) {
+                offer(timestamp, value);
+            }
+        };
+
+        drain = new Runnable() {
+            @Override
+            public void run() {
+                drainQueue();
+            }
+        };
+    }
+
+    /**
+     * Get the number of samples waiting to be added to the series.
+     *
+     * @return The number of samples in the channel's queue.
+     */
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of samples dropped because the channel's queue was full.
+     *
+     * @return The number of dropped samples.
+     */
+    public long getDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    /**
+     * Get the number of samples added to the series.
+     *
+     * @return The number of samples ingested.
+     */
+    public long getIngestedCount() {
+        return ingestedCount;
+    }
+
+    /**
+     * Get the number of samples emitted by the source.
+     *
+     * @return The number of samples received, including those that were dropped.
+     */
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Get the type of sensor the channel's samples come from.
+     *
+     * @return The sensor type.
+     */
+    public int getSensorType() {
+        return source.getSensorType();
+    }
+
+    /**
+     * Get the series the channel adds samples to.
+     *
+     * The series is written to by the engine's executor, so it must only be read while holding
+     * its lock.
+     *
+     * @see TimeSeries#getLock()
+     *
+     * @return The channel's series.
+     */
+    public TimeSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * Start the channel's source.
+     */
+    void start() {
+        source.start(consumer);
+    }
+
+    /**
+     * Stop the channel's source.
+     */
+    void stop() {
+        source.stop();
+    }
+
+    /**
+     * Move every sample in the queue into the series.
+     *
+     * This runs on the engine's executor, and never on more than one thread at a time.
+     */
+    private void drainQueue() {
+        do {
+            int count;
+            while ((count = queue.drain(drainedTimestamps, drainedValues)) > 0) {
+                Lock lock = series.getLock();
+                lock.lock();
+                try {
+                    series.addPoints(drainedTimestamps, drainedValues, 0, count);
+                } finally {
+                    lock.unlock();
+                }
+
+                ingestedCount += count;
+            }
+
+            drainScheduled.set(false);
+
+            // A sample offered after the last drain but before the flag was cleared didn't
+            // schedule a drain of its own, so pick it up here. If the source has already
+            // scheduled a new drain, that drain owns the queue instead.
+        } while (queue.size() > 0 && drainScheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * Queue a sample from the source.
+     *
+     * This runs on the source's thread.
+     *
+     * @param timestamp The sample's timestamp.
+     * @param value The sample's value.
+     */
+    private void offer(long timestamp, float value) {
+        receivedCount++;
+        queue.offer(timestamp, value);
+
+        // Only one drain is ever pending, so a burst of samples results in a single drain
+        if (drainScheduled.compareAndSet(false, true)) {
+            executor.execute(drain);
+        }
+    }
+}
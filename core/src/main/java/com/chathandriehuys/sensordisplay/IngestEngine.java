@@ -0,0 +1,291 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Ingests samples from any number of sensor sources at once, each into its own series.
+ *
+ * Each source is bound to an {@link IngestChannel} when it is added, so samples are routed by
+ * sensor type once, up front, rather than looked up per sample. Sources emit samples on their own
+ * threads, and each channel's series is filled by drains that run on the engine's executor, while
+ * holding the series' lock. The executor is either a fixed pool of worker threads owned by the
+ * engine, so the number of threads doesn't grow with the number of sensors, or an executor
+ * supplied by the caller, such as one that runs drains on the thread that reads the series.
+ *
+ * <pre>
+ * IngestEngine engine = new IngestEngine(2);
+ * engine.addSource(accelerometer, new TimeSeries("Accelerometer"));
+ * engine.addSource(gyroscope, new TimeSeries("Gyroscope"));
+ * engine.start();
+ * </pre>
+ */
+public class IngestEngine {
+    /**
+     * The number of samples each channel can queue before new ones are dropped.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private ArrayList<IngestChannel> channels;
+
+    private boolean running;
+
+    private Executor executor;
+
+    private ExecutorService workers;
+
+    private int queueCapacity;
+
+    private long startCount;
+    private long startTime;
+    private long stoppedTime;
+
+    /**
+     * Create an engine that drains its channels on a fixed pool of worker threads.
+     *
+     * @param workerCount The number of worker threads.
+     */
+    public IngestEngine(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("The engine needs at least one worker.");
+        }
+
+        workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "IngestWorker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        executor = workers;
+        channels = new ArrayList<>();
+        queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    }
+
+    /**
+     * Create an engine that drains its channels on a given executor.
+     *
+     * @param executor The executor to run drains on. The engine doesn't shut it down.
+     */
+    public IngestEngine(Executor executor) {
+        this.executor = executor;
+
+        channels = new ArrayList<>();
+        queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    }
+
+    /**
+     * Add a source to the engine.
+     *
+     * @param source The source to ingest samples from.
+     * @param series The series to add the source's samples to.
+     *
+     * @return The channel from the source to the series.
+     *
+     * @throws IllegalStateException If the engine is running, or already has a source of the same
+     *                               sensor type.
+     */
+    public synchronized IngestChannel addSource(SensorSource source, TimeSeries series) {
+        if (running) {
+            throw new IllegalStateException("Sources can't be added while the engine is running.");
+        }
+
+        if (getChannel(source.getSensorType()) != null) {
+            throw new IllegalStateException(
+                    "The engine already has a source of sensor type " + source.getSensorType()
+                            + ".");
+        }
+
+        IngestChannel channel = new IngestChannel(source, series, executor, queueCapacity);
+        channels.add(channel);
+
+        return channel;
+    }
+
+    /**
+     * Get the channel for a type of sensor.
+     *
+     * @param sensorType The sensor type.
+     *
+     * @return The channel for the sensor type, or null if the engine has no source of that type.
+     */
+    public synchronized IngestChannel getChannel(int sensorType) {
+        for (int i = 0; i < channels.size(); i++) {
+            if (channels.get(i).getSensorType() == sensorType) {
+                return channels.get(i);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get every channel in the engine.
+     *
+     * @return The channels, in the order their sources were added.
+     */
+    public synchronized List<IngestChannel> getChannels() {
+        return Collections.unmodifiableList(new ArrayList<>(channels));
+    }
+
+    /**
+     * Get the number of samples dropped by every channel.
+     *
+     * @return The total number of samples dropped because a channel's queue was full.
+     */
+    public synchronized long getDroppedCount() {
+        long total = 0;
+
+        for (int i = 0; i < channels.size(); i++) {
+            total += channels.get(i).getDroppedCount();
+        }
+
+        return total;
+    }
+
+    /**
+     * Get the number of samples added to every channel's series.
+     *
+     * @return The total number of samples ingested.
+     */
+    public synchronized long getIngestedCount() {
+        long total = 0;
+
+        for (int i = 0; i < channels.size(); i++) {
+            total += channels.get(i).getIngestedCount();
+        }
+
+        return total;
+    }
+
+    /**
+     * Get the engine's average throughput.
+     *
+     * @return The number of samples ingested per second while the engine was last running, or 0
+     *         if it hasn't been started.
+     */
+    public synchronized double getThroughput() {
+        if (startTime == 0) {
+            return 0;
+        }
+
+        long end = running ? System.nanoTime() : stoppedTime;
+
+        return (getIngestedCount() - startCount) * 1e9 / Math.max(end - startTime, 1);
+    }
+
+    /**
+     * Determine if the engine is running.
+     *
+     * @return A boolean indicating if the engine's sources are running.
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Set the number of samples each new channel can queue before new ones are dropped.
+     *
+     * @param queueCapacity The queue capacity of channels added after this call.
+     */
+    public synchronized void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be positive.");
+        }
+
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Stop the engine, and its worker threads if it owns them.
+     *
+     * Drains that are already queued are allowed to finish. The engine can't be started again
+     * once it has been shut down.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the
+     *                              workers to finish.
+     */
+    public void shutdown() throws InterruptedException {
+        stop();
+
+        if (workers != null) {
+            workers.shutdown();
+            workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the engine, and its worker threads if it owns them, without waiting.
+     *
+     * Drains that haven't started yet are discarded, and running ones are interrupted, so
+     * samples still in the channels' queues may never reach their series. This is meant for
+     * tearing the engine down on a thread that can't block. The engine can't be started again
+     * once it has been shut down.
+     */
+    public void shutdownNow() {
+        stop();
+
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Start every source in the engine.
+     *
+     * Throughput is measured from when the engine is started, so restarting the engine resets
+     * its throughput, but not the counts of its channels.
+     *
+     * @throws IllegalStateException If the engine has been shut down.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        if (workers != null && workers.isShutdown()) {
+            throw new IllegalStateException("The engine has been shut down.");
+        }
+
+        for (int i = 0; i < channels.size(); i++) {
+            channels.get(i).start();
+        }
+
+        running = true;
+        startCount = getIngestedCount();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Stop every source in the engine.
+     *
+     * Samples already queued are still added to their series.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        for (int i = 0; i < channels.size(); i++) {
+            channels.get(i).stop();
+        }
+
+        running = false;
+        stoppedTime = System.nanoTime();
+    }
+}
@@ -0,0 +1,237 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * An index of the minimum and maximum values in a sliding window.
+ *
+ * Values enter the window at the newest end and leave from the oldest end, in the same way points
+ * are added to and expired from a {@link TimeSeries}. The index keeps a pair of monotonic deques,
+ * so both updates take amortized constant time and the extremes can be read in constant time
+ * without allocating.
+ *
+ * Each time the minimum or maximum changes, the index's version is incremented. Consumers can
+ * remember the version they last saw to cheaply tell if the range has changed.
+ */
+class MinMaxIndex {
+    private MonotonicDeque maxima;
+    private MonotonicDeque minima;
+
+    private int version;
+
+    private long nextSequence;
+    private long oldestSequence;
+
+    /**
+     * Create a new, empty index.
+     */
+    MinMaxIndex() {
+        maxima = new MonotonicDeque();
+        minima = new MonotonicDeque();
+    }
+
+    /**
+     * Add a value to the newest end of the window.
+     *
+     * @param value The value entering the window.
+     */
+    void add(float value) {
+        boolean wasEmpty = isEmpty();
+        float max = maxima.peekFirstValue();
+        float min = minima.peekFirstValue();
+
+        // Any values that can never be the extreme while the new value is in the window are
+        // dropped from the back of each deque.
+        while (!maxima.isEmpty() && maxima.peekLastValue() <= value) {
+            maxima.removeLast();
+        }
+        maxima.addLast(nextSequence, value);
+
+        while (!minima.isEmpty() && minima.peekLastValue() >= value) {
+            minima.removeLast();
+        }
+        minima.addLast(nextSequence, value);
+
+        nextSequence++;
+
+        if (wasEmpty || maxima.peekFirstValue() != max || minima.peekFirstValue() != min) {
+            version++;
+        }
+    }
+
+    /**
+     * Remove every value from the window.
+     */
+    void clear() {
+        if (!isEmpty()) {
+            version++;
+        }
+
+        maxima.clear();
+        minima.clear();
+
+        oldestSequence = nextSequence;
+    }
+
+    /**
+     * Get the largest value in the window.
+     *
+     * @return The largest value in the window.
+     */
+    float getMax() {
+        if (isEmpty()) {
+            throw new IllegalStateException("An empty window has no maximum.");
+        }
+
+        return maxima.peekFirstValue();
+    }
+
+    /**
+     * Get the smallest value in the window.
+     *
+     * @return The smallest value in the window.
+     */
+    float getMin() {
+        if (isEmpty()) {
+            throw new IllegalStateException("An empty window has no minimum.");
+        }
+
+        return minima.peekFirstValue();
+    }
+
+    /**
+     * Get the index's version.
+     *
+     * @return A number that changes each time the window's minimum or maximum changes.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Determine if the window is empty.
+     *
+     * @return A boolean indicating if the window contains no values.
+     */
+    boolean isEmpty() {
+        return nextSequence == oldestSequence;
+    }
+
+    /**
+     * Remove the oldest values from the window.
+     *
+     * @param count The number of values leaving the window.
+     */
+    void removeOldest(int count) {
+        if (count < 0 || count > nextSequence - oldestSequence) {
+            throw new IllegalArgumentException(
+                    "Cannot remove " + count + " values from the window.");
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        oldestSequence += count;
+
+        boolean changed = maxima.removeBefore(oldestSequence);
+        changed |= minima.removeBefore(oldestSequence);
+
+        if (changed) {
+            version++;
+        }
+    }
+
+    /**
+     * A growable ring buffer of values and the sequence numbers they were added with.
+     */
+    private static class MonotonicDeque {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private float[] values;
+        private long[] sequences;
+
+        private int head;
+        private int mask;
+        private int size;
+
+        MonotonicDeque() {
+            values = new float[INITIAL_CAPACITY];
+            sequences = new long[INITIAL_CAPACITY];
+
+            mask = INITIAL_CAPACITY - 1;
+        }
+
+        void addLast(long sequence, float value) {
+            if (size == values.length) {
+                grow();
+            }
+
+            int index = (head + size) & mask;
+
+            sequences[index] = sequence;
+            values[index] = value;
+
+            size++;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        float peekFirstValue() {
+            return size == 0 ? Float.NaN : values[head];
+        }
+
+        float peekLastValue() {
+            return values[(head + size - 1) & mask];
+        }
+
+        /**
+         * Remove the entries from the front of the deque that were added before a sequence number.
+         *
+         * @param sequence The sequence number of the oldest entry to keep.
+         *
+         * @return A boolean indicating if any entries were removed.
+         */
+        boolean removeBefore(long sequence) {
+            boolean removed = false;
+
+            while (size > 0 && sequences[head] < sequence) {
+                head = (head + 1) & mask;
+                size--;
+
+                removed = true;
+            }
+
+            return removed;
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        private void grow() {
+            int capacity = values.length;
+            int firstLength = capacity - head;
+
+            float[] newValues = new float[capacity << 1];
+            long[] newSequences = new long[capacity << 1];
+
+            System.arraycopy(values, head, newValues, 0, firstLength);
+            System.arraycopy(values, 0, newValues, firstLength, head);
+            System.arraycopy(sequences, head, newSequences, 0, firstLength);
+            System.arraycopy(sequences, 0, newSequences, firstLength, head);
+
+            values = newValues;
+            sequences = newSequences;
+
+            head = 0;
+            mask = (capacity << 1) - 1;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.ArrayList;
+
+
+/**
+ * A series of samples that each have a value in several channels, such as the three axes of an
+ * accelerometer reading.
+ *
+ * The samples are stored in columns: a single column of timestamps, shared by every channel, next
+ * to one column of values per channel. Adding a sample never allocates unless the columns have to
+ * grow, and reading one channel walks a single contiguous array rather than skipping over the
+ * other channels' values.
+ *
+ * Each channel is a {@link TimeSeries} of its own, so it has its own statistics, can be plotted,
+ * and can be used to derive further series. The magnitude of the axes can optionally be kept as
+ * an extra channel, which is calculated as each sample is added.
+ *
+ * <pre>
+ * MultiChannelSeries accelerometer = new MultiChannelSeries("X", "Y", "Z");
+ * TimeSeries magnitude = accelerometer.addMagnitudeChannel("Magnitude");
+ *
+ * accelerometer.addPoint(timestamp, event.values);
+ * </pre>
+ */
+public class MultiChannelSeries {
+    private ArrayList<TimeSeries> channels;
+
+    private float[] magnitudes;
+    private float[] row;
+
+    private float[][] columns;
+
+    private int axisCount;
+
+    private TimeSeries magnitude;
+
+    /**
+     * Create a new series with a channel for each axis.
+     *
+     * @param axisTitles The title of each axis' channel.
+     */
+    public MultiChannelSeries(String... axisTitles) {
+        if (axisTitles.length < 1) {
+            throw new IllegalArgumentException("A series needs at least one axis.");
+        }
+
+        axisCount = axisTitles.length;
+
+        // The first axis owns the shared storage, and the rest are channels of it
+        channels = new ArrayList<>();
+        channels.add(new TimeSeries(axisTitles[0]));
+
+        for (int i = 1; i < axisCount; i++) {
+            channels.add(channels.get(0).addChannel(axisTitles[i]));
+        }
+
+        columns = new float[axisCount][];
+        magnitudes = new float[0];
+        row = new float[axisCount];
+    }
+
+    /**
+     * Keep the magnitude of the axes as an extra channel.
+     *
+     * @param title The title of the magnitude channel.
+     *
+     * @return The magnitude channel.
+     *
+     * @throws IllegalStateException If the series already keeps the magnitude, or already has
+     *                               samples.
+     */
+    public TimeSeries addMagnitudeChannel(String title) {
+        if (magnitude != null) {
+            throw new IllegalStateException("The series already keeps the magnitude.");
+        }
+
+        magnitude = channels.get(0).addChannel(title);
+        channels.add(magnitude);
+
+        columns = new float[axisCount + 1][];
+        row = new float[axisCount + 1];
+
+        return magnitude;
+    }
+
+    /**
+     * Add a sample to the series.
+     *
+     * @param timestamp The sample's timestamp, in nanoseconds on a monotonic clock.
+     * @param values The sample's value on each axis. Any values past the series' axes are ignored.
+     */
+    public void addPoint(long timestamp, float[] values) {
+        checkAxisCount(values.length);
+
+        System.arraycopy(values, 0, row, 0, axisCount);
+
+        if (magnitude != null) {
+            row[axisCount] = magnitude(values, axisCount);
+        }
+
+        channels.get(0).addPoint(timestamp, row);
+    }
+
+    /**
+     * Add a batch of samples to the series.
+     *
+     * The values are given a column at a time, and each column is copied into the series' storage
+     * in bulk.
+     *
+     * @param timestamps The samples' timestamps, in chronological order.
+     * @param values An array of values for each axis.
+     * @param offset The index in the arrays of the first sample to add.
+     * @param count The number of samples to add.
+     */
+    public void addPoints(long[] timestamps, float[][] values, int offset, int count) {
+        checkAxisCount(values.length);
+
+        System.arraycopy(values, 0, columns, 0, axisCount);
+
+        if (magnitude != null) {
+            if (magnitudes.length < offset + count) {
+                magnitudes = new float[offset + count];
+            }
+
+            // Sum the squares a column at a time, so each pass reads a single array
+            for (int i = offset; i < offset + count; i++) {
+                magnitudes[i] = values[0][i] * values[0][i];
+            }
+
+            for (int axis = 1; axis < axisCount; axis++) {
+                float[] column = values[axis];
+
+                for (int i = offset; i < offset + count; i++) {
+                    magnitudes[i] += column[i] * column[i];
+                }
+            }
+
+            for (int i = offset; i < offset + count; i++) {
+                magnitudes[i] = (float) Math.sqrt(magnitudes[i]);
+            }
+
+            columns[axisCount] = magnitudes;
+        }
+
+        channels.get(0).addPoints(timestamps, columns, offset, count);
+    }
+
+    /**
+     * Get the number of axes in the series.
+     *
+     * @return The number of axes, not counting the magnitude.
+     */
+    public int getAxisCount() {
+        return axisCount;
+    }
+
+    /**
+     * Get one of the series' channels.
+     *
+     * @param index The index of the channel. The axes come first, in the order they were given,
+     *              followed by the magnitude if the series keeps it.
+     *
+     * @return The channel.
+     */
+    public TimeSeries getChannel(int index) {
+        return channels.get(index);
+    }
+
+    /**
+     * Get the number of channels in the series.
+     *
+     * @return The number of axes, plus one if the series keeps the magnitude.
+     */
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * Get the channel holding the magnitude of the axes.
+     *
+     * @return The magnitude channel, or null if the series doesn't keep the magnitude.
+     */
+    public TimeSeries getMagnitude() {
+        return magnitude;
+    }
+
+    /**
+     * Calculate the magnitude of a vector.
+     *
+     * @param values The vector's components.
+     * @param count The number of components, starting from the first value in the array.
+     *
+     * @return The vector's Euclidean length.
+     */
+    public static float magnitude(float[] values, int count) {
+        float sumOfSquares = 0;
+
+        for (int i = 0; i < count; i++) {
+            sumOfSquares += values[i] * values[i];
+        }
+
+        return (float) Math.sqrt(sumOfSquares);
+    }
+
+    /**
+     * Get the number of samples in the series.
+     *
+     * @return The number of samples in the series.
+     */
+    public int size() {
+        return channels.get(0).size();
+    }
+
+    /**
+     * Visit each sample in the series, from oldest to newest.
+     *
+     * The visitor receives the sample's value in every channel, including the magnitude if the
+     * series keeps it. The same array is reused for every sample, so nothing is allocated.
+     *
+     * @param visitor The visitor to pass each sample to.
+     */
+    public void visit(MultiSampleVisitor visitor) {
+        TimeSeries first = channels.get(0);
+
+        for (int i = 0; i < first.size(); i++) {
+            for (int j = 0; j < channels.size(); j++) {
+                row[j] = channels.get(j).getValue(i);
+            }
+
+            visitor.visit(first.getTimestamp(i), row);
+        }
+    }
+
+    /**
+     * Make sure a sample has a value for each axis.
+     *
+     * @param count The number of values the sample has.
+     */
+    private void checkAxisCount(int count) {
+        if (count < axisCount) {
+            throw new IllegalArgumentException(
+                    "Expected " + axisCount + " axes, but only got " + count + ".");
+        }
+    }
+}
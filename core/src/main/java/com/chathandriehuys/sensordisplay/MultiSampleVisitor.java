@@ -0,0 +1,20 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * An interface for reading samples that have a value in each of several channels, such as the
+ * axes of an accelerometer reading.
+ */
+public interface MultiSampleVisitor {
+
+    /**
+     * Handle a single sample.
+     *
+     * The values array is only valid for the duration of the call, and may be reused for the next
+     * sample.
+     *
+     * @param timestamp The sample's timestamp.
+     * @param values The sample's value in each channel.
+     */
+    void visit(long timestamp, float[] values);
+}
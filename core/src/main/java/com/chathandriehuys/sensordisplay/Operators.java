@@ -0,0 +1,280 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * Factories for commonly used {@link SampleOperator}s.
+ *
+ * Time based operators use the timestamps of the samples rather than assuming a fixed sampling
+ * rate, since sensor events are not delivered at exact intervals.
+ */
+public final class Operators {
+    // The ratio of the interquartile range to the standard deviation of a normal distribution
+    private static final double IQR_PER_STANDARD_DEVIATION = 1.349;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private Operators() {}
+
+    /**
+     * Create an operator that calculates the rate of change of its input.
+     *
+     * The first sample has a rate of change of zero.
+     *
+     * @return An operator whose output is the input's change per second.
+     */
+    public static SampleOperator derivative() {
+        return new Derivative();
+    }
+
+    /**
+     * Create an operator that calculates an exponential moving average of its input.
+     *
+     * The weight given to each new sample depends on the time since the previous one, so the
+     * average responds the same way regardless of the sampling rate.
+     *
+     * @param timeConstant The time it takes for the average to move about 63% of the way to a new
+     *                     steady value, in nanoseconds.
+     *
+     * @return An operator whose output is the exponential moving average of its input.
+     */
+    public static SampleOperator exponentialMovingAverage(long timeConstant) {
+        if (timeConstant <= 0) {
+            throw new IllegalArgumentException("The time constant must be positive.");
+        }
+
+        return new ExponentialMovingAverage(timeConstant);
+    }
+
+    /**
+     * Create a Hampel-style outlier filter.
+     *
+     * Each sample is compared to the median of the input's window. If it is further from the
+     * median than the given number of standard deviations, it is replaced by the median, and
+     * otherwise it is passed through unchanged.
+     *
+     * A classic Hampel filter estimates the standard deviation from the median absolute deviation,
+     * which can't be maintained incrementally as the median moves. The interquartile range is used
+     * instead. It is just as robust to outliers, and can be read from the same order statistics as
+     * the median.
+     *
+     * @param threshold The number of standard deviations a sample can be from the median before
+     *                  it is considered an outlier.
+     *
+     * @return An operator whose output is the input with its outliers replaced.
+     */
+    public static SampleOperator hampel(final double threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold must not be negative.");
+        }
+
+        return new SampleOperator() {
+            @Override
+            public float apply(TimeSeries input, long timestamp, float value) {
+                float median = input.getMedian();
+                float spread = input.getPercentile(75) - input.getPercentile(25);
+
+                double limit = threshold * spread / IQR_PER_STANDARD_DEVIATION;
+
+                return Math.abs(value - median) > limit ? median : value;
+            }
+        };
+    }
+
+    /**
+     * Create a first-order high-pass filter.
+     *
+     * @param cutoffFrequency The frequency below which the input is attenuated, in hertz.
+     *
+     * @return An operator whose output is the input with slow changes removed.
+     */
+    public static SampleOperator highPass(double cutoffFrequency) {
+        return new HighPass(timeConstantFor(cutoffFrequency));
+    }
+
+    /**
+     * Create a first-order low-pass filter.
+     *
+     * @param cutoffFrequency The frequency above which the input is attenuated, in hertz.
+     *
+     * @return An operator whose output is the input with fast changes removed.
+     */
+    public static SampleOperator lowPass(double cutoffFrequency) {
+        return new ExponentialMovingAverage(timeConstantFor(cutoffFrequency));
+    }
+
+    /**
+     * Create an operator that calculates the median of its input's window.
+     *
+     * @return An operator whose output is the median of the input's current window.
+     *
+     * @see TimeSeries#getPercentile(double)
+     */
+    public static SampleOperator median() {
+        return percentile(50);
+    }
+
+    /**
+     * Create an operator that calculates the average of its input's window.
+     *
+     * The average is read from the input's statistics, so the operator has no storage of its own.
+     *
+     * @return An operator whose output is the average of the input's current window.
+     */
+    public static SampleOperator movingAverage() {
+        return new SampleOperator() {
+            @Override
+            public float apply(TimeSeries input, long timestamp, float value) {
+                return input.getAverage();
+            }
+        };
+    }
+
+    /**
+     * Create an operator that calculates a percentile of its input's window.
+     *
+     * The input keeps its window in an order statistic tree, so each sample costs O(log n) time
+     * rather than a sort of the window.
+     *
+     * @param percentile The percentile to calculate, between 0 and 100.
+     *
+     * @return An operator whose output is the given percentile of the input's current window.
+     *
+     * @see TimeSeries#getPercentile(double)
+     */
+    public static SampleOperator percentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        }
+
+        return new SampleOperator() {
+            @Override
+            public float apply(TimeSeries input, long timestamp, float value) {
+                return input.getPercentile(percentile);
+            }
+        };
+    }
+
+    /**
+     * Create an operator that calculates the variance of its input's window.
+     *
+     * The variance is read from the input's statistics, so the operator has no storage of its own.
+     *
+     * @return An operator whose output is the variance of the input's current window.
+     */
+    public static SampleOperator variance() {
+        return new SampleOperator() {
+            @Override
+            public float apply(TimeSeries input, long timestamp, float value) {
+                return input.getVariance();
+            }
+        };
+    }
+
+    /**
+     * Convert a filter's cutoff frequency into the time constant of an RC circuit.
+     *
+     * @param cutoffFrequency The cutoff frequency, in hertz.
+     *
+     * @return The time constant, in nanoseconds.
+     */
+    private static long timeConstantFor(double cutoffFrequency) {
+        if (cutoffFrequency <= 0) {
+            throw new IllegalArgumentException("The cutoff frequency must be positive.");
+        }
+
+        return Math.max((long) (NANOS_PER_SECOND / (2 * Math.PI * cutoffFrequency)), 1);
+    }
+
+    /**
+     * The rate of change between consecutive samples.
+     */
+    private static class Derivative implements SampleOperator {
+        private boolean started;
+
+        private float previousOutput;
+        private float previousValue;
+
+        private long previousTimestamp;
+
+        @Override
+        public float apply(TimeSeries input, long timestamp, float value) {
+            long elapsed = timestamp - previousTimestamp;
+
+            // Samples with the same timestamp have no meaningful rate of change between them
+            if (started && elapsed > 0) {
+                previousOutput = (float) ((value - previousValue) * NANOS_PER_SECOND / elapsed);
+            }
+
+            started = true;
+            previousTimestamp = timestamp;
+            previousValue = value;
+
+            return previousOutput;
+        }
+    }
+
+    /**
+     * An exponential moving average, which is also a first-order low-pass filter.
+     */
+    private static class ExponentialMovingAverage implements SampleOperator {
+        private boolean started;
+
+        private double timeConstant;
+
+        private float average;
+
+        private long previousTimestamp;
+
+        ExponentialMovingAverage(long timeConstant) {
+            this.timeConstant = timeConstant;
+        }
+
+        @Override
+        public float apply(TimeSeries input, long timestamp, float value) {
+            if (!started) {
+                average = value;
+            } else {
+                double alpha = 1 - Math.exp(-(timestamp - previousTimestamp) / timeConstant);
+
+                average += alpha * (value - average);
+            }
+
+            started = true;
+            previousTimestamp = timestamp;
+
+            return average;
+        }
+    }
+
+    /**
+     * A first-order high-pass filter.
+     */
+    private static class HighPass implements SampleOperator {
+        private boolean started;
+
+        private double timeConstant;
+
+        private float output;
+        private float previousValue;
+
+        private long previousTimestamp;
+
+        HighPass(long timeConstant) {
+            this.timeConstant = timeConstant;
+        }
+
+        @Override
+        public float apply(TimeSeries input, long timestamp, float value) {
+            if (started) {
+                double alpha = timeConstant / (timeConstant + (timestamp - previousTimestamp));
+
+                output = (float) (alpha * (output + value - previousValue));
+            }
+
+            started = true;
+            previousTimestamp = timestamp;
+            previousValue = value;
+
+            return output;
+        }
+    }
+}
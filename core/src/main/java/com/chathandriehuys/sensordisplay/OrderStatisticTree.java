@@ -0,0 +1,356 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.Arrays;
+
+
+/**
+ * A sorted multiset of values that can be indexed by rank.
+ *
+ * The values are kept in a treap, a binary search tree balanced by random priorities, where each
+ * node also records the size of its subtree. Adding a value, removing a value, and finding the
+ * value with a given rank all take O(log n) expected time, so order statistics such as the median
+ * of a sliding window can be maintained without sorting the window.
+ *
+ * Nodes are stored in parallel primitive arrays and recycled through a free list, so once the tree
+ * has grown to the size of the window no more allocations are needed.
+ */
+class OrderStatisticTree {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // Index 0 is a sentinel for an empty subtree, with a size of 0
+    private static final int NIL = 0;
+
+    private boolean removed;
+
+    private float[] values;
+
+    private int[] left;
+    private int[] priorities;
+    private int[] right;
+    private int[] sizes;
+
+    private int freeList;
+    private int nextNode;
+    private int random;
+    private int root;
+
+    /**
+     * Create a new, empty tree.
+     */
+    OrderStatisticTree() {
+        values = new float[DEFAULT_CAPACITY];
+
+        left = new int[DEFAULT_CAPACITY];
+        priorities = new int[DEFAULT_CAPACITY];
+        right = new int[DEFAULT_CAPACITY];
+        sizes = new int[DEFAULT_CAPACITY];
+
+        // The sequence only has to be well mixed, not unpredictable
+        random = 0x2545F491;
+
+        clear();
+    }
+
+    /**
+     * Add a value to the tree.
+     *
+     * @param value The value to add. Duplicate values are kept.
+     */
+    void add(float value) {
+        int node = allocate();
+
+        values[node] = value;
+        priorities[node] = nextRandom();
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+
+        root = insert(root, node);
+    }
+
+    /**
+     * Remove every value from the tree.
+     *
+     * The tree keeps its current capacity.
+     */
+    void clear() {
+        root = NIL;
+        freeList = NIL;
+        nextNode = 1;
+    }
+
+    /**
+     * Get the value with a given rank.
+     *
+     * @param rank The rank of the value, where 0 is the smallest value in the tree.
+     *
+     * @return The value with the given rank.
+     */
+    float get(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot get rank " + rank + " from a tree of size " + size() + ".");
+        }
+
+        int node = root;
+
+        while (true) {
+            int leftSize = sizes[left[node]];
+
+            if (rank < leftSize) {
+                node = left[node];
+            } else if (rank > leftSize) {
+                rank -= leftSize + 1;
+                node = right[node];
+            } else {
+                return values[node];
+            }
+        }
+    }
+
+    /**
+     * Get the value at a percentile of the values in the tree.
+     *
+     * Percentiles that fall between two values are linearly interpolated between them.
+     *
+     * @param percentile The percentile to get, between 0 and 100.
+     *
+     * @return The value at the given percentile, or {@link Float#NaN} if the tree is empty.
+     */
+    float getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        }
+
+        if (size() == 0) {
+            return Float.NaN;
+        }
+
+        double position = percentile / 100 * (size() - 1);
+        int lower = (int) position;
+
+        float lowerValue = get(lower);
+        if (lower == position) {
+            return lowerValue;
+        }
+
+        return (float) (lowerValue + (get(lower + 1) - lowerValue) * (position - lower));
+    }
+
+    /**
+     * Remove a single occurrence of a value from the tree.
+     *
+     * @param value The value to remove.
+     *
+     * @return A boolean indicating if the value was found and removed.
+     */
+    boolean remove(float value) {
+        removed = false;
+        root = remove(root, value);
+
+        return removed;
+    }
+
+    /**
+     * Get the number of values in the tree.
+     *
+     * @return The number of values in the tree.
+     */
+    int size() {
+        return sizes[root];
+    }
+
+    /**
+     * Get an unused node, growing the node arrays if there are none left.
+     *
+     * @return The index of the node.
+     */
+    private int allocate() {
+        if (freeList != NIL) {
+            int node = freeList;
+            freeList = left[node];
+
+            return node;
+        }
+
+        if (nextNode == values.length) {
+            grow();
+        }
+
+        return nextNode++;
+    }
+
+    /**
+     * Double the number of nodes the tree can hold.
+     */
+    private void grow() {
+        int capacity = values.length << 1;
+
+        values = Arrays.copyOf(values, capacity);
+
+        left = Arrays.copyOf(left, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+    }
+
+    /**
+     * Insert a node into a subtree.
+     *
+     * @param subtree The root of the subtree.
+     * @param node The node to insert.
+     *
+     * @return The new root of the subtree.
+     */
+    private int insert(int subtree, int node) {
+        if (subtree == NIL) {
+            return node;
+        }
+
+        sizes[subtree]++;
+
+        // Equal values go to the right. Any copy of a value can be removed, so their order among
+        // themselves doesn't matter.
+        if (Float.compare(values[node], values[subtree]) < 0) {
+            left[subtree] = insert(left[subtree], node);
+
+            if (priorities[left[subtree]] > priorities[subtree]) {
+                subtree = rotateRight(subtree);
+            }
+        } else {
+            right[subtree] = insert(right[subtree], node);
+
+            if (priorities[right[subtree]] > priorities[subtree]) {
+                subtree = rotateLeft(subtree);
+            }
+        }
+
+        return subtree;
+    }
+
+    /**
+     * Merge two subtrees where every value in the first is no larger than every value in the
+     * second.
+     *
+     * @param first The root of the subtree with the smaller values.
+     * @param second The root of the subtree with the larger values.
+     *
+     * @return The root of the merged subtree.
+     */
+    private int merge(int first, int second) {
+        if (first == NIL) {
+            return second;
+        }
+
+        if (second == NIL) {
+            return first;
+        }
+
+        if (priorities[first] > priorities[second]) {
+            right[first] = merge(right[first], second);
+            updateSize(first);
+
+            return first;
+        }
+
+        left[second] = merge(first, left[second]);
+        updateSize(second);
+
+        return second;
+    }
+
+    /**
+     * Get the next number from a xorshift generator.
+     *
+     * @return A pseudo-random number.
+     */
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+
+        return random;
+    }
+
+    /**
+     * Remove a single occurrence of a value from a subtree.
+     *
+     * @param subtree The root of the subtree.
+     * @param value The value to remove.
+     *
+     * @return The new root of the subtree.
+     */
+    private int remove(int subtree, float value) {
+        if (subtree == NIL) {
+            return NIL;
+        }
+
+        int comparison = Float.compare(value, values[subtree]);
+
+        if (comparison < 0) {
+            left[subtree] = remove(left[subtree], value);
+        } else if (comparison > 0) {
+            right[subtree] = remove(right[subtree], value);
+        } else {
+            int merged = merge(left[subtree], right[subtree]);
+
+            // Return the node to the free list
+            left[subtree] = freeList;
+            freeList = subtree;
+            removed = true;
+
+            return merged;
+        }
+
+        updateSize(subtree);
+
+        return subtree;
+    }
+
+    /**
+     * Rotate a subtree to the left, making its right child the new root.
+     *
+     * @param subtree The root of the subtree.
+     *
+     * @return The new root of the subtree.
+     */
+    private int rotateLeft(int subtree) {
+        int child = right[subtree];
+
+        right[subtree] = left[child];
+        left[child] = subtree;
+
+        sizes[child] = sizes[subtree];
+        updateSize(subtree);
+
+        return child;
+    }
+
+    /**
+     * Rotate a subtree to the right, making its left child the new root.
+     *
+     * @param subtree The root of the subtree.
+     *
+     * @return The new root of the subtree.
+     */
+    private int rotateRight(int subtree) {
+        int child = left[subtree];
+
+        left[subtree] = right[child];
+        right[child] = subtree;
+
+        sizes[child] = sizes[subtree];
+        updateSize(subtree);
+
+        return child;
+    }
+
+    /**
+     * Recalculate the size of a subtree from the sizes of its children.
+     *
+     * @param subtree The root of the subtree.
+     */
+    private void updateSize(int subtree) {
+        sizes[subtree] = 1 + sizes[left[subtree]] + sizes[right[subtree]];
+    }
+}
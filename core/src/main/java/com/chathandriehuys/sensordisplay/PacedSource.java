@@ -0,0 +1,194 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A sensor source that generates its own samples on a background thread, paced against the
+ * system's monotonic clock.
+ *
+ * Rather than sleeping between samples, the thread wakes up once per batch period and emits every
+ * sample that has come due since it last woke up. This lets a source run at tens of kHz without
+ * waking up for each sample, and a long batch period imitates a sensor that batches its events in
+ * a hardware FIFO and delivers them in bursts.
+ */
+public abstract class PacedSource implements SensorSource {
+    /**
+     * The default time between batches, in nanoseconds.
+     */
+    public static final long DEFAULT_BATCH_PERIOD = 1000000L;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private volatile boolean exhausted;
+    private volatile boolean running;
+
+    private int sensorType;
+
+    private long batchPeriod;
+
+    private SampleVisitor consumer;
+
+    private Thread thread;
+
+    /**
+     * Create a new source.
+     *
+     * @param sensorType The type of sensor the source imitates.
+     * @param batchPeriod The time between batches of samples, in nanoseconds.
+     */
+    protected PacedSource(int sensorType, long batchPeriod) {
+        if (batchPeriod <= 0) {
+            throw new IllegalArgumentException("The batch period must be positive.");
+        }
+
+        this.sensorType = sensorType;
+        this.batchPeriod = batchPeriod;
+    }
+
+    /**
+     * Wait for the source to run out of samples.
+     *
+     * Sources that never run out, such as synthetic signals, only return once they are stopped.
+     *
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+        }
+
+        if (current != null) {
+            current.join();
+        }
+    }
+
+    /**
+     * Get the time between batches of samples.
+     *
+     * @return The batch period, in nanoseconds.
+     */
+    public long getBatchPeriod() {
+        return batchPeriod;
+    }
+
+    /**
+     * Get the type of sensor the source imitates.
+     *
+     * @return The sensor type.
+     */
+    @Override
+    public int getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Determine if the source has emitted all of its samples.
+     *
+     * @return A boolean indicating if the source has run out of samples.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Start emitting samples on a new background thread.
+     *
+     * @param consumer The consumer to pass each sample to.
+     *
+     * @throws IllegalStateException If the source is already running.
+     */
+    @Override
+    public synchronized void start(SampleVisitor consumer) {
+        if (running) {
+            throw new IllegalStateException("The source is already running.");
+        }
+
+        // Wait for the previous thread, which may have stopped on its own, to finish completely
+        stop();
+
+        this.consumer = consumer;
+
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pump();
+            }
+        }, getClass().getSimpleName());
+        thread.start();
+    }
+
+    /**
+     * Stop emitting samples, and wait for the background thread to finish.
+     */
+    @Override
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        running = false;
+        thread.interrupt();
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        thread = null;
+
+        // Preserve the caller's interrupt now that the source has stopped
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prepare to emit samples.
+     *
+     * This is called on the source's thread each time the source is started, before any samples
+     * are emitted.
+     *
+     * @param startTime The time the source was started at, in nanoseconds.
+     */
+    protected abstract void begin(long startTime);
+
+    /**
+     * Emit every sample that is due.
+     *
+     * @param now The current time, in nanoseconds.
+     * @param consumer The consumer to pass each sample to.
+     *
+     * @return A boolean indicating if the source has more samples to emit later.
+     */
+    protected abstract boolean emit(long now, SampleVisitor consumer);
+
+    /**
+     * Emit batches of samples until the source is stopped or runs out of samples.
+     */
+    private void pump() {
+        begin(System.nanoTime());
+
+        while (running) {
+            if (!emit(System.nanoTime(), consumer)) {
+                exhausted = true;
+                running = false;
+
+                return;
+            }
+
+            try {
+                Thread.sleep(
+                        batchPeriod / NANOS_PER_MILLI,
+                        (int) (batchPeriod % NANOS_PER_MILLI));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A fast Fourier transform of real input, for a fixed power-of-two size.
+ *
+ * A real input of size {@code n} is packed into a complex sequence of size {@code n / 2}, with the
+ * even samples as the real parts and the odd samples as the imaginary parts. That sequence is
+ * transformed with an iterative radix-2 FFT, and the spectrum of the real input is then split back
+ * out of the result. This takes about half the work of transforming the input as a complex
+ * sequence.
+ *
+ * The twiddle factors and bit-reversal permutation are calculated once, when the transform is
+ * created, and the transform works in its own scratch buffers, so transforming a frame never
+ * allocates. A transform is not safe for use by several threads at once.
+ */
+class RealFft {
+    private float[] imaginary;
+    private float[] real;
+    private float[] splitCos;
+    private float[] splitSin;
+    private float[] twiddleCos;
+    private float[] twiddleSin;
+
+    private int half;
+    private int size;
+
+    private int[] bitReversal;
+
+    /**
+     * Create a transform.
+     *
+     * @param size The number of real samples in each frame. This must be a power of two.
+     */
+    RealFft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException(
+                    "The size must be a power of two, not " + size + ".");
+        }
+
+        this.size = size;
+        half = size / 2;
+
+        real = new float[half];
+        imaginary = new float[half];
+
+        // Twiddle factors for the half-size complex transform, e^(-2 pi i k / half)
+        twiddleCos = new float[Math.max(half / 2, 1)];
+        twiddleSin = new float[twiddleCos.length];
+
+        for (int k = 0; k < twiddleCos.length; k++) {
+            double angle = -2 * Math.PI * k / half;
+
+            twiddleCos[k] = (float) Math.cos(angle);
+            twiddleSin[k] = (float) Math.sin(angle);
+        }
+
+        // Twiddle factors for splitting the real spectrum back out, e^(-2 pi i k / size)
+        splitCos = new float[half + 1];
+        splitSin = new float[half + 1];
+
+        for (int k = 0; k <= half; k++) {
+            double angle = -2 * Math.PI * k / size;
+
+            splitCos[k] = (float) Math.cos(angle);
+            splitSin[k] = (float) Math.sin(angle);
+        }
+
+        int bits = Integer.numberOfTrailingZeros(half);
+
+        bitReversal = new int[half];
+        for (int i = 0; i < half; i++) {
+            bitReversal[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Get the number of bins in the spectrum of a frame.
+     *
+     * @return The number of bins, from 0 Hz up to and including the Nyquist frequency.
+     */
+    int getBinCount() {
+        return half + 1;
+    }
+
+    /**
+     * Get the number of real samples in each frame.
+     *
+     * @return The transform's size.
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Calculate the magnitude of each bin of a frame's spectrum.
+     *
+     * @param input The frame's samples. Only the first {@link #getSize()} samples are read, and
+     *              the array isn't modified.
+     * @param magnitudes The array to store the unscaled magnitude of each bin in. This must have
+     *                   room for {@link #getBinCount()} values.
+     */
+    void magnitudes(float[] input, float[] magnitudes) {
+        // Pack the even and odd samples into a complex sequence, in bit-reversed order
+        for (int i = 0; i < half; i++) {
+            int j = bitReversal[i];
+
+            real[j] = input[2 * i];
+            imaginary[j] = input[2 * i + 1];
+        }
+
+        transform();
+
+        // Split the spectrum of the real input out of the packed spectrum. The half-size spectrum
+        // wraps around, so bin "half" of it is bin 0.
+        for (int k = 0; k <= half; k++) {
+            int index = k == half ? 0 : k;
+            int mirror = k == 0 ? 0 : half - k;
+
+            float zr = real[index];
+            float zi = imaginary[index];
+            float cr = real[mirror];
+            float ci = -imaginary[mirror];
+
+            // The spectra of the even and odd samples
+            float evenReal = (zr + cr) / 2;
+            float evenImaginary = (zi + ci) / 2;
+            float oddReal = (zi - ci) / 2;
+            float oddImaginary = -(zr - cr) / 2;
+
+            float wr = splitCos[k];
+            float wi = splitSin[k];
+
+            float xr = evenReal + wr * oddReal - wi * oddImaginary;
+            float xi = evenImaginary + wr * oddImaginary + wi * oddReal;
+
+            magnitudes[k] = (float) Math.sqrt(xr * xr + xi * xi);
+        }
+    }
+
+    /**
+     * Transform the scratch buffers in place, which must already be in bit-reversed order.
+     */
+    private void transform() {
+        for (int length = 2; length <= half; length <<= 1) {
+            int span = length / 2;
+            int step = half / length;
+
+            for (int start = 0; start < half; start += length) {
+                for (int j = 0; j < span; j++) {
+                    float wr = twiddleCos[j * step];
+                    float wi = twiddleSin[j * step];
+
+                    int a = start + j;
+                    int b = a + span;
+
+                    float tr = wr * real[b] - wi * imaginary[b];
+                    float ti = wr * imaginary[b] + wi * real[b];
+
+                    real[b] = real[a] - tr;
+                    imaginary[b] = imaginary[a] - ti;
+                    real[a] += tr;
+                    imaginary[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A sensor source that replays a session recorded by a {@link SessionRecorder}.
+ *
+ * Samples are emitted with the same spacing they were recorded with, divided by the replay
+ * speed, so a session replayed at 10x looks like the same sensor sampling ten times as fast.
+ * Timestamps are shifted onto the current time, so replayed samples arrive as if they were live.
+ */
+public class ReplaySource extends PacedSource {
+    private static final int BUFFER_SIZE = 4096;
+
+    private double speed;
+
+    private float[] values;
+
+    private int bufferCount;
+    private int bufferIndex;
+
+    private long firstTimestamp;
+    private long origin;
+    private long position;
+
+    private long[] timestamps;
+
+    private SessionReader reader;
+
+    /**
+     * Create a source that replays a session.
+     *
+     * @param reader The session to replay.
+     * @param speed How many times faster than real time to replay the session.
+     */
+    public ReplaySource(SessionReader reader, double speed) {
+        this(reader, speed, DEFAULT_BATCH_PERIOD);
+    }
+
+    /**
+     * Create a source that replays a session.
+     *
+     * @param reader The session to replay.
+     * @param speed How many times faster than real time to replay the session.
+     * @param batchPeriod The time between batches of samples, in nanoseconds.
+     */
+    public ReplaySource(SessionReader reader, double speed, long batchPeriod) {
+        super(reader.getSensorType(), batchPeriod);
+
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("The replay speed must be positive.");
+        }
+
+        this.reader = reader;
+        this.speed = speed;
+
+        timestamps = new long[BUFFER_SIZE];
+        values = new float[BUFFER_SIZE];
+
+        firstTimestamp = reader.size() > 0 ? reader.getTimestamp(0) : 0;
+    }
+
+    /**
+     * Get the number of samples that have been replayed so far.
+     *
+     * @return The number of samples emitted.
+     */
+    public long getReplayedCount() {
+        return position + bufferIndex;
+    }
+
+    /**
+     * Get the replay speed.
+     *
+     * @return How many times faster than real time the session is replayed.
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Line the next sample up with the time the source was started at.
+     *
+     * @param startTime The time the source was started at, in nanoseconds.
+     */
+    @Override
+    protected void begin(long startTime) {
+        origin = fillBuffer() ? startTime - scale(timestamps[bufferIndex]) : startTime;
+    }
+
+    /**
+     * Emit every recorded sample that is due.
+     *
+     * @param now The current time, in nanoseconds.
+     * @param consumer The consumer to pass each sample to.
+     *
+     * @return A boolean indicating if there are samples left to replay.
+     */
+    @Override
+    protected boolean emit(long now, SampleVisitor consumer) {
+        while (fillBuffer()) {
+            long timestamp = origin + scale(timestamps[bufferIndex]);
+            if (timestamp > now) {
+                return true;
+            }
+
+            consumer.visit(timestamp, values[bufferIndex]);
+            bufferIndex++;
+        }
+
+        return false;
+    }
+
+    /**
+     * Make sure the buffer holds the next sample to replay.
+     *
+     * @return A boolean indicating if there is another sample to replay.
+     */
+    private boolean fillBuffer() {
+        if (bufferIndex == bufferCount) {
+            position += bufferCount;
+            bufferCount = reader.read(position, timestamps, values);
+            bufferIndex = 0;
+        }
+
+        return bufferIndex < bufferCount;
+    }
+
+    /**
+     * Convert a recorded timestamp to its time from the start of the replay.
+     *
+     * @param timestamp The recorded timestamp, in nanoseconds.
+     *
+     * @return The time from the start of the replay to the sample, in nanoseconds.
+     */
+    private long scale(long timestamp) {
+        return (long) ((timestamp - firstTimestamp) / speed);
+    }
+}
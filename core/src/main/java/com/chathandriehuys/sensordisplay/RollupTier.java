@@ -0,0 +1,368 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A summary of a series' history at a fixed resolution.
+ *
+ * Points are sorted into buckets covering a fixed slice of time, and each bucket keeps the
+ * smallest and largest point along with the sum and count of its points. Buckets are updated in
+ * constant time as points are added, and kept for much longer than the series keeps its raw
+ * points. A few tiers with increasing bucket widths let minutes or hours of history be plotted
+ * with a bounded amount of memory and a bounded number of points per frame.
+ *
+ * Like a {@link Decimator}, buckets are aligned to multiples of the bucket width, so a bucket's
+ * contents never change once newer points start arriving in the next bucket.
+ *
+ * @see TimeSeries#addRollupTier(long, long)
+ */
+public class RollupTier {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] sums;
+
+    private float[] maxValues, minValues;
+
+    private int[] counts;
+
+    private int head;
+    private int mask;
+    private int size;
+    private int version;
+
+    private long[] indices;
+    private long[] maxTimes, minTimes;
+
+    private long bucketWidth;
+    private long retention;
+
+    /**
+     * Create a new, empty tier.
+     *
+     * @param bucketWidth The amount of time covered by each bucket, in nanoseconds.
+     * @param retention The amount of time buckets are kept for, in nanoseconds.
+     */
+    RollupTier(long bucketWidth, long retention) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("The bucket width must be positive.");
+        }
+
+        if (retention < bucketWidth) {
+            throw new IllegalArgumentException("The retention must be at least one bucket wide.");
+        }
+
+        this.bucketWidth = bucketWidth;
+        this.retention = retention;
+
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get the amount of time covered by each bucket.
+     *
+     * @return The bucket width, in nanoseconds.
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Get the number of points in a bucket.
+     *
+     * @param index The index of the bucket, where 0 is the oldest bucket.
+     *
+     * @return The number of points in the bucket.
+     */
+    public int getCount(int index) {
+        return counts[slot(index)];
+    }
+
+    /**
+     * Get the largest value in a bucket.
+     *
+     * @param index The index of the bucket, where 0 is the oldest bucket.
+     *
+     * @return The bucket's largest value.
+     */
+    public float getMax(int index) {
+        return maxValues[slot(index)];
+    }
+
+    /**
+     * Get the maximum number of points {@link #getPoints(long, long, long[], float[])} can
+     * produce.
+     *
+     * @return The size the arrays passed to {@link #getPoints(long, long, long[], float[])} need
+     *         to be.
+     */
+    public int getMaxPointCount() {
+        return 2 * size;
+    }
+
+    /**
+     * Get the average value in a bucket.
+     *
+     * @param index The index of the bucket, where 0 is the oldest bucket.
+     *
+     * @return The average of the bucket's values.
+     */
+    public float getMean(int index) {
+        int slot = slot(index);
+
+        return (float) (sums[slot] / counts[slot]);
+    }
+
+    /**
+     * Get the smallest value in a bucket.
+     *
+     * @param index The index of the bucket, where 0 is the oldest bucket.
+     *
+     * @return The bucket's smallest value.
+     */
+    public float getMin(int index) {
+        return minValues[slot(index)];
+    }
+
+    /**
+     * Get the points to plot for the tier.
+     *
+     * Each bucket contributes its smallest and largest point, in the order they occurred, so
+     * peaks are preserved no matter how coarse the tier is. The buckets overlapping the period
+     * are found by binary search, so only those buckets are read.
+     *
+     * @param oldest The timestamp of the oldest point that can be plotted.
+     * @param newest The timestamp of the newest point that can be plotted.
+     * @param timestamps The array to store the points' timestamps in.
+     * @param values The array to store the points' values in.
+     *
+     * @return The number of points stored in the arrays.
+     */
+    public int getPoints(long oldest, long newest, long[] timestamps, float[] values) {
+        int count = 0;
+        int end = countBuckets(newest / bucketWidth);
+
+        for (int i = countBuckets(oldest / bucketWidth - 1); i < end; i++) {
+            int slot = slot(i);
+
+            long firstTime = Math.min(minTimes[slot], maxTimes[slot]);
+            long lastTime = Math.max(minTimes[slot], maxTimes[slot]);
+
+            boolean minFirst = minTimes[slot] <= maxTimes[slot];
+
+            if (firstTime >= oldest && firstTime <= newest) {
+                timestamps[count] = firstTime;
+                values[count++] = minFirst ? minValues[slot] : maxValues[slot];
+            }
+
+            if (lastTime != firstTime && lastTime >= oldest && lastTime <= newest) {
+                timestamps[count] = lastTime;
+                values[count++] = minFirst ? maxValues[slot] : minValues[slot];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the range of the buckets that overlap a period of time.
+     *
+     * @param oldest The start of the period, in nanoseconds.
+     * @param newest The end of the period, in nanoseconds.
+     * @param out The interval to store the range in.
+     *
+     * @return The provided interval. If no buckets overlap the period, the interval's minimum is
+     *         larger than its maximum.
+     */
+    public FloatInterval getRange(long oldest, long newest, FloatInterval out) {
+        out.set(Float.MAX_VALUE, -Float.MAX_VALUE);
+
+        int end = countBuckets(newest / bucketWidth);
+
+        for (int i = countBuckets(oldest / bucketWidth - 1); i < end; i++) {
+            int slot = slot(i);
+
+            out.set(
+                    Math.min(out.getMin(), minValues[slot]),
+                    Math.max(out.getMax(), maxValues[slot]));
+        }
+
+        return out;
+    }
+
+    /**
+     * Get the amount of time buckets are kept for.
+     *
+     * @return The tier's retention, in nanoseconds.
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * Get the start of a bucket.
+     *
+     * @param index The index of the bucket, where 0 is the oldest bucket.
+     *
+     * @return The time the bucket starts at, in nanoseconds.
+     */
+    public long getStart(int index) {
+        return indices[slot(index)] * bucketWidth;
+    }
+
+    /**
+     * Get the tier's version.
+     *
+     * @return A number that changes each time a bucket is added or removed, or the smallest or
+     *         largest value of a bucket changes.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the number of buckets in the tier.
+     *
+     * @return The number of buckets in the tier.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a point to the tier.
+     *
+     * Buckets that have fallen out of the tier's retention are removed at the same time.
+     *
+     * @param timestamp The point's timestamp, in nanoseconds. Points must be added in
+     *                  chronological order.
+     * @param value The point's value.
+     */
+    void add(long timestamp, float value) {
+        // Timestamps come from a monotonic clock, so they are never negative
+        long index = timestamp / bucketWidth;
+
+        int slot;
+        if (size > 0 && indices[slot(size - 1)] == index) {
+            slot = slot(size - 1);
+
+            if (value < minValues[slot]) {
+                minValues[slot] = value;
+                minTimes[slot] = timestamp;
+                version++;
+            }
+
+            if (value > maxValues[slot]) {
+                maxValues[slot] = value;
+                maxTimes[slot] = timestamp;
+                version++;
+            }
+        } else {
+            if (size == indices.length) {
+                grow();
+            }
+
+            slot = slot(size++);
+
+            indices[slot] = index;
+            minValues[slot] = maxValues[slot] = value;
+            minTimes[slot] = maxTimes[slot] = timestamp;
+            sums[slot] = 0;
+            counts[slot] = 0;
+
+            version++;
+        }
+
+        sums[slot] += value;
+        counts[slot]++;
+
+        // Remove the buckets that ended before the retention period
+        long oldestIndex = (timestamp - retention) / bucketWidth;
+        while (size > 0 && indices[head] < oldestIndex) {
+            head = (head + 1) & mask;
+            size--;
+
+            version++;
+        }
+    }
+
+    /**
+     * Allocate the bucket arrays.
+     *
+     * @param capacity The number of buckets the arrays can hold.
+     */
+    private void allocate(int capacity) {
+        indices = new long[capacity];
+        maxTimes = new long[capacity];
+        minTimes = new long[capacity];
+        maxValues = new float[capacity];
+        minValues = new float[capacity];
+        sums = new double[capacity];
+        counts = new int[capacity];
+
+        mask = capacity - 1;
+    }
+
+    /**
+     * Count the buckets up to and including a given bucket index.
+     *
+     * @param index The index of the last bucket to count, as a multiple of the bucket width.
+     *
+     * @return The number of buckets with an index no larger than the given index.
+     */
+    private int countBuckets(long index) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (indices[slot(middle)] <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Double the number of buckets the tier can hold.
+     *
+     * The existing buckets are copied so that the oldest bucket is at the start of the arrays.
+     */
+    private void grow() {
+        long[] oldIndices = indices, oldMaxTimes = maxTimes, oldMinTimes = minTimes;
+        float[] oldMaxValues = maxValues, oldMinValues = minValues;
+        double[] oldSums = sums;
+        int[] oldCounts = counts;
+
+        int capacity = indices.length;
+
+        allocate(capacity << 1);
+
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) & (capacity - 1);
+
+            indices[i] = oldIndices[from];
+            maxTimes[i] = oldMaxTimes[from];
+            minTimes[i] = oldMinTimes[from];
+            maxValues[i] = oldMaxValues[from];
+            minValues[i] = oldMinValues[from];
+            sums[i] = oldSums[from];
+            counts[i] = oldCounts[from];
+        }
+
+        head = 0;
+    }
+
+    /**
+     * Get the position of a bucket in the ring buffer.
+     *
+     * @param index The index of the bucket, where 0 is the oldest bucket.
+     *
+     * @return The bucket's position in the arrays.
+     */
+    private int slot(int index) {
+        return (head + index) & mask;
+    }
+}
@@ -0,0 +1,249 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.Arrays;
+
+
+/**
+ * A sealed, compressed block of samples.
+ *
+ * Samples are compressed with the scheme from Facebook's Gorilla time series database. Timestamps
+ * are stored as the difference between consecutive deltas, which is usually zero or tiny for a
+ * sensor sampling at a steady rate, and values are stored as the XOR of consecutive values, which
+ * only has a few meaningful bits for a slowly changing signal. Both are written to a bit stream
+ * with variable-length codes:
+ *
+ * <pre>
+ * Delta of delta             Value XOR
+ *   0                 '0'      0                          '0'
+ *   [-2^11, 2^11)     '10'   + 12 bits
+ *   [-2^19, 2^19)     '110'  + 20 bits   same zero bits   '10' + meaningful bits
+ *   [-2^31, 2^31)     '1110' + 32 bits   otherwise        '11' + 5 bits of leading zeros
+ *   otherwise         '1111' + 64 bits                         + 5 bits of length - 1
+ *                                                              + meaningful bits
+ * </pre>
+ *
+ * The first timestamp is stored outside the bit stream, and the first value is stored as its raw
+ * 32 bits. Blocks can only be read from the start, with a {@link HistoryCursor}.
+ */
+class SampleBlock {
+    static final int BUCKET_BITS_0 = 12;
+    static final int BUCKET_BITS_1 = 20;
+    static final int BUCKET_BITS_2 = 32;
+    static final int LEADING_ZERO_BITS = 5;
+    static final int LENGTH_BITS = 5;
+
+    // Fields written alongside the bit stream: the first and last timestamps, the extremes, the
+    // count, and the length of the stream
+    private static final int HEADER_BYTES = 8 + 8 + 4 + 4 + 4 + 4;
+
+    private float maxValue;
+    private float minValue;
+
+    private int bitLength;
+    private int count;
+
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    private long[] words;
+
+    /**
+     * Compress a run of samples into a block.
+     *
+     * @param timestamps The samples' timestamps, in chronological order.
+     * @param values The samples' values.
+     * @param count The number of samples to compress, which must be at least 1.
+     */
+    SampleBlock(long[] timestamps, float[] values, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("A block must hold at least one sample.");
+        }
+
+        this.count = count;
+
+        firstTimestamp = timestamps[0];
+        lastTimestamp = timestamps[count - 1];
+
+        minValue = maxValue = values[0];
+
+        // Most samples take less than 4 bytes, and the array is trimmed once it is filled
+        words = new long[Math.max(count / 2, 2)];
+
+        int previousBits = Float.floatToRawIntBits(values[0]);
+        writeBits(previousBits, 32);
+
+        long previousDelta = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - timestamps[i - 1];
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+
+            int bits = Float.floatToRawIntBits(values[i]);
+            int xor = bits ^ previousBits;
+            previousBits = bits;
+
+            minValue = Math.min(minValue, values[i]);
+            maxValue = Math.max(maxValue, values[i]);
+
+            if (xor == 0) {
+                writeBits(0, 1);
+                continue;
+            }
+
+            int leading = Integer.numberOfLeadingZeros(xor);
+            int trailing = Integer.numberOfTrailingZeros(xor);
+
+            if (previousLeading >= 0
+                    && leading >= previousLeading
+                    && trailing >= previousTrailing) {
+                // The meaningful bits fit in the same window as the previous value's
+                writeBits(2, 2);
+                writeBits(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+            } else {
+                int length = 32 - leading - trailing;
+
+                writeBits(3, 2);
+                writeBits(leading, LEADING_ZERO_BITS);
+                writeBits(length - 1, LENGTH_BITS);
+                writeBits(xor >>> trailing, length);
+
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+
+        words = Arrays.copyOf(words, (bitLength + 63) >>> 6);
+    }
+
+    /**
+     * Get the number of bytes used by the block.
+     *
+     * @return The size of the block's bit stream and header, in bytes.
+     */
+    long getByteCount() {
+        return HEADER_BYTES + 8L * words.length;
+    }
+
+    /**
+     * Get the number of samples in the block.
+     *
+     * @return The number of samples in the block.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the timestamp of the block's first sample.
+     *
+     * @return The first sample's timestamp.
+     */
+    long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Get the timestamp of the block's last sample.
+     *
+     * @return The last sample's timestamp.
+     */
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Get the largest value in the block.
+     *
+     * @return The largest value in the block.
+     */
+    float getMax() {
+        return maxValue;
+    }
+
+    /**
+     * Get the smallest value in the block.
+     *
+     * @return The smallest value in the block.
+     */
+    float getMin() {
+        return minValue;
+    }
+
+    /**
+     * Get the block's bit stream.
+     *
+     * Bits are packed into each word starting from the most significant bit.
+     *
+     * @return The words holding the block's bit stream.
+     */
+    long[] getWords() {
+        return words;
+    }
+
+    /**
+     * Determine if a value fits in a signed field.
+     *
+     * @param value The value to check.
+     * @param bits The width of the field.
+     *
+     * @return A boolean indicating if the value can be stored in the field without losing bits.
+     */
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+
+        return value >= -limit && value < limit;
+    }
+    /**
+     * Append bits to the block's bit stream.
+     *
+     * @param value The bits to write, in the lowest bits of the value.
+     * @param bits The number of bits to write, between 1 and 64.
+     */
+    private void writeBits(long value, int bits) {
+        if (bits < 64) {
+            value &= (1L << bits) - 1;
+        }
+
+        int word = bitLength >>> 6;
+        int free = 64 - (bitLength & 63);
+
+        if (word + 1 >= words.length) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+
+        if (bits <= free) {
+            words[word] |= value << (free - bits);
+        } else {
+            words[word] |= value >>> (bits - free);
+            words[word + 1] |= value << (64 - (bits - free));
+        }
+
+        bitLength += bits;
+    }
+
+    /**
+     * Append a timestamp's delta of delta to the block's bit stream.
+     *
+     * @param deltaOfDelta The change in the time between samples.
+     */
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0, 1);
+        } else if (fits(deltaOfDelta, BUCKET_BITS_0)) {
+            writeBits(2, 2);
+            writeBits(deltaOfDelta, BUCKET_BITS_0);
+        } else if (fits(deltaOfDelta, BUCKET_BITS_1)) {
+            writeBits(6, 3);
+            writeBits(deltaOfDelta, BUCKET_BITS_1);
+        } else if (fits(deltaOfDelta, BUCKET_BITS_2)) {
+            writeBits(14, 4);
+            writeBits(deltaOfDelta, BUCKET_BITS_2);
+        } else {
+            writeBits(15, 4);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A growable ring buffer of samples.
+ *
+ * Timestamps and values are stored in parallel primitive arrays, so adding a sample never
+ * allocates unless the buffer has to grow. Samples are always removed from the oldest end of the
+ * buffer, which matches how a series expires its data.
+ *
+ * Besides the sample's value, each slot can hold values in additional columns. This lets series
+ * derived from the samples, or the other axes of a multi-axis sensor, share a single copy of the
+ * timestamps, and expire along with them. Adding a sample only sets its value in the first column;
+ * the other columns have to be filled in with {@link #setValue(int, int, float)} or
+ * {@link #setValues(int, int, float[], int, int)}.
+ *
+ * The buffer's capacity is always a power of two, and each slot uses 8 bytes for the timestamp and
+ * 4 bytes per column, so a buffer with a capacity of {@code n} and a single column occupies
+ * roughly {@code 12 * n} bytes.
+ */
+class SampleBuffer {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private float[] values;
+    private float[][] columns;
+
+    private long[] timestamps;
+
+    private int head;
+    private int mask;
+    private int size;
+
+    /**
+     * Create a new buffer with the default initial capacity.
+     */
+    SampleBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new buffer.
+     *
+     * @param initialCapacity The minimum number of samples the buffer can hold before it has to
+     *                        grow. This is rounded up to the next power of two.
+     */
+    SampleBuffer(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("The initial capacity must be positive.");
+        }
+
+        int capacity = Integer.highestOneBit(initialCapacity);
+        if (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+
+        values = new float[capacity];
+        timestamps = new long[capacity];
+
+        columns = new float[][] { values };
+
+        mask = capacity - 1;
+    }
+
+    /**
+     * Add a sample to the newest end of the buffer.
+     *
+     * @param timestamp The sample's timestamp.
+     * @param value The sample's value.
+     */
+    void add(long timestamp, float value) {
+        if (size == values.length) {
+            grow();
+        }
+
+        int index = (head + size) & mask;
+
+        timestamps[index] = timestamp;
+        values[index] = value;
+
+        size++;
+    }
+
+    /**
+     * Add a batch of samples to the newest end of the buffer.
+     *
+     * @param timestamps The samples' timestamps.
+     * @param values The samples' values.
+     * @param offset The index in the arrays of the first sample to add.
+     * @param count The number of samples to add.
+     */
+    void add(long[] timestamps, float[] values, int offset, int count) {
+        while (size + count > this.values.length) {
+            grow();
+        }
+
+        // The batch is copied in at most two pieces: up to the end of the arrays, and then any
+        // remainder that wraps around to the start.
+        int start = (head + size) & mask;
+        int firstLength = Math.min(count, this.values.length - start);
+
+        System.arraycopy(timestamps, offset, this.timestamps, start, firstLength);
+        System.arraycopy(values, offset, this.values, start, firstLength);
+        System.arraycopy(timestamps, offset + firstLength, this.timestamps, 0, count - firstLength);
+        System.arraycopy(values, offset + firstLength, this.values, 0, count - firstLength);
+
+        size += count;
+    }
+
+    /**
+     * Add a column of values to the buffer.
+     *
+     * The new column's values are undefined until they are set.
+     *
+     * @return The index of the new column.
+     */
+    int addColumn() {
+        float[][] newColumns = new float[columns.length + 1][];
+        System.arraycopy(columns, 0, newColumns, 0, columns.length);
+
+        newColumns[columns.length] = new float[values.length];
+        columns = newColumns;
+
+        return columns.length - 1;
+    }
+
+    /**
+     * Find the first sample at or after a given time.
+     *
+     * Samples are added in chronological order, so their timestamps are sorted and this is a
+     * binary search taking O(log n) time.
+     *
+     * @param timestamp The time to search for.
+     *
+     * @return The index of the first sample with a timestamp at or after the given time, or the
+     *         size of the buffer if every sample is older.
+     */
+    int ceilingIndex(long timestamp) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (timestamps[(head + middle) & mask] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Remove every sample from the buffer.
+     *
+     * The buffer keeps its current capacity.
+     */
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Get the number of samples the buffer can hold before it has to grow.
+     *
+     * @return The buffer's capacity.
+     */
+    int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Get the number of columns of values in the buffer.
+     *
+     * @return The number of columns, including the column holding the samples' values.
+     */
+    int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Get the timestamp of a sample in the buffer.
+     *
+     * @param index The index of the sample, where 0 is the oldest sample in the buffer.
+     *
+     * @return The sample's timestamp.
+     */
+    long getTimestamp(int index) {
+        return timestamps[(head + index) & mask];
+    }
+
+    /**
+     * Get the value of a sample in the buffer.
+     *
+     * @param index The index of the sample, where 0 is the oldest sample in the buffer.
+     *
+     * @return The sample's value.
+     */
+    float getValue(int index) {
+        return values[(head + index) & mask];
+    }
+
+    /**
+     * Get a sample's value in a particular column.
+     *
+     * @param column The index of the column, where 0 is the column holding the samples' values.
+     * @param index The index of the sample, where 0 is the oldest sample in the buffer.
+     *
+     * @return The sample's value in the given column.
+     */
+    float getValue(int column, int index) {
+        return columns[column][(head + index) & mask];
+    }
+
+    /**
+     * Remove the oldest samples from the buffer.
+     *
+     * This only advances the start of the buffer, so it takes constant time regardless of the
+     * number of samples removed.
+     *
+     * @param count The number of samples to remove.
+     */
+    void removeOldest(int count) {
+        if (count < 0 || count > size) {
+            throw new IllegalArgumentException(
+                    "Cannot remove " + count + " samples from a buffer of size " + size + ".");
+        }
+
+        head = (head + count) & mask;
+        size -= count;
+    }
+
+    /**
+     * Set a sample's value in a particular column.
+     *
+     * @param column The index of the column.
+     * @param index The index of the sample, where 0 is the oldest sample in the buffer.
+     * @param value The sample's new value in the given column.
+     */
+    void setValue(int column, int index, float value) {
+        columns[column][(head + index) & mask] = value;
+    }
+
+    /**
+     * Set the values of a run of samples in a particular column.
+     *
+     * @param column The index of the column.
+     * @param index The index of the first sample to set, where 0 is the oldest sample in the
+     *              buffer.
+     * @param values The samples' new values in the given column.
+     * @param offset The index in the array of the first value to copy.
+     * @param count The number of values to copy.
+     */
+    void setValues(int column, int index, float[] values, int offset, int count) {
+        // The run is copied in at most two pieces, like a batch of new samples
+        int start = (head + index) & mask;
+        int firstLength = Math.min(count, this.values.length - start);
+
+        System.arraycopy(values, offset, columns[column], start, firstLength);
+        System.arraycopy(values, offset + firstLength, columns[column], 0, count - firstLength);
+    }
+
+    /**
+     * Get the number of samples in the buffer.
+     *
+     * @return The number of samples in the buffer.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Double the capacity of the buffer.
+     *
+     * The existing samples are copied into the new arrays so that the oldest sample is at the start
+     * of the array.
+     */
+    private void grow() {
+        int capacity = values.length;
+        int newCapacity = capacity << 1;
+
+        if (newCapacity <= 0) {
+            throw new IllegalStateException("The buffer cannot grow any further.");
+        }
+
+        long[] newTimestamps = new long[newCapacity];
+
+        // Copy the section from the head to the end of the array, followed by the section that
+        // wrapped around to the start of the array.
+        int firstLength = Math.min(size, capacity - head);
+
+        for (int i = 0; i < columns.length; i++) {
+            float[] newColumn = new float[newCapacity];
+
+            System.arraycopy(columns[i], head, newColumn, 0, firstLength);
+            System.arraycopy(columns[i], 0, newColumn, firstLength, size - firstLength);
+
+            columns[i] = newColumn;
+        }
+
+        System.arraycopy(timestamps, head, newTimestamps, 0, firstLength);
+        System.arraycopy(timestamps, 0, newTimestamps, firstLength, size - firstLength);
+
+        values = columns[0];
+        timestamps = newTimestamps;
+
+        head = 0;
+        mask = newCapacity - 1;
+    }
+}
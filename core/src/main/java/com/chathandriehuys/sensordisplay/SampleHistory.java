@@ -0,0 +1,311 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.ArrayList;
+
+
+/**
+ * A compressed record of a series' samples, kept for much longer than the series' window.
+ *
+ * New samples are appended to an uncompressed head block. Once the head block is full, it is
+ * sealed into a compressed {@link SampleBlock} using delta-of-delta timestamps and XOR-encoded
+ * values, which brings a typical sensor sample down from 12 bytes to a few bytes. Whole blocks are
+ * dropped once every sample in them is older than the history's retention.
+ *
+ * Samples are read back with a {@link HistoryCursor}, which decodes them one at a time, so
+ * reading a period of history only touches the blocks that overlap it.
+ *
+ * @see TimeSeries#keepHistory(long)
+ */
+public class SampleHistory {
+    static final int BLOCK_SIZE = 1024;
+
+    private ArrayList<SampleBlock> blocks;
+
+    private float[] headValues;
+
+    private HistoryCursor scratch;
+
+    private int headCount;
+    private int version;
+
+    private long[] headTimestamps;
+
+    private long blockBytes;
+    private long blockSamples;
+    private long retention;
+
+    /**
+     * Create a new, empty history.
+     *
+     * @param retention The amount of time samples are kept for, in nanoseconds.
+     */
+    SampleHistory(long retention) {
+        if (retention <= 0) {
+            throw new IllegalArgumentException("The retention must be positive.");
+        }
+
+        this.retention = retention;
+
+        blocks = new ArrayList<>();
+        headTimestamps = new long[BLOCK_SIZE];
+        headValues = new float[BLOCK_SIZE];
+        scratch = new HistoryCursor();
+    }
+
+    /**
+     * Get the number of compressed blocks in the history.
+     *
+     * @return The number of sealed blocks.
+     */
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Get the amount of memory used by the samples in the history.
+     *
+     * @return The number of bytes used by the compressed blocks and the head block.
+     */
+    public long getByteCount() {
+        return blockBytes + 12L * BLOCK_SIZE;
+    }
+
+    /**
+     * Get the timestamp of the newest sample in the history.
+     *
+     * @return The newest sample's timestamp, or {@link Long#MIN_VALUE} if the history is empty.
+     */
+    public long getNewestTimestamp() {
+        if (headCount > 0) {
+            return headTimestamps[headCount - 1];
+        }
+
+        return blocks.isEmpty() ? Long.MIN_VALUE : blocks.get(blocks.size() - 1).getLastTimestamp();
+    }
+
+    /**
+     * Get the range of the history over a period of time.
+     *
+     * The extremes of each compressed block are stored alongside it, so no blocks are decoded.
+     * Blocks that partly overlap the period contribute all their samples, so the range
+     * can be slightly wider than the range of the period itself.
+     *
+     * @param from The start of the period, in nanoseconds.
+     * @param to The end of the period, inclusive.
+     * @param out The interval to store the range in.
+     *
+     * @return The provided interval. If no samples overlap the period, the interval's minimum is
+     *         larger than its maximum.
+     */
+    public FloatInterval getRange(long from, long to, FloatInterval out) {
+        out.set(Float.MAX_VALUE, -Float.MAX_VALUE);
+
+        for (int i = findBlock(from); i < blocks.size(); i++) {
+            SampleBlock block = blocks.get(i);
+
+            if (block.getFirstTimestamp() > to) {
+                return out;
+            }
+
+            out.set(
+                    Math.min(out.getMin(), block.getMin()),
+                    Math.max(out.getMax(), block.getMax()));
+        }
+
+        for (int i = 0; i < headCount; i++) {
+            if (headTimestamps[i] >= from && headTimestamps[i] <= to) {
+                out.set(
+                        Math.min(out.getMin(), headValues[i]),
+                        Math.max(out.getMax(), headValues[i]));
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Get the amount of time samples are kept for.
+     *
+     * @return The history's retention, in nanoseconds.
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * Get the statistics of the samples in a period of time.
+     *
+     * The samples are streamed through a cursor, so the cost is proportional to the number of
+     * samples in the period and no blocks are decompressed up front.
+     *
+     * @param from The start of the period, in nanoseconds.
+     * @param to The end of the period, inclusive.
+     * @param out The moments to add the samples to. They are cleared first.
+     *
+     * @return The provided moments.
+     */
+    public WindowedMoments getStatistics(long from, long to, WindowedMoments out) {
+        out.clear();
+
+        seek(from, scratch);
+        while (scratch.next() && scratch.getTimestamp() <= to) {
+            out.add(scratch.getValue());
+        }
+
+        return out;
+    }
+
+    /**
+     * Get the history's version.
+     *
+     * @return A number that changes each time a sample is added to or removed from the history.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Position a cursor before the first sample at or after a given time.
+     *
+     * The block holding the sample is found by binary search, and only that block is decoded up
+     * to the sample.
+     *
+     * @param from The time to seek to, in nanoseconds.
+     * @param out The cursor to position.
+     *
+     * @return The provided cursor. Its next call to {@link HistoryCursor#next()} moves to the
+     *         first sample at or after the given time.
+     */
+    public HistoryCursor seek(long from, HistoryCursor out) {
+        out.seek(this, findBlock(from), from);
+
+        return out;
+    }
+
+    /**
+     * Get the number of samples in the history.
+     *
+     * @return The number of samples in the history.
+     */
+    public long size() {
+        return blockSamples + headCount;
+    }
+
+    /**
+     * Visit each sample in a period of time, from oldest to newest.
+     *
+     * @param from The start of the period, in nanoseconds.
+     * @param to The end of the period, inclusive.
+     * @param visitor The visitor to pass each sample to.
+     */
+    public void visit(long from, long to, SampleVisitor visitor) {
+        seek(from, scratch);
+
+        while (scratch.next() && scratch.getTimestamp() <= to) {
+            visitor.visit(scratch.getTimestamp(), scratch.getValue());
+        }
+    }
+
+    /**
+     * Add a sample to the history.
+     *
+     * Blocks that have fallen out of the history's retention are removed at the same time.
+     *
+     * @param timestamp The sample's timestamp, in nanoseconds. Samples must be added in
+     *                  chronological order.
+     * @param value The sample's value.
+     */
+    void add(long timestamp, float value) {
+        headTimestamps[headCount] = timestamp;
+        headValues[headCount] = value;
+        headCount++;
+
+        if (headCount == BLOCK_SIZE) {
+            SampleBlock block = new SampleBlock(headTimestamps, headValues, headCount);
+
+            blocks.add(block);
+            blockBytes += block.getByteCount();
+            blockSamples += block.getCount();
+
+            headCount = 0;
+        }
+
+        // There are only ever a few blocks to remove, and usually none
+        long oldest = timestamp - retention;
+        while (!blocks.isEmpty() && blocks.get(0).getLastTimestamp() < oldest) {
+            SampleBlock block = blocks.remove(0);
+
+            blockBytes -= block.getByteCount();
+            blockSamples -= block.getCount();
+        }
+
+        version++;
+    }
+
+    /**
+     * Get a compressed block.
+     *
+     * @param index The index of the block, where 0 is the oldest block.
+     *
+     * @return The block.
+     */
+    SampleBlock getBlock(int index) {
+        return blocks.get(index);
+    }
+
+    /**
+     * Get the number of samples in the uncompressed head block.
+     *
+     * @return The number of samples that haven't been sealed into a block yet.
+     */
+    int getHeadCount() {
+        return headCount;
+    }
+
+    /**
+     * Get the timestamp of a sample in the head block.
+     *
+     * @param index The index of the sample in the head block.
+     *
+     * @return The sample's timestamp.
+     */
+    long getHeadTimestamp(int index) {
+        return headTimestamps[index];
+    }
+
+    /**
+     * Get the value of a sample in the head block.
+     *
+     * @param index The index of the sample in the head block.
+     *
+     * @return The sample's value.
+     */
+    float getHeadValue(int index) {
+        return headValues[index];
+    }
+
+    /**
+     * Find the first block that could hold a sample at or after a given time.
+     *
+     * @param from The time to search for, in nanoseconds.
+     *
+     * @return The index of the first block whose last sample is at or after the given time, or the
+     *         number of blocks if there are none.
+     */
+    private int findBlock(long from) {
+        int low = 0;
+        int high = blocks.size();
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (blocks.get(middle).getLastTimestamp() < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+}
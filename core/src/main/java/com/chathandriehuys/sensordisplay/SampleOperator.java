@@ -0,0 +1,30 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A streaming operator that derives the values of one series from another.
+ *
+ * Operators are attached to a series with {@link TimeSeries#derive(String, SampleOperator)}. Each
+ * time a sample is added to the source series, every operator derived from it is evaluated once,
+ * in the order they were attached. A stateless operator acts as a map over its input; stateful
+ * operators, such as filters, keep whatever state they need between samples.
+ *
+ * Operators that keep state belong to a single derived series, so an instance must not be passed
+ * to {@link TimeSeries#derive(String, SampleOperator)} more than once.
+ *
+ * @see Operators
+ */
+public interface SampleOperator {
+
+    /**
+     * Calculate the derived value of a new sample.
+     *
+     * @param input The series the operator is derived from. Its window and statistics already
+     *              include the new sample.
+     * @param timestamp The sample's timestamp, in nanoseconds on a monotonic clock.
+     * @param value The sample's value in the input series.
+     *
+     * @return The sample's value in the derived series.
+     */
+    float apply(TimeSeries input, long timestamp, float value);
+}
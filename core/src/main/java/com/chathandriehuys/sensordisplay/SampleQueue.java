@@ -0,0 +1,259 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A bounded, lock-free queue for handing samples from one thread to another.
+ *
+ * The queue is safe for exactly one producer thread and one consumer thread. The producer adds
+ * samples with {@link #offer(long, float)} and the consumer removes them in bulk with
+ * {@link #drain(long[], float[])}. Samples are stored in preallocated primitive arrays, so neither
+ * side allocates or blocks. If the consumer falls behind and the queue fills up, new samples are
+ * dropped and counted rather than stalling the producer.
+ *
+ * A queue can also be created with several columns of values, for samples with a value on each of
+ * several axes. Each column is its own array, so draining copies each column out in bulk.
+ */
+public class SampleQueue {
+    private float[] values;
+    private float[][] columns;
+
+    private long[] timestamps;
+
+    private int mask;
+
+    // The head is the number of samples ever removed from the queue, and is only written by the
+    // consumer. The tail is the number of samples ever added, and is only written by the producer.
+    private AtomicLong dropped;
+    private AtomicLong head;
+    private AtomicLong tail;
+
+    /**
+     * Create a new queue.
+     *
+     * @param capacity The minimum number of samples the queue can hold. This is rounded up to the
+     *                 next power of two.
+     */
+    public SampleQueue(int capacity) {
+        this(capacity, 1);
+    }
+
+    /**
+     * Create a new queue for samples with several values.
+     *
+     * @param capacity The minimum number of samples the queue can hold. This is rounded up to the
+     *                 next power of two.
+     * @param columnCount The number of values each sample has.
+     */
+    public SampleQueue(int capacity, int columnCount) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+
+        if (columnCount < 1) {
+            throw new IllegalArgumentException("The queue needs at least one column.");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        columns = new float[columnCount][size];
+        timestamps = new long[size];
+
+        values = columns[0];
+
+        mask = size - 1;
+
+        dropped = new AtomicLong();
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Remove the samples currently in the queue.
+     *
+     * This must only be called from the consumer thread.
+     *
+     * @param timestamps The array to copy the samples' timestamps into, from oldest to newest.
+     * @param values The array to copy the samples' values into, from oldest to newest.
+     *
+     * @return The number of samples removed from the queue. This is never more than the length of
+     *         the provided arrays.
+     */
+    public int drain(long[] timestamps, float[] values) {
+        long start = head.get();
+        long end = Math.min(tail.get(), start + Math.min(timestamps.length, values.length));
+
+        int count = (int) (end - start);
+        int index = (int) start & mask;
+
+        copyOut(this.timestamps, index, timestamps, count);
+        copyOut(this.values, index, values, count);
+
+        // Publish the freed slots to the producer
+        head.lazySet(end);
+
+        return count;
+    }
+
+    /**
+     * Remove the samples currently in the queue, with their values in every column.
+     *
+     * This must only be called from the consumer thread.
+     *
+     * @param timestamps The array to copy the samples' timestamps into, from oldest to newest.
+     * @param columns An array for each of the queue's columns to copy the samples' values into.
+     *
+     * @return The number of samples removed from the queue. This is never more than the length of
+     *         the provided arrays.
+     */
+    public int drain(long[] timestamps, float[][] columns) {
+        if (columns.length < this.columns.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + this.columns.length + " columns, but only got "
+                            + columns.length + ".");
+        }
+
+        int limit = timestamps.length;
+        for (int i = 0; i < this.columns.length; i++) {
+            limit = Math.min(limit, columns[i].length);
+        }
+
+        long start = head.get();
+        long end = Math.min(tail.get(), start + limit);
+
+        int count = (int) (end - start);
+        int index = (int) start & mask;
+
+        copyOut(this.timestamps, index, timestamps, count);
+
+        for (int i = 0; i < this.columns.length; i++) {
+            copyOut(this.columns[i], index, columns[i], count);
+        }
+
+        // Publish the freed slots to the producer
+        head.lazySet(end);
+
+        return count;
+    }
+
+    /**
+     * Get the number of values each sample in the queue has.
+     *
+     * @return The number of columns.
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Get the number of samples that were dropped because the queue was full.
+     *
+     * @return The number of dropped samples.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Add a sample to the queue.
+     *
+     * This must only be called from the producer thread. If the queue has several columns, only
+     * the first one is set.
+     *
+     * @param timestamp The sample's timestamp.
+     * @param value The sample's value.
+     *
+     * @return A boolean indicating if the sample was added. This is false if the queue was full.
+     */
+    public boolean offer(long timestamp, float value) {
+        long position = tail.get();
+
+        if (position - head.get() == values.length) {
+            dropped.lazySet(dropped.get() + 1);
+
+            return false;
+        }
+
+        int index = (int) position & mask;
+
+        timestamps[index] = timestamp;
+        values[index] = value;
+
+        // Publish the sample to the consumer. The ordered write makes sure the sample's contents
+        // are visible before the new tail.
+        tail.lazySet(position + 1);
+
+        return true;
+    }
+
+    /**
+     * Add a sample with a value in every column to the queue.
+     *
+     * This must only be called from the producer thread.
+     *
+     * @param timestamp The sample's timestamp.
+     * @param values The sample's value in each column. Any values past the queue's columns are
+     *               ignored.
+     *
+     * @return A boolean indicating if the sample was added. This is false if the queue was full.
+     */
+    public boolean offer(long timestamp, float[] values) {
+        long position = tail.get();
+
+        if (position - head.get() == timestamps.length) {
+            dropped.lazySet(dropped.get() + 1);
+
+            return false;
+        }
+
+        int index = (int) position & mask;
+
+        timestamps[index] = timestamp;
+
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][index] = values[i];
+        }
+
+        // Publish the sample to the consumer. The ordered write makes sure the sample's contents
+        // are visible before the new tail.
+        tail.lazySet(position + 1);
+
+        return true;
+    }
+
+    /**
+     * Get the number of samples waiting in the queue.
+     *
+     * This can be called from any thread, but the queue may have changed by the time it returns.
+     *
+     * @return The number of samples that have been added but not yet drained.
+     */
+    public int size() {
+        // Read the head first, so the result is never negative
+        long start = head.get();
+
+        return (int) (tail.get() - start);
+    }
+
+    /**
+     * Copy samples out of one of the queue's arrays.
+     *
+     * The samples are copied in at most two pieces: up to the end of the queue's array, and then
+     * any remainder that wraps around to the start.
+     *
+     * @param source The queue's array.
+     * @param index The index in the queue's array of the first sample.
+     * @param destination The array to copy the samples into, starting at its first element.
+     * @param count The number of samples to copy.
+     */
+    private void copyOut(Object source, int index, Object destination, int count) {
+        int firstLength = Math.min(count, timestamps.length - index);
+
+        System.arraycopy(source, index, destination, 0, firstLength);
+        System.arraycopy(source, 0, destination, firstLength, count - firstLength);
+    }
+}
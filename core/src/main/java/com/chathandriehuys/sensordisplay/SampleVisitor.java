@@ -0,0 +1,18 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * An interface for reading the samples in a {@link TimeSeries} without copying them.
+ */
+public interface SampleVisitor {
+
+    /**
+     * Handle a single sample from a series.
+     *
+     * Samples are visited from oldest to newest.
+     *
+     * @param timestamp The sample's timestamp.
+     * @param value The sample's value.
+     */
+    void visit(long timestamp, float value);
+}
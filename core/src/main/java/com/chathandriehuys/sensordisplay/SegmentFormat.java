@@ -0,0 +1,212 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+
+/**
+ * The layout of the segment files a recorded session is stored in.
+ *
+ * Each segment starts with a fixed-size header, followed by fixed-size records holding a
+ * timestamp and a value. Records are never rewritten, so a segment only grows until it is full,
+ * at which point recording continues in the next segment. All numbers are little-endian.
+ *
+ * <pre>
+ * Header (32 bytes)
+ *   0  int    magic number, "SDRS"
+ *   4  short  format version
+ *   6  short  record size
+ *   8  int    sensor type
+ *   12 int    index of the segment in its session
+ *   16 long   wall-clock time the segment was started at, in milliseconds
+ *   24 long   number of records written to the segment
+ *
+ * Record (12 bytes)
+ *   0  long   timestamp, in nanoseconds
+ *   8  float  value
+ * </pre>
+ *
+ * @see SessionRecorder
+ * @see SessionReader
+ */
+final class SegmentFormat {
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_SIZE = 32;
+    static final int MAGIC = 0x53524453;
+    static final int RECORD_SIZE = 12;
+    static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int RECORD_COUNT_OFFSET = 24;
+    private static final int RECORD_SIZE_OFFSET = 6;
+    private static final int SEGMENT_INDEX_OFFSET = 12;
+    private static final int SENSOR_TYPE_OFFSET = 8;
+    private static final int START_TIME_OFFSET = 16;
+    private static final int VALUE_OFFSET = 8;
+    private static final int VERSION_OFFSET = 4;
+
+    private static final String FILE_PREFIX = "segment-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private SegmentFormat() {}
+
+    /**
+     * Get the name of a segment's file.
+     *
+     * Segment indices are zero-padded so that sorting the names sorts the segments.
+     *
+     * @param index The index of the segment in its session.
+     *
+     * @return The name of the segment's file.
+     */
+    static String getFileName(int index) {
+        return String.format(Locale.US, "%s%06d%s", FILE_PREFIX, index, FILE_SUFFIX);
+    }
+
+    /**
+     * Get the number of records written to a segment.
+     *
+     * @param segment The segment's contents.
+     *
+     * @return The number of records in the segment.
+     */
+    static long getRecordCount(ByteBuffer segment) {
+        return segment.getLong(RECORD_COUNT_OFFSET);
+    }
+
+    /**
+     * Get the sensor type a segment was recorded from.
+     *
+     * @param segment The segment's contents.
+     *
+     * @return The sensor type stored in the segment's header.
+     */
+    static int getSensorType(ByteBuffer segment) {
+        return segment.getInt(SENSOR_TYPE_OFFSET);
+    }
+
+    /**
+     * Get the time a segment was started at.
+     *
+     * @param segment The segment's contents.
+     *
+     * @return The wall-clock time stored in the segment's header, in milliseconds.
+     */
+    static long getStartTime(ByteBuffer segment) {
+        return segment.getLong(START_TIME_OFFSET);
+    }
+
+    /**
+     * Get the timestamp of a record.
+     *
+     * @param segment The segment's contents.
+     * @param record The index of the record in the segment.
+     *
+     * @return The record's timestamp.
+     */
+    static long getTimestamp(ByteBuffer segment, int record) {
+        return segment.getLong(HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    /**
+     * Get the value of a record.
+     *
+     * @param segment The segment's contents.
+     * @param record The index of the record in the segment.
+     *
+     * @return The record's value.
+     */
+    static float getValue(ByteBuffer segment, int record) {
+        return segment.getFloat(HEADER_SIZE + record * RECORD_SIZE + VALUE_OFFSET);
+    }
+
+    /**
+     * Determine if a file name belongs to a segment.
+     *
+     * @param name The name of the file.
+     *
+     * @return A boolean indicating if the file is a segment.
+     */
+    static boolean isSegmentFile(String name) {
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+    }
+
+    /**
+     * Write a record to a segment.
+     *
+     * @param segment The segment's contents.
+     * @param record The index of the record in the segment.
+     * @param timestamp The record's timestamp.
+     * @param value The record's value.
+     */
+    static void putRecord(ByteBuffer segment, int record, long timestamp, float value) {
+        int position = HEADER_SIZE + record * RECORD_SIZE;
+
+        segment.putLong(position, timestamp);
+        segment.putFloat(position + VALUE_OFFSET, value);
+    }
+
+    /**
+     * Set the number of records written to a segment.
+     *
+     * This should only be updated after the records themselves are written, so that a segment
+     * left behind by a crash never claims records it doesn't have.
+     *
+     * @param segment The segment's contents.
+     * @param count The number of records in the segment.
+     */
+    static void putRecordCount(ByteBuffer segment, long count) {
+        segment.putLong(RECORD_COUNT_OFFSET, count);
+    }
+
+    /**
+     * Check that a segment's header is one that can be read.
+     *
+     * @param segment The segment's contents.
+     * @param name The name of the segment, used in error messages.
+     *
+     * @throws IOException If the segment isn't a segment, is from an unsupported version of the
+     *                     format, or claims more records than it holds.
+     */
+    static void validateHeader(ByteBuffer segment, String name) throws IOException {
+        if (segment.capacity() < HEADER_SIZE || segment.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException(name + " is not a recorded segment.");
+        }
+
+        if (segment.getShort(VERSION_OFFSET) != VERSION) {
+            throw new IOException(
+                    name + " uses unsupported format version " + segment.getShort(VERSION_OFFSET)
+                            + ".");
+        }
+
+        if (segment.getShort(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+            throw new IOException(name + " has an unexpected record size.");
+        }
+
+        long capacity = (segment.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        if (getRecordCount(segment) < 0 || getRecordCount(segment) > capacity) {
+            throw new IOException(name + " claims more records than it holds.");
+        }
+    }
+
+    /**
+     * Write the header of a new, empty segment.
+     *
+     * @param segment The segment's contents.
+     * @param sensorType The type of sensor being recorded.
+     * @param index The index of the segment in its session.
+     * @param startTime The wall-clock time the segment was started at, in milliseconds.
+     */
+    static void writeHeader(ByteBuffer segment, int sensorType, int index, long startTime) {
+        segment.putInt(MAGIC_OFFSET, MAGIC);
+        segment.putShort(VERSION_OFFSET, (short) VERSION);
+        segment.putShort(RECORD_SIZE_OFFSET, (short) RECORD_SIZE);
+        segment.putInt(SENSOR_TYPE_OFFSET, sensorType);
+        segment.putInt(SEGMENT_INDEX_OFFSET, index);
+        segment.putLong(START_TIME_OFFSET, startTime);
+        segment.putLong(RECORD_COUNT_OFFSET, 0);
+    }
+}
@@ -0,0 +1,45 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A source of sensor samples that can be plotted or recorded.
+ *
+ * The rest of the pipeline only sees the samples a source emits, so a live sensor, a replayed
+ * session, and a synthetic signal are all interchangeable. This makes it possible to reproduce a
+ * recorded session, or to drive a {@link TimeSeries} at a chosen rate, without a device.
+ *
+ * Samples are emitted on a thread owned by the source, in chronological order, and one at a time.
+ * Consumers should hand them off quickly, for example to a {@link SampleQueue}, since a slow
+ * consumer holds up the source.
+ *
+ * @see PacedSource
+ */
+public interface SensorSource {
+
+    /**
+     * Get the type of sensor the source's samples come from, or imitate.
+     *
+     * @return The sensor type, using the same constants as Android's {@code Sensor} class.
+     */
+    int getSensorType();
+
+    /**
+     * Start emitting samples.
+     *
+     * A source that has been stopped can be started again, and carries on from where it stopped.
+     *
+     * @param consumer The consumer to pass each sample to. Timestamps are in nanoseconds on a
+     *                 monotonic clock, but not necessarily the clock the consumer uses.
+     *
+     * @throws IllegalStateException If the source is already running.
+     */
+    void start(SampleVisitor consumer);
+
+    /**
+     * Stop emitting samples.
+     *
+     * Once this returns, the consumer won't be passed any more samples until the source is started
+     * again. Stopping a source that isn't running has no effect.
+     */
+    void stop();
+}
@@ -0,0 +1,106 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A view of the points in a {@link TimeSeries} that fall within a period of time.
+ *
+ * The slice reads the points directly from the series' storage rather than copying them, so it
+ * only stays valid until points are added to or expired from the series. A slice can be reused
+ * for any number of queries, which keeps repeated queries such as drawing a frame allocation-free.
+ *
+ * @see TimeSeries#getSlice(long, long, SeriesSlice)
+ */
+public class SeriesSlice {
+    private int size;
+    private int start;
+
+    private TimeSeries series;
+
+    /**
+     * Create a new, empty slice.
+     */
+    public SeriesSlice() {
+        size = 0;
+        start = 0;
+    }
+
+    /**
+     * Get the index of the slice's first point in the series.
+     *
+     * @return The index in the series of the first point in the slice.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Get the timestamp of a point in the slice.
+     *
+     * @param index The index of the point, where 0 is the oldest point in the slice.
+     *
+     * @return The point's timestamp, in nanoseconds on a monotonic clock.
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+
+        return series.getTimestamp(start + index);
+    }
+
+    /**
+     * Get the value of a point in the slice.
+     *
+     * @param index The index of the point, where 0 is the oldest point in the slice.
+     *
+     * @return The point's value.
+     */
+    public float getValue(int index) {
+        checkIndex(index);
+
+        return series.getValue(start + index);
+    }
+
+    /**
+     * Get the number of points in the slice.
+     *
+     * @return The number of points in the slice.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visit each point in the slice, from oldest to newest.
+     *
+     * @param visitor The visitor to pass each point to.
+     */
+    public void visit(SampleVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(series.getTimestamp(start + i), series.getValue(start + i));
+        }
+    }
+
+    /**
+     * Point the slice at a run of points in a series.
+     *
+     * @param series The series the points belong to.
+     * @param start The index in the series of the first point in the slice.
+     * @param size The number of points in the slice.
+     */
+    void set(TimeSeries series, int start, int size) {
+        this.series = series;
+        this.start = start;
+        this.size = size;
+    }
+
+    /**
+     * Make sure an index refers to a point in the slice.
+     *
+     * @param index The index to check.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot get point " + index + " from a slice of size " + size + ".");
+        }
+    }
+}
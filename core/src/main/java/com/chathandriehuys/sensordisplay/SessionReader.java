@@ -0,0 +1,248 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+/**
+ * Reads back a session written by a {@link SessionRecorder}.
+ *
+ * Every segment in the session is memory-mapped read-only, so samples are paged in from storage
+ * as they are read rather than loaded up front. The samples of all the segments are presented as
+ * a single sequence, in the order they were recorded.
+ */
+public class SessionReader {
+    private int sensorType;
+
+    private long size;
+    private long startTime;
+
+    // The index of the first sample in each segment, followed by the total number of samples
+    private long[] segmentStarts;
+
+    private MappedByteBuffer[] segments;
+
+    /**
+     * Open a recorded session.
+     *
+     * @param directory The directory the session was recorded to.
+     *
+     * @throws IOException If the directory doesn't exist, or one of its segments can't be read.
+     */
+    public SessionReader(File directory) throws IOException {
+        String[] names = directory.list();
+        if (names == null) {
+            throw new FileNotFoundException(directory + " is not a directory.");
+        }
+
+        // Segment names are zero-padded, so sorting them puts them in the order they were written
+        Arrays.sort(names);
+
+        int count = 0;
+        for (String name : names) {
+            if (SegmentFormat.isSegmentFile(name)) {
+                names[count++] = name;
+            }
+        }
+
+        segments = new MappedByteBuffer[count];
+        segmentStarts = new long[count + 1];
+
+        for (int i = 0; i < count; i++) {
+            segments[i] = map(new File(directory, names[i]));
+            SegmentFormat.validateHeader(segments[i], names[i]);
+
+            segmentStarts[i + 1] = segmentStarts[i] + SegmentFormat.getRecordCount(segments[i]);
+        }
+
+        size = segmentStarts[count];
+
+        if (count > 0) {
+            sensorType = SegmentFormat.getSensorType(segments[0]);
+            startTime = SegmentFormat.getStartTime(segments[0]);
+        }
+    }
+
+    /**
+     * Get the number of segment files in the session.
+     *
+     * @return The number of segments in the session.
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Get the type of sensor the session was recorded from.
+     *
+     * @return The sensor type, or 0 if the session is empty.
+     */
+    public int getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Get the time the session was started at.
+     *
+     * @return The wall-clock time the session started at, in milliseconds, or 0 if the session is
+     *         empty.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Get the timestamp of a sample.
+     *
+     * @param index The index of the sample, where 0 is the first sample recorded.
+     *
+     * @return The sample's timestamp, in nanoseconds.
+     */
+    public long getTimestamp(long index) {
+        int segment = findSegment(index);
+
+        return SegmentFormat.getTimestamp(
+                segments[segment],
+                (int) (index - segmentStarts[segment]));
+    }
+
+    /**
+     * Get the value of a sample.
+     *
+     * @param index The index of the sample, where 0 is the first sample recorded.
+     *
+     * @return The sample's value.
+     */
+    public float getValue(long index) {
+        int segment = findSegment(index);
+
+        return SegmentFormat.getValue(segments[segment], (int) (index - segmentStarts[segment]));
+    }
+
+    /**
+     * Copy a run of samples into arrays.
+     *
+     * This is the fastest way to replay a session into a {@link TimeSeries}, since the arrays can
+     * be passed straight to {@link TimeSeries#addPoints(long[], float[], int, int)}.
+     *
+     * @param start The index of the first sample to read.
+     * @param timestamps The array to copy the samples' timestamps into.
+     * @param values The array to copy the samples' values into.
+     *
+     * @return The number of samples read. This is less than the length of the arrays once the end
+     *         of the session is reached.
+     */
+    public int read(long start, long[] timestamps, float[] values) {
+        if (start < 0 || start > size) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot read from sample " + start + " of a session of size " + size + ".");
+        }
+
+        int count = (int) Math.min(Math.min(timestamps.length, values.length), size - start);
+
+        int read = 0;
+        while (read < count) {
+            int segment = findSegment(start + read);
+            int record = (int) (start + read - segmentStarts[segment]);
+            int available = (int) Math.min(
+                    segmentStarts[segment + 1] - start - read,
+                    count - read);
+
+            for (int i = 0; i < available; i++) {
+                timestamps[read + i] = SegmentFormat.getTimestamp(segments[segment], record + i);
+                values[read + i] = SegmentFormat.getValue(segments[segment], record + i);
+            }
+
+            read += available;
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the number of samples in the session.
+     *
+     * @return The number of samples recorded in every segment of the session.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Visit each sample in the session, in the order they were recorded.
+     *
+     * @param visitor The visitor to pass each sample to.
+     */
+    public void visit(SampleVisitor visitor) {
+        for (int segment = 0; segment < segments.length; segment++) {
+            int count = (int) (segmentStarts[segment + 1] - segmentStarts[segment]);
+
+            for (int i = 0; i < count; i++) {
+                visitor.visit(
+                        SegmentFormat.getTimestamp(segments[segment], i),
+                        SegmentFormat.getValue(segments[segment], i));
+            }
+        }
+    }
+
+    /**
+     * Find the segment holding a sample.
+     *
+     * @param index The index of the sample.
+     *
+     * @return The index of the segment holding the sample.
+     */
+    private int findSegment(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Cannot get sample " + index + " from a session of size " + size + ".");
+        }
+
+        // Empty segments share their start with the next segment, so take the last match
+        int low = 0;
+        int high = segments.length - 1;
+
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if (segmentStarts[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Map a segment file into memory.
+     *
+     * @param file The segment file.
+     *
+     * @return The segment's contents.
+     *
+     * @throws IOException If the file could not be mapped.
+     */
+    private static MappedByteBuffer map(File file) throws IOException {
+        // The mapping stays valid after the file is closed
+        RandomAccessFile access = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = access.getChannel();
+            MappedByteBuffer segment = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    0,
+                    channel.size());
+            segment.order(SegmentFormat.BYTE_ORDER);
+
+            return segment;
+        } finally {
+            access.close();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Records every sample from a sensor to disk.
+ *
+ * Samples are written to a session directory as a sequence of append-only segment files, each of
+ * which is memory-mapped so that writing a sample is a plain memory store rather than a system
+ * call. The format of the segments is described by {@link SegmentFormat}, and they can be read back
+ * with a {@link SessionReader}.
+ *
+ * Recording a sample only hands it to a lock-free {@link SampleQueue}. A dedicated writer thread
+ * drains the queue in bulk, maps new segments as old ones fill up, and periodically flushes the
+ * segment to storage, so none of the slow work happens on the thread producing the samples. If
+ * the writer falls behind, samples are dropped and counted rather than blocking the producer.
+ */
+public class SessionRecorder implements Closeable {
+    private static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 18;
+    private static final int QUEUE_CAPACITY = 1 << 14;
+    private static final long DEFAULT_SYNC_INTERVAL = 1000;
+    private static final long WRITE_INTERVAL = 10;
+
+    private volatile boolean closed;
+
+    private File directory;
+
+    private float[] drainedValues;
+    private long[] drainedTimestamps;
+
+    private int recordsPerSegment;
+    private int segmentIndex;
+    private int segmentRecords;
+    private int sensorType;
+
+    private volatile IOException error;
+
+    private long lastSync;
+    private long startTime;
+    private long syncInterval;
+
+    private volatile long recordedCount;
+
+    private MappedByteBuffer segment;
+
+    private SampleQueue queue;
+
+    private Thread writer;
+
+    /**
+     * Start recording a session with the default segment size and flush interval.
+     *
+     * @param directory The directory to write the session's segments to. It is created if it
+     *                  doesn't exist.
+     * @param sensorType The type of sensor being recorded, which is stored with the session.
+     */
+    public SessionRecorder(File directory, int sensorType) {
+        this(directory, sensorType, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Start recording a session.
+     *
+     * No files are touched until the writer thread handles the first sample, so this is safe to
+     * call from the UI thread.
+     *
+     * @param directory The directory to write the session's segments to. It is created if it
+     *                  doesn't exist.
+     * @param sensorType The type of sensor being recorded, which is stored with the session.
+     * @param recordsPerSegment The number of samples each segment file holds.
+     * @param syncInterval The longest time recorded samples are left unflushed, in milliseconds.
+     */
+    public SessionRecorder(
+            File directory,
+            int sensorType,
+            int recordsPerSegment,
+            long syncInterval) {
+        // Each segment has to fit in a single mapping
+        int maxRecords = (Integer.MAX_VALUE - SegmentFormat.HEADER_SIZE)
+                / SegmentFormat.RECORD_SIZE;
+        if (recordsPerSegment < 1 || recordsPerSegment > maxRecords) {
+            throw new IllegalArgumentException(
+                    "The number of records per segment must be between 1 and " + maxRecords + ".");
+        }
+
+        if (syncInterval < 0) {
+            throw new IllegalArgumentException("The sync interval cannot be negative.");
+        }
+
+        this.directory = directory;
+        this.sensorType = sensorType;
+        this.recordsPerSegment = recordsPerSegment;
+        this.syncInterval = syncInterval;
+
+        startTime = System.currentTimeMillis();
+
+        queue = new SampleQueue(QUEUE_CAPACITY);
+        drainedTimestamps = new long[QUEUE_CAPACITY];
+        drainedValues = new float[QUEUE_CAPACITY];
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "SessionRecorder");
+        writer.start();
+    }
+
+    /**
+     * Stop recording.
+     *
+     * This blocks until every sample recorded so far has been written and flushed to storage, so
+     * it should not be called from the UI thread. Samples recorded after this are dropped.
+     *
+     * @throws IOException If any of the session's segments could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while stopping the recorder.");
+        }
+
+        // The writer has stopped, so this thread is now the only consumer of the queue
+        if (error == null) {
+            try {
+                writePending();
+                finishSegment();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Get the number of samples that were dropped because the writer fell behind.
+     *
+     * @return The number of samples dropped so far.
+     */
+    public long getDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    /**
+     * Get the number of samples written to the session's segments.
+     *
+     * @return The number of samples written so far.
+     */
+    public long getRecordedCount() {
+        return recordedCount;
+    }
+
+    /**
+     * Record a sample.
+     *
+     * This must always be called from the same thread, and never blocks.
+     *
+     * @param timestamp The sample's timestamp, in nanoseconds.
+     * @param value The sample's value.
+     *
+     * @return A boolean indicating if the sample was accepted. Samples are rejected if the writer
+     *         has fallen behind or failed, or the recorder has been closed.
+     */
+    public boolean record(long timestamp, float value) {
+        return !closed && error == null && queue.offer(timestamp, value);
+    }
+
+    /**
+     * Flush the current segment and release it.
+     */
+    private void finishSegment() {
+        if (segment == null) {
+            return;
+        }
+
+        segment.force();
+        segment = null;
+    }
+
+    /**
+     * Create the next segment file and map it into memory.
+     *
+     * @throws IOException If the file could not be created or mapped.
+     */
+    private void openSegment() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the session directory " + directory + ".");
+        }
+
+        File file = new File(directory, SegmentFormat.getFileName(segmentIndex));
+        long size = SegmentFormat.HEADER_SIZE
+                + (long) recordsPerSegment * SegmentFormat.RECORD_SIZE;
+
+        // The mapping stays valid after the file is closed
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            segment = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            access.close();
+        }
+
+        segment.order(SegmentFormat.BYTE_ORDER);
+        SegmentFormat.writeHeader(segment, sensorType, segmentIndex, startTime);
+
+        segmentIndex++;
+        segmentRecords = 0;
+    }
+
+    /**
+     * Write samples to disk until the recorder is closed.
+     */
+    private void runWriter() {
+        try {
+            while (!closed) {
+                writePending();
+
+                Thread.sleep(WRITE_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            // Nothing interrupts the writer, but if something does, close() finishes the work
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Reported when the recorder is closed
+            error = e;
+        }
+    }
+
+    /**
+     * Write the samples waiting in the queue to the current segment.
+     *
+     * The segment is flushed if the sync interval has passed since it was last flushed.
+     *
+     * @throws IOException If a new segment was needed and could not be opened.
+     */
+    private void writePending() throws IOException {
+        int count;
+
+        while ((count = queue.drain(drainedTimestamps, drainedValues)) > 0) {
+            for (int i = 0; i < count; i++) {
+                if (segment == null || segmentRecords == recordsPerSegment) {
+                    finishSegment();
+                    openSegment();
+                }
+
+                SegmentFormat.putRecord(
+                        segment,
+                        segmentRecords++,
+                        drainedTimestamps[i],
+                        drainedValues[i]);
+
+                // The count is published once per batch, and before moving on to a new segment
+                if (segmentRecords == recordsPerSegment || i == count - 1) {
+                    SegmentFormat.putRecordCount(segment, segmentRecords);
+                }
+            }
+
+            recordedCount += count;
+        }
+
+        long now = System.nanoTime() / 1000000;
+        if (segment != null && now - lastSync >= syncInterval) {
+            segment.force();
+            lastSync = now;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A synthetic signal, sampled by a {@link SyntheticSource}.
+ *
+ * @see Signals
+ */
+public interface Signal {
+
+    /**
+     * Calculate the signal's value at a point in time.
+     *
+     * Signals are sampled in chronological order, so noisy signals can draw their noise from a
+     * single random number generator.
+     *
+     * @param time The time since the signal started, in nanoseconds.
+     *
+     * @return The signal's value.
+     */
+    float getValue(long time);
+}
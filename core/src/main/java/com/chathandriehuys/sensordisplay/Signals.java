@@ -0,0 +1,115 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.Random;
+
+
+/**
+ * Factories for commonly used {@link Signal}s.
+ *
+ * Noise is Gaussian, and drawn from a generator with a fixed seed, so a synthetic source produces
+ * the same samples each time it is run.
+ */
+public final class Signals {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final long SEED = 42;
+
+    private Signals() {}
+
+    /**
+     * Create a signal of noise with occasional bursts of much larger noise.
+     *
+     * This imitates an accelerometer that is mostly at rest, but is periodically shaken.
+     *
+     * @param period The time from the start of one burst to the start of the next, in
+     *               nanoseconds.
+     * @param duration The length of each burst, in nanoseconds.
+     * @param baseline The signal's value between bursts.
+     * @param amplitude The standard deviation of the noise during a burst.
+     * @param noise The standard deviation of the noise between bursts.
+     *
+     * @return A bursty signal.
+     */
+    public static Signal bursts(
+            final long period,
+            final long duration,
+            final float baseline,
+            final float amplitude,
+            final float noise) {
+        if (period <= 0 || duration < 0 || duration > period) {
+            throw new IllegalArgumentException("Bursts must fit within a positive period.");
+        }
+
+        return new Signal() {
+            private Random random = new Random(SEED);
+
+            @Override
+            public float getValue(long time) {
+                float deviation = time % period < duration ? amplitude : noise;
+
+                return baseline + (float) (deviation * random.nextGaussian());
+            }
+        };
+    }
+
+    /**
+     * Create a sine wave with added noise.
+     *
+     * @param frequency The frequency of the wave, in Hz.
+     * @param amplitude The amplitude of the wave.
+     * @param offset The value the wave oscillates around.
+     * @param noise The standard deviation of the noise added to each sample.
+     *
+     * @return A noisy sine wave.
+     */
+    public static Signal sine(
+            final double frequency,
+            final float amplitude,
+            final float offset,
+            final float noise) {
+        return new Signal() {
+            private Random random = new Random(SEED);
+
+            @Override
+            public float getValue(long time) {
+                double phase = 2 * Math.PI * frequency * (time / NANOS_PER_SECOND);
+
+                return offset + (float) (amplitude * Math.sin(phase)
+                        + noise * random.nextGaussian());
+            }
+        };
+    }
+
+    /**
+     * Create a square wave with added noise.
+     *
+     * Sharp steps are a good test of how decimation and rollups preserve edges.
+     *
+     * @param period The time spent at each level, in nanoseconds.
+     * @param low The value of the lower level, which the signal starts at.
+     * @param high The value of the higher level.
+     * @param noise The standard deviation of the noise added to each sample.
+     *
+     * @return A noisy square wave.
+     */
+    public static Signal steps(
+            final long period,
+            final float low,
+            final float high,
+            final float noise) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The step period must be positive.");
+        }
+
+        return new Signal() {
+            private Random random = new Random(SEED);
+
+            @Override
+            public float getValue(long time) {
+                float level = (time / period) % 2 == 0 ? low : high;
+
+                return level + (float) (noise * random.nextGaussian());
+            }
+        };
+    }
+}
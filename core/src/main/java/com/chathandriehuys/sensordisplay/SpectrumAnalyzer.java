@@ -0,0 +1,238 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * Calculates the spectrum of a signal over overlapping, windowed frames.
+ *
+ * Samples are collected in a ring holding the most recent frame. Every time another hop's worth of
+ * samples has arrived, the frame is tapered with the window function and transformed with a real
+ * FFT, and the amplitude of each frequency bin is added to the analyzer's {@link SpectrumSeries}.
+ * The mean of each frame is removed first, so a constant offset, such as gravity in an
+ * accelerometer reading, doesn't swamp the rest of the spectrum.
+ *
+ * All the analyzer's buffers are allocated up front, so analyzing a frame never allocates. It's
+ * meant to be fed on the thread samples arrive on, either directly as a {@link SampleVisitor} or
+ * as a listener of a {@link TimeSeries}, and its series can then be read on any thread. Samples
+ * must all be added from the same thread.
+ *
+ * <pre>
+ * SpectrumAnalyzer analyzer = new SpectrumAnalyzer(256, 64, WindowFunction.HANN);
+ * source.start(analyzer);
+ *
+ * SpectrumSeries spectrum = analyzer.getSeries();
+ * </pre>
+ */
+public class SpectrumAnalyzer implements SampleVisitor, TimeSeriesListener {
+    /**
+     * The number of frames kept by the analyzer's series, unless another capacity is given.
+     */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private float sampleRate;
+    private float windowSum;
+
+    private float[] amplitudes;
+    private float[] frame;
+    private float[] samples;
+    private float[] window;
+
+    private int hopSize;
+    private int mask;
+    private int next;
+    private int pendingCount;
+
+    private long sampleCount;
+
+    private long[] timestamps;
+
+    private RealFft fft;
+
+    private SpectrumSeries series;
+
+    private WindowFunction windowFunction;
+
+    /**
+     * Create an analyzer that keeps the default number of frames.
+     *
+     * @param frameSize The number of samples in each frame. This must be a power of two.
+     * @param hopSize The number of samples between the starts of consecutive frames. A hop of a
+     *                quarter of the frame size is typical.
+     * @param windowFunction The window to taper each frame with.
+     */
+    public SpectrumAnalyzer(int frameSize, int hopSize, WindowFunction windowFunction) {
+        this(frameSize, hopSize, windowFunction, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an analyzer.
+     *
+     * @param frameSize The number of samples in each frame. This must be a power of two.
+     * @param hopSize The number of samples between the starts of consecutive frames, between 1 and
+     *                the frame size.
+     * @param windowFunction The window to taper each frame with.
+     * @param capacity The number of frames the analyzer's series keeps.
+     */
+    public SpectrumAnalyzer(
+            int frameSize,
+            int hopSize,
+            WindowFunction windowFunction,
+            int capacity) {
+        if (hopSize < 1 || hopSize > frameSize) {
+            throw new IllegalArgumentException(
+                    "The hop size must be between 1 and the frame size, not " + hopSize + ".");
+        }
+
+        this.hopSize = hopSize;
+        this.windowFunction = windowFunction;
+
+        fft = new RealFft(frameSize);
+        series = new SpectrumSeries(frameSize, capacity);
+
+        amplitudes = new float[fft.getBinCount()];
+        frame = new float[frameSize];
+        samples = new float[frameSize];
+        timestamps = new long[frameSize];
+        window = windowFunction.getCoefficients(frameSize);
+
+        for (int i = 0; i < frameSize; i++) {
+            windowSum += window[i];
+        }
+
+        mask = frameSize - 1;
+    }
+
+    /**
+     * Get the number of samples in each frame.
+     *
+     * @return The frame size.
+     */
+    public int getFrameSize() {
+        return samples.length;
+    }
+
+    /**
+     * Get the number of samples between the starts of consecutive frames.
+     *
+     * @return The hop size.
+     */
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    /**
+     * Get the series the analyzer adds each frame's spectrum to.
+     *
+     * @return The analyzer's series.
+     */
+    public SpectrumSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * Get the window each frame is tapered with.
+     *
+     * @return The window function.
+     */
+    public WindowFunction getWindowFunction() {
+        return windowFunction;
+    }
+
+    /**
+     * Analyze a point added to a series.
+     *
+     * @param series The series the point was added to.
+     * @param timestamp The point's timestamp.
+     * @param value The point's value.
+     */
+    @Override
+    public void pointAdded(TimeSeries series, long timestamp, float value) {
+        visit(timestamp, value);
+    }
+
+    /**
+     * Analyze a batch of points added to a series.
+     *
+     * @param series The series the points were added to.
+     * @param timestamps The points' timestamps.
+     * @param values The points' values.
+     * @param offset The index in the arrays of the first point.
+     * @param count The number of points.
+     */
+    @Override
+    public void pointsAdded(
+            TimeSeries series,
+            long[] timestamps,
+            float[] values,
+            int offset,
+            int count) {
+        for (int i = offset; i < offset + count; i++) {
+            visit(timestamps[i], values[i]);
+        }
+    }
+
+    /**
+     * Add a sample to the current frame, and analyze the frame if a hop has passed.
+     *
+     * @param timestamp The sample's timestamp, in nanoseconds.
+     * @param value The sample's value.
+     */
+    @Override
+    public void visit(long timestamp, float value) {
+        samples[next] = value;
+        timestamps[next] = timestamp;
+
+        next = (next + 1) & mask;
+        sampleCount++;
+        pendingCount++;
+
+        // The first frame is analyzed once it is full, and every hop after that
+        if (sampleCount >= samples.length && pendingCount >= hopSize) {
+            pendingCount = 0;
+
+            analyze();
+        }
+    }
+
+    /**
+     * Calculate the spectrum of the most recent frame and add it to the series.
+     */
+    private void analyze() {
+        double sum = 0;
+        for (int i = 0; i < samples.length; i++) {
+            sum += samples[i];
+        }
+
+        float mean = (float) (sum / samples.length);
+
+        // Unroll the ring into the frame, oldest sample first. The oldest sample is the one that
+        // will be overwritten next.
+        for (int i = 0; i < samples.length; i++) {
+            frame[i] = (samples[(next + i) & mask] - mean) * window[i];
+        }
+
+        fft.magnitudes(frame, amplitudes);
+
+        // Scale the magnitudes so a sinusoid centered on a bin shows its own amplitude. Every bin
+        // but the first and last also stands for its negative frequency, so it counts twice.
+        float scale = 2 / windowSum;
+        for (int i = 0; i < amplitudes.length; i++) {
+            amplitudes[i] *= scale;
+        }
+
+        amplitudes[0] /= 2;
+        amplitudes[amplitudes.length - 1] /= 2;
+
+        // Estimate the sample rate from the frame's own timestamps, keeping the last estimate if
+        // they don't span any time
+        long newest = timestamps[(next - 1) & mask];
+        long span = newest - timestamps[next];
+
+        if (span > 0) {
+            sampleRate = (float) ((samples.length - 1) * NANOS_PER_SECOND / span);
+        }
+
+        series.add(newest, amplitudes, sampleRate);
+    }
+}
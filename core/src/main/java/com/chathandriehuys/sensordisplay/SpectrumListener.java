@@ -0,0 +1,19 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * An interface for listening to updates from a {@link SpectrumSeries}.
+ */
+public interface SpectrumListener {
+
+    /**
+     * Handle the addition of a new frame to the specified series.
+     *
+     * This is called on the thread that added the frame, after the frame can be read.
+     *
+     * @param series The series the frame was added to.
+     * @param frame The number of the frame that was added.
+     * @param timestamp The frame's timestamp.
+     */
+    void frameAdded(SpectrumSeries series, long frame, long timestamp);
+}
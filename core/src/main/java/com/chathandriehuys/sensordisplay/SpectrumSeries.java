@@ -0,0 +1,209 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A series of spectra, each calculated from a frame of a signal by a {@link SpectrumAnalyzer}.
+ *
+ * The series keeps its most recent frames in a ring of preallocated arrays, so adding a frame
+ * never allocates. Frames are numbered from 0 in the order they were added, and a frame can be
+ * read back for as long as it is one of the most recent {@link #getCapacity()} frames.
+ *
+ * Frames are added on the analyzer's thread, and can be read on any other thread, such as the UI
+ * thread. Each frame is copied out whole, so a reader never sees a frame that is only partly
+ * written. Listeners are notified of each new frame on the analyzer's thread, so a reader doesn't
+ * have to poll for them.
+ */
+public class SpectrumSeries {
+    private CopyOnWriteArrayList<SpectrumListener> listeners;
+
+    private float sampleRate;
+
+    private float[][] frames;
+
+    private int frameSize;
+
+    private long frameCount;
+
+    private long[] timestamps;
+
+    /**
+     * Create a new series.
+     *
+     * @param frameSize The number of samples in each frame the spectra are calculated from.
+     * @param capacity The number of frames to keep.
+     */
+    SpectrumSeries(int frameSize, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+
+        this.frameSize = frameSize;
+
+        frames = new float[capacity][frameSize / 2 + 1];
+        listeners = new CopyOnWriteArrayList<>();
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Add a listener to the series.
+     *
+     * The listener is notified each time a frame is added, and can be added on any thread.
+     *
+     * @param listener The listener to send notifications to.
+     */
+    public void addListener(SpectrumListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Get the number of frequency bins in each spectrum.
+     *
+     * @return The number of bins, from 0 Hz up to and including the Nyquist frequency.
+     */
+    public int getBinCount() {
+        return frames[0].length;
+    }
+
+    /**
+     * Get the number of frames the series keeps.
+     *
+     * @return The series' capacity.
+     */
+    public int getCapacity() {
+        return frames.length;
+    }
+
+    /**
+     * Copy a frame's spectrum.
+     *
+     * @param frame The number of the frame, which must be one of the frames the series still
+     *              keeps.
+     * @param out The array to copy the amplitude of each frequency bin into.
+     *
+     * @return The frame's timestamp.
+     *
+     * @see #getOldestFrame()
+     */
+    public synchronized long getFrame(long frame, float[] out) {
+        int index = getIndex(frame);
+
+        System.arraycopy(frames[index], 0, out, 0, frames[index].length);
+
+        return timestamps[index];
+    }
+
+    /**
+     * Get the number of frames that have been added to the series.
+     *
+     * @return The number of frames ever added, which is one more than the number of the newest
+     *         frame.
+     */
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Get the number of samples in each frame the spectra are calculated from.
+     *
+     * @return The frame size.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Get the center frequency of a bin.
+     *
+     * @param bin The index of the bin.
+     *
+     * @return The bin's frequency, in Hz, at the sample rate of the newest frame.
+     */
+    public synchronized float getFrequency(int bin) {
+        return bin * sampleRate / frameSize;
+    }
+
+    /**
+     * Get the number of the oldest frame the series still keeps.
+     *
+     * @return The oldest frame's number. If the series is empty, this is equal to the frame
+     *         count.
+     */
+    public synchronized long getOldestFrame() {
+        return Math.max(frameCount - frames.length, 0);
+    }
+
+    /**
+     * Get the rate of the signal the newest frame was sampled at.
+     *
+     * @return The sample rate, in Hz, or 0 if the series is empty.
+     */
+    public synchronized float getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Get the timestamp of a frame.
+     *
+     * @param frame The number of the frame, which must be one of the frames the series still
+     *              keeps.
+     *
+     * @return The timestamp of the newest sample in the frame.
+     */
+    public synchronized long getTimestamp(long frame) {
+        return timestamps[getIndex(frame)];
+    }
+
+    /**
+     * Remove a listener from the series.
+     *
+     * @param listener The listener to stop sending notifications to.
+     */
+    public void removeListener(SpectrumListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Add a frame to the series, replacing the oldest frame if the series is full.
+     *
+     * The listeners are notified once the frame has been added, without holding the series' lock,
+     * so they are free to read it.
+     *
+     * @param timestamp The timestamp of the newest sample in the frame.
+     * @param amplitudes The amplitude of each frequency bin.
+     * @param sampleRate The rate the frame was sampled at, in Hz.
+     */
+    void add(long timestamp, float[] amplitudes, float sampleRate) {
+        long frame;
+
+        synchronized (this) {
+            frame = frameCount;
+            int index = (int) (frame % frames.length);
+
+            System.arraycopy(amplitudes, 0, frames[index], 0, frames[index].length);
+            timestamps[index] = timestamp;
+
+            this.sampleRate = sampleRate;
+            frameCount++;
+        }
+
+        for (SpectrumListener listener : listeners) {
+            listener.frameAdded(this, frame, timestamp);
+        }
+    }
+
+    /**
+     * Find where a frame is stored.
+     *
+     * @param frame The number of the frame.
+     *
+     * @return The index of the frame in the ring.
+     */
+    private int getIndex(long frame) {
+        if (frame < getOldestFrame() || frame >= frameCount) {
+            throw new IllegalArgumentException("Frame " + frame + " isn't in the series.");
+        }
+
+        return (int) (frame % frames.length);
+    }
+}
@@ -0,0 +1,110 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * A sensor source that samples a synthetic {@link Signal} at a fixed rate.
+ *
+ * Samples are stamped with their exact scheduled times, so the stream is perfectly regular even
+ * though it is emitted in batches. Rates of tens of kHz are supported, which is far beyond what
+ * real sensors deliver, so the pipeline can be tested with plenty of headroom.
+ */
+public class SyntheticSource extends PacedSource {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private double rate;
+
+    private long count;
+    private long origin;
+
+    private Signal signal;
+
+    /**
+     * Create a source that samples a signal.
+     *
+     * @param sensorType The type of sensor the source imitates.
+     * @param signal The signal to sample.
+     * @param rate The number of samples to emit per second.
+     */
+    public SyntheticSource(int sensorType, Signal signal, double rate) {
+        this(sensorType, signal, rate, DEFAULT_BATCH_PERIOD);
+    }
+
+    /**
+     * Create a source that samples a signal.
+     *
+     * @param sensorType The type of sensor the source imitates.
+     * @param signal The signal to sample.
+     * @param rate The number of samples to emit per second.
+     * @param batchPeriod The time between batches of samples, in nanoseconds.
+     */
+    public SyntheticSource(int sensorType, Signal signal, double rate, long batchPeriod) {
+        super(sensorType, batchPeriod);
+
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("The sample rate must be positive.");
+        }
+
+        this.signal = signal;
+        this.rate = rate;
+    }
+
+    /**
+     * Get the number of samples emitted so far.
+     *
+     * @return The number of samples emitted.
+     */
+    public long getEmittedCount() {
+        return count;
+    }
+
+    /**
+     * Get the rate the signal is sampled at.
+     *
+     * @return The number of samples emitted per second.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Line the next sample up with the time the source was started at.
+     *
+     * @param startTime The time the source was started at, in nanoseconds.
+     */
+    @Override
+    protected void begin(long startTime) {
+        origin = startTime - getOffset(count);
+    }
+
+    /**
+     * Emit every sample that is due.
+     *
+     * @param now The current time, in nanoseconds.
+     * @param consumer The consumer to pass each sample to.
+     *
+     * @return True, since a signal never runs out of samples.
+     */
+    @Override
+    protected boolean emit(long now, SampleVisitor consumer) {
+        while (true) {
+            long offset = getOffset(count);
+            if (origin + offset > now) {
+                return true;
+            }
+
+            consumer.visit(origin + offset, signal.getValue(offset));
+            count++;
+        }
+    }
+
+    /**
+     * Get the time a sample is scheduled for.
+     *
+     * @param index The index of the sample.
+     *
+     * @return The time from the start of the signal to the sample, in nanoseconds.
+     */
+    private long getOffset(long index) {
+        return (long) (index * NANOS_PER_SECOND / rate);
+    }
+}
@@ -0,0 +1,1057 @@
+package com.chathandriehuys.sensordisplay;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A series of data that is tracked over time.
+ *
+ * Timestamps are nanoseconds on a monotonic clock, such as the clock used for sensor event
+ * timestamps. The series never reads a clock itself; the current time is always taken from the
+ * newest point or provided by the caller.
+ *
+ * A series can either be a source series, which points are added to, or a derived series created
+ * with {@link #derive(String, SampleOperator)}. Derived series are views over the source series'
+ * storage: each one adds a column of values next to the source's timestamps, is evaluated in the
+ * same pass that adds each point to the source, and expires in the same pass as the source.
+ *
+ * A source series can also have channels, which hold the other values of a multi-valued sample,
+ * such as the axes of an accelerometer reading. Channels share the source's storage in the same
+ * way, but their values are written alongside each point instead of being calculated from it. See
+ * {@link MultiChannelSeries}.
+ *
+ * A series isn't thread-safe. If points are added on one thread while the series is read on
+ * another, both threads must hold the series' lock from {@link #getLock()}, which is shared by a
+ * source series and everything derived from it. A reader that must never wait for a writer, such
+ * as a plot being drawn, can use {@link Lock#tryLock()} and fall back to what it read last time.
+ * Listeners are notified on the thread that added the points, while it still holds the lock if it
+ * took it.
+ */
+public class TimeSeries {
+    private static final long DOMAIN_NANOS = 5000000000L;
+
+    private ArrayList<RollupTier> rollupTiers;
+    private ArrayList<TimeSeries> channels;
+    private ArrayList<TimeSeries> derivedSeries;
+    private ArrayList<TimeSeriesListener> listeners;
+
+    private float[] derivedValues;
+
+    private int column;
+    private int pendingCount;
+
+    private long domain;
+
+    private Lock lock;
+
+    private MinMaxIndex extremes;
+
+    private OrderStatisticTree ranks;
+
+    private SampleBuffer data;
+
+    private SampleHistory history;
+
+    private SampleOperator operator;
+
+    private String title;
+
+    private TimeSeries input;
+    private TimeSeries source;
+
+    private WindowedMoments statistics;
+
+    /**
+     * Create a new series of data.
+     *
+     * @param title The title of the series.
+     */
+    public TimeSeries(String title) {
+        this.title = title;
+
+        data = new SampleBuffer();
+        extremes = new MinMaxIndex();
+        listeners = new ArrayList<>();
+        rollupTiers = new ArrayList<>();
+        statistics = new WindowedMoments();
+
+        channels = new ArrayList<>();
+        derivedSeries = new ArrayList<>();
+        derivedValues = new float[0];
+        lock = new ReentrantLock();
+        source = this;
+
+        domain = DOMAIN_NANOS;
+    }
+
+    /**
+     * Create a new series derived from another series.
+     *
+     * The new series shares the storage of the source series, with its values in a new column.
+     * Any points already in the source series are run through the operator immediately, each one
+     * against the input's window as it was when that point arrived, as far as the window is still
+     * stored.
+     *
+     * @param title The title of the series.
+     * @param input The series to derive values from.
+     * @param operator The operator that calculates the derived values, or null for a channel
+     *                 whose values are written along with each point.
+     */
+    private TimeSeries(String title, TimeSeries input, SampleOperator operator) {
+        this.title = title;
+        this.input = input;
+        this.operator = operator;
+
+        source = input.source;
+        data = source.data;
+        column = data.addColumn();
+
+        extremes = new MinMaxIndex();
+        listeners = new ArrayList<>();
+        rollupTiers = new ArrayList<>();
+        statistics = new WindowedMoments();
+
+        domain = source.domain;
+
+        if (operator == null) {
+            for (int i = 0; i < data.size(); i++) {
+                evaluate(i);
+            }
+        } else {
+            backFill();
+        }
+    }
+
+    /**
+     * Add a listener to the series.
+     *
+     * The listener is notified each time a point is added to the current series.
+     *
+     * @param listener The listener to send notifications to.
+     */
+    public void addListener(TimeSeriesListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Add a point to the series.
+     *
+     * Adding a point updates the series' statistics, such as the average, and removes
+     * any expired points from the series. It then notifies all the listeners about the new point.
+     *
+     * The point's timestamp is used as the current time when expiring points, so points must be
+     * added in chronological order.
+     *
+     * Every series derived from this one is updated with the new point before any listeners are
+     * notified.
+     *
+     * @param timestamp The point's timestamp, in nanoseconds on a monotonic clock.
+     * @param value The point's value.
+     */
+    public void addPoint(long timestamp, float value) {
+        checkIsSource();
+
+        data.add(timestamp, value);
+
+        processPoint(timestamp, value);
+    }
+
+    /**
+     * Add a batch of points to the series.
+     *
+     * This has the same effect on the series' data and statistics as adding each point with
+     * {@link #addPoint(long, float)}, but listener notification only happens once for the whole
+     * batch. If no series are derived from this one with an operator, expiry also only happens
+     * once.
+     *
+     * @param timestamps The points' timestamps, in chronological order.
+     * @param values The points' values.
+     * @param offset The index in the arrays of the first point to add.
+     * @param count The number of points to add.
+     */
+    public void addPoints(long[] timestamps, float[] values, int offset, int count) {
+        checkIsSource();
+
+        if (count == 0) {
+            return;
+        }
+
+        data.add(timestamps, values, offset, count);
+
+        processPoints(timestamps, values, offset, count);
+    }
+
+    /**
+     * Keep a summary of the series' history at a lower resolution.
+     *
+     * The series itself only keeps its raw points for its domain. A rollup tier keeps the minimum,
+     * maximum, and mean of each slice of time for much longer, and is updated in constant time as
+     * points are added. Adding a few tiers with increasing bucket widths, such as 100 ms, 1 s, and
+     * 10 s, allows long stretches of history to be plotted with a bounded amount of memory.
+     *
+     * The points currently in the series are added to the new tier immediately.
+     *
+     * @param bucketWidth The amount of time covered by each bucket of the tier, in nanoseconds.
+     * @param retention The amount of time the tier keeps buckets for, in nanoseconds.
+     *
+     * @return The new tier.
+     *
+     * @see #getRollupTier(long, long)
+     */
+    public RollupTier addRollupTier(long bucketWidth, long retention) {
+        RollupTier tier = new RollupTier(bucketWidth, retention);
+
+        int count = data.size() - source.pendingCount;
+        for (int i = 0; i < count; i++) {
+            tier.add(data.getTimestamp(i), data.getValue(column, i));
+        }
+
+        // Keep the tiers sorted from finest to coarsest
+        int index = 0;
+        while (index < rollupTiers.size()
+                && rollupTiers.get(index).getBucketWidth() <= bucketWidth) {
+            index++;
+        }
+
+        rollupTiers.add(index, tier);
+
+        return tier;
+    }
+
+    /**
+     * Find the first point at or after a given time.
+     *
+     * The points are sorted by timestamp, so this is a binary search rather than a scan of the
+     * series.
+     *
+     * @param timestamp The time to search for, in nanoseconds on the same clock as the series'
+     *                  timestamps.
+     *
+     * @return The index of the first point with a timestamp at or after the given time, or the
+     *         size of the series if every point is older.
+     */
+    public int ceilingIndex(long timestamp) {
+        return data.ceilingIndex(timestamp);
+    }
+
+    /**
+     * Create a series derived from the current series.
+     *
+     * The derived series shares the timestamps of the current series rather than keeping its own
+     * copy, and is updated in the same pass that adds each point to the source series. Derived
+     * series can themselves be used to derive further series, which are evaluated after the
+     * series they are derived from.
+     *
+     * @param title The title of the derived series.
+     * @param operator The operator that calculates each value of the derived series from the
+     *                 corresponding value of the current series.
+     *
+     * @return The derived series.
+     *
+     * @see Operators
+     */
+    public TimeSeries derive(String title, SampleOperator operator) {
+        TimeSeries series = new TimeSeries(title, this, operator);
+
+        source.derivedSeries.add(series);
+
+        return series;
+    }
+
+    /**
+     * Remove any points that have fallen out of the series' domain.
+     *
+     * Points are stored in the order they were added, so the expired points are always at the start
+     * of the series. Only those points are examined, which keeps the cost of expiry proportional to
+     * the number of points removed rather than the size of the series.
+     *
+     * A source series and all the series derived from it expire together, in a single pass over
+     * the expired points.
+     *
+     * @param now The current time, in nanoseconds on the same clock as the series' timestamps.
+     */
+    public void expire(long now) {
+        if (source != this) {
+            source.expire(now);
+
+            return;
+        }
+
+        long minTime = now - domain;
+
+        int expired = 0;
+        while (expired < data.size() && data.getTimestamp(expired) < minTime) {
+            removeFromStatistics(expired);
+
+            for (int i = 0; i < derivedSeries.size(); i++) {
+                derivedSeries.get(i).removeFromStatistics(expired);
+            }
+
+            expired++;
+        }
+
+        data.removeOldest(expired);
+        extremes.removeOldest(expired);
+
+        for (int i = 0; i < derivedSeries.size(); i++) {
+            derivedSeries.get(i).extremes.removeOldest(expired);
+        }
+    }
+
+    /**
+     * Get the series' average value.
+     *
+     * @return The series' running average.
+     */
+    public float getAverage() {
+        return (float) statistics.getMean();
+    }
+
+    /**
+     * Get a series that contains the average of the current series.
+     *
+     * The returned series is derived from the current series, so it is updated in the same pass
+     * that adds each new point.
+     *
+     * @return A series that tracks the average of the current series.
+     *
+     * @see #getStatistics()
+     */
+    public TimeSeries getAverageSeries() {
+        return derive("Average", Operators.movingAverage());
+    }
+
+    /**
+     * Get the series' domain.
+     *
+     * @return An interval containing the minimum and maximum x-values in the series, in
+     *         nanoseconds before the newest point.
+     */
+    public LongInterval getDomain() {
+        return getDomain(new LongInterval(0, 0));
+    }
+
+    /**
+     * Get the series' domain, reusing an existing interval.
+     *
+     * @param out The interval to store the domain in, in nanoseconds before the newest point.
+     *
+     * @return The provided interval.
+     */
+    public LongInterval getDomain(LongInterval out) {
+        out.set(0, domain);
+
+        return out;
+    }
+
+    /**
+     * Get a series that contains the current series with its outliers removed.
+     *
+     * Points further from the window's median than the given number of estimated standard
+     * deviations are replaced by the median.
+     *
+     * @param threshold The number of standard deviations a point can be from the median before it
+     *                  is considered an outlier. A value of 3 is typical.
+     *
+     * @return A series that tracks the current series without its outliers.
+     *
+     * @see Operators#hampel(double)
+     */
+    public TimeSeries getFilteredSeries(double threshold) {
+        return derive("Filtered", Operators.hampel(threshold));
+    }
+
+    /**
+     * Get the series' compressed history.
+     *
+     * @return The history, or null if the series doesn't keep one.
+     *
+     * @see #keepHistory(long)
+     */
+    public SampleHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Get the lock that guards the series' storage.
+     *
+     * A source series shares its lock with all of its channels and derived series, so holding it
+     * keeps every one of them from changing.
+     *
+     * @return The series' lock.
+     */
+    public Lock getLock() {
+        return source.lock;
+    }
+
+    /**
+     * Get the median of the series' current window.
+     *
+     * @return The median value, or {@link Float#NaN} if the series is empty.
+     *
+     * @see #getPercentile(double)
+     */
+    public float getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Get a series that contains the median of the current series.
+     *
+     * Unlike the average, the median isn't pulled around by short spikes in the current series.
+     *
+     * @return A series that tracks the median of the current series.
+     */
+    public TimeSeries getMedianSeries() {
+        return derive("Median", Operators.median());
+    }
+
+    /**
+     * Get a percentile of the series' current window.
+     *
+     * The first time this is called, the series starts keeping its window in an order statistic
+     * tree. From then on, adding and expiring points costs O(log n) more, and reading any
+     * percentile takes O(log n) time.
+     *
+     * @param percentile The percentile to get, between 0 and 100. Percentiles that fall between
+     *                   two values are linearly interpolated.
+     *
+     * @return The value at the given percentile, or {@link Float#NaN} if the series is empty.
+     */
+    public float getPercentile(double percentile) {
+        return getRanks().getPercentile(percentile);
+    }
+
+    /**
+     * Get a series that contains a percentile of the current series.
+     *
+     * @param percentile The percentile to track, between 0 and 100.
+     *
+     * @return A series that tracks the given percentile of the current series.
+     */
+    public TimeSeries getPercentileSeries(double percentile) {
+        return derive("Percentile " + percentile, Operators.percentile(percentile));
+    }
+
+    /**
+     * Get the series' range.
+     *
+     * @return An interval containing the minimum and maximum y-values in the series.
+     */
+    public FloatInterval getRange() {
+        return getRange(new FloatInterval(0, 0));
+    }
+
+    /**
+     * Get the series' range, reusing an existing interval.
+     *
+     * @param out The interval to store the minimum and maximum y-values of the series in.
+     *
+     * @return The provided interval.
+     */
+    public FloatInterval getRange(FloatInterval out) {
+        if (extremes.isEmpty()) {
+            out.set(Integer.MAX_VALUE, Integer.MIN_VALUE);
+        } else {
+            out.set(extremes.getMin(), extremes.getMax());
+        }
+
+        return out;
+    }
+
+    /**
+     * Get the version of the series' range.
+     *
+     * @return A number that changes each time the minimum or maximum y-value of the series
+     *         changes.
+     */
+    public int getRangeVersion() {
+        return extremes.getVersion();
+    }
+
+    /**
+     * Get how much of the series' history is kept.
+     *
+     * @return The longest of the series' domain, the retention of its compressed history, and the
+     *         retention of its longest rollup tier, in nanoseconds.
+     */
+    public long getRetention() {
+        long retention = domain;
+
+        if (history != null) {
+            retention = Math.max(retention, history.getRetention());
+        }
+
+        for (int i = 0; i < rollupTiers.size(); i++) {
+            retention = Math.max(retention, rollupTiers.get(i).getRetention());
+        }
+
+        return retention;
+    }
+
+    /**
+     * Choose the rollup tier to plot a period of the series' history with.
+     *
+     * If the series' raw points cover the whole period, no tier is needed. Otherwise, the
+     * coarsest tier whose buckets are still no wider than the requested resolution is chosen, so
+     * the plot is filled with as few points as possible. Only tiers that cover the whole period are
+     * considered, unless none of them do, in which case the tier with the longest retention is
+     * used.
+     *
+     * @param duration The length of the period to plot, in nanoseconds.
+     * @param resolution The amount of time covered by a single pixel column, in nanoseconds.
+     *
+     * @return The tier to plot, or null if the raw points should be plotted.
+     */
+    public RollupTier getRollupTier(long duration, long resolution) {
+        if (duration <= domain || rollupTiers.isEmpty()) {
+            return null;
+        }
+
+        // If no tier covers the whole period, the longest one is the best that can be done
+        long requiredRetention = Math.min(duration, getRetention());
+
+        RollupTier chosen = null;
+        for (int i = 0; i < rollupTiers.size(); i++) {
+            RollupTier tier = rollupTiers.get(i);
+
+            if (tier.getRetention() < requiredRetention) {
+                continue;
+            }
+
+            // Tiers are sorted from finest to coarsest. The finest tier is used if none are fine
+            // enough for the resolution.
+            if (chosen == null || tier.getBucketWidth() <= resolution) {
+                chosen = tier;
+            }
+        }
+
+        return chosen;
+    }
+
+    /**
+     * Get the points in the series that fall within a period of time.
+     *
+     * @param from The start of the period, in nanoseconds on the same clock as the series'
+     *             timestamps.
+     * @param to The end of the period, inclusive.
+     *
+     * @return A view of the points with timestamps in the period.
+     */
+    public SeriesSlice getSlice(long from, long to) {
+        return getSlice(from, to, new SeriesSlice());
+    }
+
+    /**
+     * Get the points in the series that fall within a period of time, reusing an existing slice.
+     *
+     * The bounds of the period are found by binary search, and the points themselves are not
+     * copied, so the cost doesn't depend on the number of points in the series or the period.
+     *
+     * @param from The start of the period, in nanoseconds on the same clock as the series'
+     *             timestamps.
+     * @param to The end of the period, inclusive.
+     * @param out The slice to store the points in.
+     *
+     * @return The provided slice.
+     */
+    public SeriesSlice getSlice(long from, long to, SeriesSlice out) {
+        int start = data.ceilingIndex(from);
+        int end = to == Long.MAX_VALUE ? data.size() : data.ceilingIndex(to + 1);
+
+        out.set(this, start, Math.max(end - start, 0));
+
+        return out;
+    }
+
+    /**
+     * Get the statistics for the points currently in the series.
+     *
+     * The statistics are updated as points are added and expired, so reading them is cheap. The
+     * returned object is owned by the series and must not be modified.
+     *
+     * @return The statistics for the series' current window.
+     */
+    public WindowedMoments getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Get the timestamp of a point in the series.
+     *
+     * @param index The index of the point, where 0 is the oldest point in the series.
+     *
+     * @return The point's timestamp, in nanoseconds on a monotonic clock.
+     */
+    public long getTimestamp(int index) {
+        return data.getTimestamp(index);
+    }
+
+    /**
+     * Get the title of the series.
+     *
+     * @return The series' title.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the value of a point in the series.
+     *
+     * @param index The index of the point, where 0 is the oldest point in the series.
+     *
+     * @return The point's value.
+     */
+    public float getValue(int index) {
+        return data.getValue(column, index);
+    }
+
+    /**
+     * Get the series' variance.
+     *
+     * @return The series' variance.
+     */
+    public float getVariance() {
+        return (float) statistics.getVariance();
+    }
+
+    /**
+     * Get a series that contains the variance of the current series.
+     *
+     * The returned series is derived from the current series, so it is updated in the same pass
+     * that adds each new point.
+     *
+     * @return A series that tracks the variance of the current series.
+     *
+     * @see #getStatistics()
+     */
+    public TimeSeries getVarianceSeries() {
+        return derive("Variance", Operators.variance());
+    }
+
+    /**
+     * Keep every point of the series for longer than its domain, in compressed form.
+     *
+     * Unlike a rollup tier, the history is lossless: every timestamp and value can be read back
+     * exactly. Points are compressed in blocks as they are added, which typically takes a few
+     * bytes per point instead of the 12 bytes taken by each point in the series' window.
+     *
+     * The points currently in the series are added to the history immediately.
+     *
+     * @param retention The amount of time to keep points for, in nanoseconds.
+     *
+     * @return The new history.
+     */
+    public SampleHistory keepHistory(long retention) {
+        if (history != null) {
+            throw new IllegalStateException("The series already keeps a history.");
+        }
+
+        history = new SampleHistory(retention);
+
+        int count = data.size() - source.pendingCount;
+        for (int i = 0; i < count; i++) {
+            history.add(data.getTimestamp(i), data.getValue(column, i));
+        }
+
+        return history;
+    }
+
+    /**
+     * Get the number of points in the series.
+     *
+     * @return The number of points in the series.
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Visit each point in the series, from oldest to newest.
+     *
+     * The points are read directly from the series' storage, so nothing is copied or allocated.
+     *
+     * @param visitor The visitor to pass each point to.
+     */
+    public void visit(SampleVisitor visitor) {
+        for (int i = 0; i < data.size(); i++) {
+            visitor.visit(data.getTimestamp(i), data.getValue(column, i));
+        }
+    }
+
+    /**
+     * Add a channel to the series.
+     *
+     * The channel shares the series' storage, with its values in a new column that is written
+     * along with each point by {@link #addPoint(long, float[])} or
+     * {@link #addPoints(long[], float[][], int, int)}. Apart from that, the channel behaves like a
+     * derived series: it has its own statistics, can be plotted, and can be used to derive further
+     * series.
+     *
+     * @param title The title of the channel.
+     *
+     * @return The new channel.
+     *
+     * @throws IllegalStateException If the series already has points, since they would have no
+     *                               value in the new channel.
+     */
+    TimeSeries addChannel(String title) {
+        checkIsSource();
+
+        if (data.size() > 0) {
+            throw new IllegalStateException("Channels can only be added to an empty series.");
+        }
+
+        TimeSeries channel = new TimeSeries(title, this, null);
+
+        channels.add(channel);
+        derivedSeries.add(channel);
+
+        return channel;
+    }
+
+    /**
+     * Add a point with a value in the series and each of its channels.
+     *
+     * @param timestamp The point's timestamp, in nanoseconds on a monotonic clock.
+     * @param values The point's value in the series, followed by its value in each channel in the
+     *               order the channels were added.
+     */
+    void addPoint(long timestamp, float[] values) {
+        checkIsSource();
+
+        data.add(timestamp, values[0]);
+
+        int index = data.size() - 1;
+        for (int i = 0; i < channels.size(); i++) {
+            data.setValue(channels.get(i).column, index, values[i + 1]);
+        }
+
+        processPoint(timestamp, values[0]);
+    }
+
+    /**
+     * Add a batch of points with values in the series and each of its channels.
+     *
+     * Each column of values is copied into the series' storage in bulk.
+     *
+     * @param timestamps The points' timestamps, in chronological order.
+     * @param values The points' values in the series, followed by their values in each channel
+     *               in the order the channels were added.
+     * @param offset The index in the arrays of the first point to add.
+     * @param count The number of points to add.
+     */
+    void addPoints(long[] timestamps, float[][] values, int offset, int count) {
+        checkIsSource();
+
+        if (count == 0) {
+            return;
+        }
+
+        data.add(timestamps, values[0], offset, count);
+
+        int start = data.size() - count;
+        for (int i = 0; i < channels.size(); i++) {
+            data.setValues(channels.get(i).column, start, values[i + 1], offset, count);
+        }
+
+        processPoints(timestamps, values[0], offset, count);
+    }
+
+    /**
+     * Add a point to the series' compressed history and each of its rollup tiers.
+     *
+     * @param timestamp The point's timestamp.
+     * @param value The point's value in the current series.
+     */
+    private void addToHistory(long timestamp, float value) {
+        if (history != null) {
+            history.add(timestamp, value);
+        }
+
+        for (int i = 0; i < rollupTiers.size(); i++) {
+            rollupTiers.get(i).add(timestamp, value);
+        }
+    }
+
+    /**
+     * Run the points already in the shared storage through the operator.
+     *
+     * Operators such as a moving average read the input's window statistics, which cover the whole
+     * current window. While back-filling, the input's statistics are swapped for scratch ones that
+     * are replayed point by point, so each point only sees the points that came before it. The
+     * input's own statistics are put back afterwards.
+     *
+     * Every stored point is within the domain of the newest one, so nothing expires during the
+     * replay. Points that have already expired can't be replayed, so the oldest points are
+     * evaluated against only the part of their window that is still stored.
+     */
+    private void backFill() {
+        WindowedMoments inputStatistics = input.statistics;
+        OrderStatisticTree inputRanks = input.ranks;
+
+        input.statistics = new WindowedMoments();
+        input.ranks = new OrderStatisticTree();
+
+        try {
+            for (int i = 0; i < data.size(); i++) {
+                float value = data.getValue(input.column, i);
+
+                input.statistics.add(value);
+                input.ranks.add(value);
+
+                evaluate(i);
+            }
+        } finally {
+            input.statistics = inputStatistics;
+            input.ranks = inputRanks;
+        }
+    }
+
+    /**
+     * Make sure points can be added to the current series.
+     */
+    private void checkIsSource() {
+        if (source != this) {
+            throw new IllegalStateException("Points can only be added to a source series.");
+        }
+    }
+
+    /**
+     * Calculate the value of a point in the current derived series, and add it to the series'
+     * statistics.
+     *
+     * @param index The index of the point in the shared storage.
+     */
+    private void evaluate(int index) {
+        float value;
+
+        // A channel's value is written along with the point, so it only has to be read
+        if (operator == null) {
+            value = data.getValue(column, index);
+        } else {
+            value = operator.apply(
+                    input,
+                    data.getTimestamp(index),
+                    data.getValue(input.column, index));
+
+            data.setValue(column, index, value);
+        }
+
+        extremes.add(value);
+        statistics.add(value);
+
+        if (ranks != null) {
+            ranks.add(value);
+        }
+
+        addToHistory(data.getTimestamp(index), value);
+    }
+
+    /**
+     * Calculate the value of a point in every series derived from the current series.
+     *
+     * Derived series are stored in the order they were created, so each one is evaluated after
+     * the series it reads from.
+     *
+     * @param index The index of the point in the shared storage.
+     */
+    private void evaluateDerivedSeries(int index) {
+        for (int i = 0; i < derivedSeries.size(); i++) {
+            derivedSeries.get(i).evaluate(index);
+        }
+    }
+
+    /**
+     * Get the order statistics of the series' current window, creating them if needed.
+     *
+     * @return The order statistics of the series' current window.
+     */
+    private OrderStatisticTree getRanks() {
+        if (ranks == null) {
+            ranks = new OrderStatisticTree();
+
+            int count = data.size() - source.pendingCount;
+            for (int i = 0; i < count; i++) {
+                ranks.add(data.getValue(column, i));
+            }
+        }
+
+        return ranks;
+    }
+
+    /**
+     * Determine if any series are derived from the current series with an operator.
+     *
+     * @return A boolean indicating if any of the series sharing the current series' storage are
+     *         calculated from it, rather than being channels.
+     */
+    private boolean hasOperatorSeries() {
+        for (int i = 0; i < derivedSeries.size(); i++) {
+            if (derivedSeries.get(i).operator != null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Update the series after a point has been stored.
+     *
+     * @param timestamp The point's timestamp.
+     * @param value The point's value.
+     */
+    private void processPoint(long timestamp, float value) {
+        // Update the series' statistics
+        extremes.add(value);
+        statistics.add(value);
+
+        if (ranks != null) {
+            ranks.add(value);
+        }
+
+        addToHistory(timestamp, value);
+
+        // Remove any expired points, and then evaluate the derived series against the updated
+        // window
+        expire(timestamp);
+        evaluateDerivedSeries(data.size() - 1);
+
+        rebaseStatistics();
+
+        // Notify listeners
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).pointAdded(this, timestamp, value);
+        }
+
+        int index = data.size() - 1;
+
+        for (int i = 0; i < derivedSeries.size(); i++) {
+            TimeSeries series = derivedSeries.get(i);
+            float derivedValue = data.getValue(series.column, index);
+
+            for (int j = 0; j < series.listeners.size(); j++) {
+                series.listeners.get(j).pointAdded(series, timestamp, derivedValue);
+            }
+        }
+    }
+
+    /**
+     * Update the series after a batch of points has been stored.
+     *
+     * @param timestamps The points' timestamps.
+     * @param values The points' values.
+     * @param offset The index in the arrays of the first point.
+     * @param count The number of points in the batch.
+     */
+    private void processPoints(long[] timestamps, float[] values, int offset, int count) {
+        int end = offset + count;
+
+        // Update the series' statistics. Series derived with an operator have to see the window as
+        // it was when each point arrived, so if there are any, each point is expired and evaluated
+        // in turn.
+        boolean evaluateEachPoint = hasOperatorSeries();
+
+        for (int i = offset; i < end; i++) {
+            extremes.add(values[i]);
+            statistics.add(values[i]);
+
+            if (ranks != null) {
+                ranks.add(values[i]);
+            }
+
+            addToHistory(timestamps[i], values[i]);
+
+            if (evaluateEachPoint) {
+                // The rest of the batch is already in the shared storage, but has to stay out of
+                // any order statistics that are created while evaluating this point
+                pendingCount = end - i - 1;
+
+                expire(timestamps[i]);
+                evaluateDerivedSeries(data.size() - (end - i));
+            }
+        }
+
+        pendingCount = 0;
+
+        // Otherwise the only other columns are channels, which don't depend on the window, so
+        // they're evaluated a column at a time
+        if (!evaluateEachPoint) {
+            for (int i = 0; i < derivedSeries.size(); i++) {
+                TimeSeries series = derivedSeries.get(i);
+
+                for (int j = data.size() - count; j < data.size(); j++) {
+                    series.evaluate(j);
+                }
+            }
+        }
+
+        // Remove any expired points, using the newest point in the batch as the current time
+        expire(timestamps[end - 1]);
+
+        rebaseStatistics();
+
+        // Notify listeners
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).pointsAdded(this, timestamps, values, offset, count);
+        }
+
+        if (derivedValues.length < end) {
+            derivedValues = new float[end];
+        }
+
+        for (int i = 0; i < derivedSeries.size(); i++) {
+            TimeSeries series = derivedSeries.get(i);
+
+            // The derived values are lined up with the batch's timestamps
+            for (int j = 0; j < count; j++) {
+                derivedValues[offset + j] = data.getValue(series.column, data.size() - count + j);
+            }
+
+            for (int j = 0; j < series.listeners.size(); j++) {
+                series.listeners.get(j).pointsAdded(
+                        series,
+                        timestamps,
+                        derivedValues,
+                        offset,
+                        count);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the statistics of the current series and its derived series if they need it.
+     */
+    private void rebaseStatistics() {
+        if (statistics.needsRebase()) {
+            statistics.rebase(data, column);
+        }
+
+        for (int i = 0; i < derivedSeries.size(); i++) {
+            TimeSeries series = derivedSeries.get(i);
+
+            if (series.statistics.needsRebase()) {
+                series.statistics.rebase(data, series.column);
+            }
+        }
+    }
+
+    /**
+     * Remove an expiring point from the series' statistics.
+     *
+     * @param index The index of the point in the shared storage.
+     */
+    private void removeFromStatistics(int index) {
+        float value = data.getValue(column, index);
+
+        statistics.remove(value);
+
+        if (ranks != null) {
+            ranks.remove(value);
+        }
+    }
+}
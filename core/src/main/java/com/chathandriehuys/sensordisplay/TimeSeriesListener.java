@@ -0,0 +1,28 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * An interface for listening to updates from a {@link TimeSeries}.
+ */
+public interface TimeSeriesListener {
+
+    /**
+     * Handle the addition of a new point to the specified series.
+     *
+     * @param series The series the point was added to.
+     * @param timestamp The timestamp of the point added to the series.
+     * @param value The value of the point added to the series.
+     */
+    void pointAdded(TimeSeries series, long timestamp, float value);
+
+    /**
+     * Handle the addition of a batch of points to the specified series.
+     *
+     * @param series The series the points were added to.
+     * @param timestamps The timestamps of the points added to the series.
+     * @param values The values of the points added to the series.
+     * @param offset The index in the arrays of the first point that was added.
+     * @param count The number of points that were added.
+     */
+    void pointsAdded(TimeSeries series, long[] timestamps, float[] values, int offset, int count);
+}
@@ -0,0 +1,67 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * The window functions a frame can be tapered with before its spectrum is calculated.
+ *
+ * Tapering the ends of a frame reduces the leakage of each frequency into the bins around it, at
+ * the cost of a wider peak. The windows are periodic, which is the usual form for spectral
+ * analysis of overlapping frames.
+ */
+public enum WindowFunction {
+    /**
+     * Leave the frame as it is. This gives the narrowest peaks, but the most leakage.
+     */
+    RECTANGULAR,
+
+    /**
+     * A raised cosine that falls to zero at the ends of the frame. This is a good default.
+     */
+    HANN,
+
+    /**
+     * A raised cosine that stops short of zero, which cancels the nearest sidelobe.
+     */
+    HAMMING,
+
+    /**
+     * A sum of three cosines, with much lower leakage and a wider peak than the Hann window.
+     */
+    BLACKMAN;
+
+    /**
+     * Calculate the window's coefficients for a frame.
+     *
+     * @param size The number of samples in the frame.
+     *
+     * @return The coefficient to multiply each sample of the frame by.
+     */
+    public float[] getCoefficients(int size) {
+        float[] coefficients = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            double phase = 2 * Math.PI * i / size;
+
+            switch (this) {
+                case HANN:
+                    coefficients[i] = (float) (0.5 - 0.5 * Math.cos(phase));
+                    break;
+
+                case HAMMING:
+                    coefficients[i] = (float) (0.54 - 0.46 * Math.cos(phase));
+                    break;
+
+                case BLACKMAN:
+                    coefficients[i] = (float) (0.42 - 0.5 * Math.cos(phase)
+                            + 0.08 * Math.cos(2 * phase));
+                    break;
+
+                default:
+                    coefficients[i] = 1;
+                    break;
+            }
+        }
+
+        return coefficients;
+    }
+}
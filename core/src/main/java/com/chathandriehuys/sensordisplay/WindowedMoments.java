@@ -0,0 +1,213 @@
+package com.chathandriehuys.sensordisplay;
+
+
+/**
+ * Statistics for a sliding window of values.
+ *
+ * The mean, variance, skewness, and kurtosis of the window are maintained in constant time as
+ * values enter and leave the window. Internally the accumulator tracks sums of powers of each
+ * value's offset from a shift point. Keeping the shift close to the mean avoids the cancellation
+ * error that plain power sums suffer from, and the accumulator is periodically rebased onto the
+ * current mean so that rounding errors from removals cannot build up.
+ */
+public class WindowedMoments {
+    private static final int MIN_REBASE_INTERVAL = 1 << 16;
+
+    private double shift;
+    private double sum1, sum2, sum3, sum4;
+
+    private int count;
+    private int updatesSinceRebase;
+
+    /**
+     * Add a value to the window.
+     *
+     * @param value The value entering the window.
+     */
+    public void add(float value) {
+        if (count == 0) {
+            // Shifting by the first value keeps the offsets small from the start
+            shift = value;
+        }
+
+        double offset = value - shift;
+        double offset2 = offset * offset;
+
+        sum1 += offset;
+        sum2 += offset2;
+        sum3 += offset2 * offset;
+        sum4 += offset2 * offset2;
+
+        count++;
+        updatesSinceRebase++;
+    }
+
+    /**
+     * Remove every value from the window.
+     */
+    public void clear() {
+        shift = 0;
+        sum1 = sum2 = sum3 = sum4 = 0;
+
+        count = 0;
+        updatesSinceRebase = 0;
+    }
+
+    /**
+     * Get the number of values in the window.
+     *
+     * @return The number of values in the window.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the excess kurtosis of the window.
+     *
+     * @return The window's excess kurtosis, or 0 if the window has no spread.
+     */
+    public double getKurtosis() {
+        double variance = getVariance();
+        if (variance == 0) {
+            return 0;
+        }
+
+        double mean = sum1 / count;
+        double mean2 = mean * mean;
+
+        double moment4 = sum4 / count
+                - 4 * mean * sum3 / count
+                + 6 * mean2 * sum2 / count
+                - 3 * mean2 * mean2;
+
+        return moment4 / (variance * variance) - 3;
+    }
+
+    /**
+     * Get the mean of the window.
+     *
+     * @return The window's mean, or 0 if the window is empty.
+     */
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+
+        return shift + sum1 / count;
+    }
+
+    /**
+     * Get the skewness of the window.
+     *
+     * @return The window's skewness, or 0 if the window has no spread.
+     */
+    public double getSkewness() {
+        double variance = getVariance();
+        if (variance == 0) {
+            return 0;
+        }
+
+        double mean = sum1 / count;
+
+        double moment3 = sum3 / count
+                - 3 * mean * sum2 / count
+                + 2 * mean * mean * mean;
+
+        return moment3 / Math.pow(variance, 1.5);
+    }
+
+    /**
+     * Get the standard deviation of the window.
+     *
+     * @return The window's population standard deviation.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Get the variance of the window.
+     *
+     * @return The window's population variance, or 0 if the window is empty.
+     */
+    public double getVariance() {
+        if (count == 0) {
+            return 0;
+        }
+
+        double mean = sum1 / count;
+
+        // Rounding can push a tiny variance below zero
+        return Math.max(sum2 / count - mean * mean, 0);
+    }
+
+    /**
+     * Remove a value from the window.
+     *
+     * @param value The value leaving the window. This must be a value that was previously added.
+     */
+    public void remove(float value) {
+        if (count == 0) {
+            throw new IllegalStateException("Cannot remove a value from an empty window.");
+        }
+
+        count--;
+        updatesSinceRebase++;
+
+        if (count == 0) {
+            clear();
+
+            return;
+        }
+
+        double offset = value - shift;
+        double offset2 = offset * offset;
+
+        sum1 -= offset;
+        sum2 -= offset2;
+        sum3 -= offset2 * offset;
+        sum4 -= offset2 * offset2;
+    }
+
+    /**
+     * Determine if the accumulator should be rebuilt from the window's values.
+     *
+     * Rebasing costs time proportional to the size of the window, so it is only requested after
+     * at least that many updates, which keeps the amortized cost of each update constant.
+     *
+     * @return A boolean indicating if {@link #rebase(SampleBuffer, int)} should be called.
+     */
+    boolean needsRebase() {
+        return updatesSinceRebase >= Math.max(MIN_REBASE_INTERVAL, count);
+    }
+
+    /**
+     * Rebuild the accumulator from the values in a window.
+     *
+     * The shift point is moved to the current mean, and the sums are recomputed from scratch so
+     * that any accumulated rounding error is discarded.
+     *
+     * @param window The values currently in the window.
+     * @param column The column of the window holding the values.
+     */
+    void rebase(SampleBuffer window, int column) {
+        double mean = getMean();
+
+        clear();
+
+        shift = mean;
+
+        for (int i = 0; i < window.size(); i++) {
+            double offset = window.getValue(column, i) - shift;
+            double offset2 = offset * offset;
+
+            sum1 += offset;
+            sum2 += offset2;
+            sum3 += offset2 * offset;
+            sum4 += offset2 * offset2;
+        }
+
+        count = window.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link Decimator}.
+ */
+public class DecimatorTest {
+    private static final long MILLIS = 1000000;
+
+    @Test
+    public void minMax_preservesPeaks() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+        Decimator decimator = new Decimator(series, DecimationMode.MIN_MAX);
+
+        decimator.setBucketWidth(100 * MILLIS);
+
+        // 1000 points in 10 buckets, with a single spike in the middle of the fourth bucket
+        for (int i = 0; i < 1000; i++) {
+            series.addPoint(i * MILLIS, i == 350 ? 100 : 0);
+        }
+
+        long[] timestamps = new long[decimator.getMaxPointCount()];
+        float[] values = new float[decimator.getMaxPointCount()];
+
+        int count = decimator.getPoints(0, timestamps, values);
+
+        assertTrue(count <= 40);
+
+        boolean foundSpike = false;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                assertTrue(timestamps[i] > timestamps[i - 1]);
+            }
+
+            if (values[i] == 100) {
+                assertEquals(350 * MILLIS, timestamps[i]);
+                foundSpike = true;
+            }
+        }
+
+        assertTrue(foundSpike);
+    }
+
+    @Test
+    public void lttb_keepsOnePointPerBucket() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+        Decimator decimator = new Decimator(series, DecimationMode.LTTB);
+
+        for (int i = 0; i < 1000; i++) {
+            series.addPoint(i * MILLIS, (float) Math.sin(i / 50.0));
+        }
+
+        // Setting the width after the points were added rebuilds the buckets from the series
+        decimator.setBucketWidth(100 * MILLIS);
+
+        long[] timestamps = new long[decimator.getMaxPointCount()];
+        float[] values = new float[decimator.getMaxPointCount()];
+
+        int count = decimator.getPoints(0, timestamps, values);
+
+        // The first point, one point for each bucket but the last, and the last point
+        assertEquals(11, count);
+        assertEquals(0, timestamps[0]);
+        assertEquals(999 * MILLIS, timestamps[count - 1]);
+    }
+
+    @Test
+    public void setBucketWidth_mergesIntoWiderBuckets() throws Exception {
+        DecimationMode[] modes = { DecimationMode.MIN_MAX, DecimationMode.LTTB };
+
+        for (DecimationMode mode : modes) {
+            TimeSeries series = new TimeSeries("Test");
+            Decimator merged = new Decimator(series, mode);
+            merged.setBucketWidth(16 * MILLIS);
+
+            for (int i = 0; i < 1000; i++) {
+                series.addPoint(i * MILLIS, (float) Math.sin(i / 30.0) + (i == 333 ? 5 : 0));
+            }
+
+            // Widening by a whole factor merges the existing buckets instead of rebuilding them
+            merged.setBucketWidth(64 * MILLIS);
+
+            Decimator built = new Decimator(series, mode);
+            built.setBucketWidth(64 * MILLIS);
+
+            assertEquals(64 * MILLIS, merged.getBucketWidth());
+            assertEquals(built.getMaxPointCount(), merged.getMaxPointCount());
+
+            long[] mergedTimestamps = new long[merged.getMaxPointCount()];
+            float[] mergedValues = new float[merged.getMaxPointCount()];
+            long[] builtTimestamps = new long[built.getMaxPointCount()];
+            float[] builtValues = new float[built.getMaxPointCount()];
+
+            int count = merged.getPoints(0, mergedTimestamps, mergedValues);
+            assertEquals(built.getPoints(0, builtTimestamps, builtValues), count);
+
+            for (int i = 0; i < count; i++) {
+                assertEquals(builtTimestamps[i], mergedTimestamps[i]);
+                assertEquals(builtValues[i], mergedValues[i], 0);
+            }
+        }
+    }
+}
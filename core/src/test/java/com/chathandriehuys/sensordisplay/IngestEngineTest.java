@@ -0,0 +1,90 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link IngestEngine}.
+ */
+public class IngestEngineTest {
+    @Test
+    public void engine_routesEachSourceToItsSeries() throws Exception {
+        IngestEngine engine = new IngestEngine(2);
+
+        IngestChannel fast = engine.addSource(
+                new SyntheticSource(1, Signals.steps(1000000, 1, 1, 0), 20000),
+                new TimeSeries("Fast"));
+        IngestChannel slow = engine.addSource(
+                new SyntheticSource(2, Signals.steps(1000000, 2, 2, 0), 1000),
+                new TimeSeries("Slow"));
+
+        engine.start();
+        Thread.sleep(200);
+        engine.shutdown();
+
+        assertSame(fast, engine.getChannel(1));
+        assertNull(engine.getChannel(3));
+
+        // Every sample the sources emitted is accounted for once the workers have finished
+        for (IngestChannel channel : engine.getChannels()) {
+            assertTrue(channel.getIngestedCount() > 0);
+            assertEquals(0, channel.getBacklog());
+            assertEquals(
+                    channel.getReceivedCount(),
+                    channel.getIngestedCount() + channel.getDroppedCount());
+        }
+
+        assertTrue(fast.getIngestedCount() > slow.getIngestedCount());
+        assertEquals(1, fast.getSeries().getValue(fast.getSeries().size() - 1), 0);
+        assertEquals(2, slow.getSeries().getValue(slow.getSeries().size() - 1), 0);
+        assertTrue(engine.getThroughput() > 0);
+    }
+
+    @Test
+    public void channel_dropsSamplesWhenDrainsFallBehind() throws Exception {
+        // An executor that never runs its drains
+        IngestEngine engine = new IngestEngine(new Executor() {
+            @Override
+            public void execute(Runnable command) { }
+        });
+        engine.setQueueCapacity(16);
+
+        SyntheticSource source = new SyntheticSource(1, Signals.sine(1, 1, 0, 0), 1000000);
+        IngestChannel channel = engine.addSource(source, new TimeSeries("Stalled"));
+
+        engine.start();
+        Thread.sleep(50);
+        engine.stop();
+
+        assertEquals(16, channel.getBacklog());
+        assertEquals(0, channel.getIngestedCount());
+        assertEquals(channel.getReceivedCount() - 16, channel.getDroppedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addSource_rejectsDuplicateSensorTypes() throws Exception {
+        IngestEngine engine = new IngestEngine(1);
+        Signal signal = Signals.sine(1, 1, 0, 0);
+
+        engine.addSource(new SyntheticSource(1, signal, 100), new TimeSeries("A"));
+        engine.addSource(new SyntheticSource(1, signal, 100), new TimeSeries("B"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void start_rejectsEngineThatWasShutDownNow() throws Exception {
+        IngestEngine engine = new IngestEngine(1);
+        engine.addSource(
+                new SyntheticSource(1, Signals.sine(1, 1, 0, 0), 100),
+                new TimeSeries("Test"));
+
+        engine.start();
+        engine.shutdownNow();
+
+        assertFalse(engine.isRunning());
+
+        engine.start();
+    }
+}
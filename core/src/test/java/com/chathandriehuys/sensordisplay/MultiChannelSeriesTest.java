@@ -0,0 +1,82 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link MultiChannelSeries}.
+ */
+public class MultiChannelSeriesTest {
+    @Test
+    public void addPoints_matchesAddingEachPoint() throws Exception {
+        MultiChannelSeries single = new MultiChannelSeries("X", "Y", "Z");
+        MultiChannelSeries batched = new MultiChannelSeries("X", "Y", "Z");
+
+        single.addMagnitudeChannel("Magnitude");
+        batched.addMagnitudeChannel("Magnitude");
+
+        // Run past the domain, so some of the points have expired
+        int count = 6000;
+        long[] timestamps = new long[count];
+        float[][] columns = new float[3][count];
+
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = i * 1000000L;
+            columns[0][i] = i % 7;
+            columns[1][i] = -(i % 5);
+            columns[2][i] = 9.81f;
+
+            single.addPoint(timestamps[i], new float[] { columns[0][i], columns[1][i], 9.81f });
+        }
+
+        for (int offset = 0; offset < count; offset += 250) {
+            batched.addPoints(timestamps, columns, offset, 250);
+        }
+
+        assertEquals(single.size(), batched.size());
+        assertTrue(single.size() < count);
+
+        for (int channel = 0; channel < 4; channel++) {
+            TimeSeries expected = single.getChannel(channel);
+            TimeSeries actual = batched.getChannel(channel);
+
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+                assertEquals(expected.getValue(i), actual.getValue(i), 0);
+            }
+
+            assertEquals(expected.getAverage(), actual.getAverage(), 1e-4);
+            assertEquals(expected.getRange().getMax(), actual.getRange().getMax(), 0);
+        }
+    }
+
+    @Test
+    public void channels_keepTheirOwnStatistics() throws Exception {
+        MultiChannelSeries series = new MultiChannelSeries("X", "Y");
+        TimeSeries magnitude = series.addMagnitudeChannel("Magnitude");
+        TimeSeries average = magnitude.getAverageSeries();
+
+        series.addPoint(0, new float[] { 3, 4 });
+        series.addPoint(1, new float[] { 6, 8 });
+
+        assertEquals(3, series.getChannelCount());
+        assertEquals(4.5f, series.getChannel(0).getAverage(), 0);
+        assertEquals(6, series.getChannel(1).getAverage(), 0);
+        assertEquals(5, magnitude.getValue(0), 0);
+        assertEquals(10, magnitude.getValue(1), 0);
+        assertEquals(7.5f, average.getValue(1), 0);
+
+        // Every channel is a view over the same timestamps
+        assertEquals(1, series.getChannel(1).getTimestamp(1));
+        assertEquals(1, magnitude.getTimestamp(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addMagnitudeChannel_rejectsSeriesWithPoints() throws Exception {
+        MultiChannelSeries series = new MultiChannelSeries("X", "Y", "Z");
+        series.addPoint(0, new float[] { 1, 2, 3 });
+
+        series.addMagnitudeChannel("Magnitude");
+    }
+}
@@ -0,0 +1,60 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link OrderStatisticTree}.
+ */
+public class OrderStatisticTreeTest {
+    @Test
+    public void get_matchesSortedSlidingWindow() throws Exception {
+        OrderStatisticTree tree = new OrderStatisticTree();
+        ArrayList<Float> window = new ArrayList<>();
+        Random random = new Random(7);
+
+        // Small integers so that there are plenty of duplicates
+        for (int i = 0; i < 5000; i++) {
+            float value = random.nextInt(50);
+
+            tree.add(value);
+            window.add(value);
+
+            if (window.size() > 100) {
+                assertTrue(tree.remove(window.remove(0)));
+            }
+
+            ArrayList<Float> sorted = new ArrayList<>(window);
+            Collections.sort(sorted);
+
+            assertEquals(sorted.size(), tree.size());
+            for (int rank = 0; rank < sorted.size(); rank += 7) {
+                assertEquals(sorted.get(rank), tree.get(rank), 0);
+            }
+        }
+    }
+
+    @Test
+    public void getPercentile_interpolatesBetweenValues() throws Exception {
+        OrderStatisticTree tree = new OrderStatisticTree();
+
+        assertTrue(Float.isNaN(tree.getPercentile(50)));
+
+        tree.add(4);
+        tree.add(1);
+        tree.add(3);
+        tree.add(2);
+
+        assertEquals(1, tree.getPercentile(0), 0);
+        assertEquals(2.5, tree.getPercentile(50), 0);
+        assertEquals(3.25, tree.getPercentile(75), 1e-6);
+        assertEquals(4, tree.getPercentile(100), 0);
+
+        assertFalse(tree.remove(5));
+    }
+}
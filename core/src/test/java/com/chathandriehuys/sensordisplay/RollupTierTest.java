@@ -0,0 +1,79 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link RollupTier}.
+ */
+public class RollupTierTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void add_summarizesEachBucket() throws Exception {
+        RollupTier tier = new RollupTier(10, 1000);
+
+        tier.add(0, 3);
+        tier.add(4, 9);
+        tier.add(9, 1);
+        tier.add(25, 5);
+
+        assertEquals(2, tier.size());
+
+        assertEquals(0, tier.getStart(0));
+        assertEquals(3, tier.getCount(0));
+        assertEquals(1, tier.getMin(0), 0);
+        assertEquals(9, tier.getMax(0), 0);
+        assertEquals(13 / 3f, tier.getMean(0), 1e-6);
+
+        assertEquals(20, tier.getStart(1));
+        assertEquals(1, tier.getCount(1));
+
+        // Each bucket contributes its extremes in the order they occurred
+        long[] timestamps = new long[tier.getMaxPointCount()];
+        float[] values = new float[tier.getMaxPointCount()];
+
+        assertEquals(3, tier.getPoints(0, Long.MAX_VALUE, timestamps, values));
+        assertArrayEquals(new long[] {4, 9, 25}, Arrays.copyOf(timestamps, 3));
+        assertArrayEquals(new float[] {9, 1, 5}, Arrays.copyOf(values, 3), 0);
+    }
+
+    @Test
+    public void add_expiresBucketsOutsideRetention() throws Exception {
+        RollupTier tier = new RollupTier(10, 100);
+
+        // Enough buckets to make the ring buffer grow while it wraps around
+        for (int i = 0; i < 1000; i++) {
+            tier.add(i * 10, i);
+        }
+
+        assertEquals(11, tier.size());
+        assertEquals(9890, tier.getStart(0));
+        assertEquals(989, tier.getMin(0), 0);
+
+        FloatInterval range = tier.getRange(9950, Long.MAX_VALUE, new FloatInterval(0, 0));
+        assertEquals(995, range.getMin(), 0);
+        assertEquals(999, range.getMax(), 0);
+    }
+
+    @Test
+    public void getRollupTier_picksCoarsestTierFillingResolution() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        RollupTier fine = series.addRollupTier(SECOND / 10, 60 * SECOND);
+        RollupTier coarse = series.addRollupTier(10 * SECOND, 3600 * SECOND);
+        RollupTier medium = series.addRollupTier(SECOND, 600 * SECOND);
+
+        // The raw points cover the domain
+        assertNull(series.getRollupTier(series.getDomain().getMax(), SECOND));
+
+        assertSame(fine, series.getRollupTier(60 * SECOND, SECOND / 10));
+        assertSame(fine, series.getRollupTier(60 * SECOND, SECOND / 100));
+        assertSame(medium, series.getRollupTier(60 * SECOND, 5 * SECOND));
+        assertSame(coarse, series.getRollupTier(3600 * SECOND, 5 * SECOND));
+        assertSame(coarse, series.getRollupTier(7200 * SECOND, SECOND));
+    }
+}
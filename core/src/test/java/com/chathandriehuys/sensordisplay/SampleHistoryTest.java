@@ -0,0 +1,108 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SampleHistory}.
+ */
+public class SampleHistoryTest {
+    private static final long MILLISECOND = 1000000L;
+
+    @Test
+    public void seek_readsBackEverySampleExactly() throws Exception {
+        SampleHistory history = new SampleHistory(Long.MAX_VALUE);
+        Random random = new Random(42);
+
+        int count = 5 * SampleHistory.BLOCK_SIZE + 100;
+        long[] timestamps = new long[count];
+        float[] values = new float[count];
+
+        // A 200 Hz sensor with timestamp jitter, repeated values, a NaN, and the odd large gap
+        long timestamp = 1234567890123L;
+        for (int i = 0; i < count; i++) {
+            timestamp += 5 * MILLISECOND + random.nextInt(20000) - 10000;
+            if (i % 1000 == 999) {
+                timestamp += 3000 * MILLISECOND;
+            }
+
+            timestamps[i] = timestamp;
+            // Readings are quantized, like the output of a sensor's ADC
+            values[i] = i % 7 == 0
+                    ? values[Math.max(i - 1, 0)]
+                    : Math.round((9.81 + random.nextGaussian() / 10) * 256) / 256f;
+        }
+        values[300] = Float.NaN;
+        values[301] = -0f;
+
+        for (int i = 0; i < count; i++) {
+            history.add(timestamps[i], values[i]);
+        }
+
+        assertEquals(count, history.size());
+        assertEquals(5, history.getBlockCount());
+
+        HistoryCursor cursor = history.seek(Long.MIN_VALUE, new HistoryCursor());
+        for (int i = 0; i < count; i++) {
+            assertTrue(cursor.next());
+            assertEquals(timestamps[i], cursor.getTimestamp());
+            assertEquals(
+                    Float.floatToRawIntBits(values[i]),
+                    Float.floatToRawIntBits(cursor.getValue()));
+        }
+        assertFalse(cursor.next());
+
+        // Seeking into the middle of a block starts at the first sample at or after the time
+        history.seek(timestamps[2500] - 1, cursor);
+        assertTrue(cursor.next());
+        assertEquals(timestamps[2500], cursor.getTimestamp());
+
+        // Apart from the uncompressed head block, sensor data compresses well below the 12 bytes of
+        // a raw sample
+        assertTrue(history.getByteCount() - 12L * SampleHistory.BLOCK_SIZE < 5L * count);
+    }
+
+    @Test
+    public void add_dropsExpiredBlocks() throws Exception {
+        SampleHistory history = new SampleHistory(SampleHistory.BLOCK_SIZE);
+
+        for (int i = 0; i < 3 * SampleHistory.BLOCK_SIZE; i++) {
+            history.add(i, i);
+        }
+
+        // The oldest block ends before the retention, and the next one ends right on it
+        assertEquals(2, history.getBlockCount());
+        assertEquals(2 * SampleHistory.BLOCK_SIZE, history.size());
+
+        FloatInterval range = history.getRange(0, Long.MAX_VALUE, new FloatInterval(0, 0));
+        assertEquals(SampleHistory.BLOCK_SIZE, range.getMin(), 0);
+        assertEquals(3 * SampleHistory.BLOCK_SIZE - 1, range.getMax(), 0);
+
+        WindowedMoments statistics = history.getStatistics(
+                2 * SampleHistory.BLOCK_SIZE,
+                2 * SampleHistory.BLOCK_SIZE + 2,
+                new WindowedMoments());
+        assertEquals(3, statistics.getCount());
+        assertEquals(2 * SampleHistory.BLOCK_SIZE + 1, statistics.getMean(), 1e-9);
+    }
+
+    @Test
+    public void getNewestTimestamp_readsBlocksAndHead() throws Exception {
+        SampleHistory history = new SampleHistory(Long.MAX_VALUE);
+        assertEquals(Long.MIN_VALUE, history.getNewestTimestamp());
+
+        // Exactly one block's worth of samples are sealed into a block, leaving the head empty
+        for (int i = 0; i < SampleHistory.BLOCK_SIZE; i++) {
+            history.add(10 * i, i);
+        }
+
+        assertEquals(0, history.getHeadCount());
+        assertEquals(10 * (SampleHistory.BLOCK_SIZE - 1), history.getNewestTimestamp());
+
+        history.add(10 * SampleHistory.BLOCK_SIZE + 5, 0);
+        assertEquals(10 * SampleHistory.BLOCK_SIZE + 5, history.getNewestTimestamp());
+    }
+}
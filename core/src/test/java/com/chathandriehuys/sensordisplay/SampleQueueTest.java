@@ -0,0 +1,94 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SampleQueue}.
+ */
+public class SampleQueueTest {
+    @Test
+    public void offer_dropsSamplesWhenFull() throws Exception {
+        SampleQueue queue = new SampleQueue(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i, i));
+        }
+
+        assertFalse(queue.offer(4, 4));
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void drain_copiesEveryColumnAcrossTheWrap() throws Exception {
+        SampleQueue queue = new SampleQueue(4, 3);
+
+        long[] timestamps = new long[4];
+        float[][] columns = new float[3][4];
+
+        // Move the start of the queue so the next samples wrap around its arrays
+        queue.offer(0, new float[] { 0, 0, 0 });
+        queue.offer(1, new float[] { 0, 0, 0 });
+        assertEquals(2, queue.drain(timestamps, columns));
+
+        for (int i = 2; i < 6; i++) {
+            assertTrue(queue.offer(i, new float[] { i, 10 * i, 100 * i }));
+        }
+
+        assertEquals(4, queue.drain(timestamps, columns));
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 2, timestamps[i]);
+            assertEquals(i + 2, columns[0][i], 0);
+            assertEquals(10 * (i + 2), columns[1][i], 0);
+            assertEquals(100 * (i + 2), columns[2][i], 0);
+        }
+    }
+
+    /**
+     * Hand samples from a producer thread to the test thread and make sure every sample arrives
+     * exactly once and in order.
+     */
+    @Test(timeout = 10000)
+    public void drain_receivesSamplesFromProducerInOrder() throws Exception {
+        final SampleQueue queue = new SampleQueue(256);
+        final int count = 100000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    while (!queue.offer(i, i)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        long[] timestamps = new long[100];
+        float[] values = new float[100];
+
+        long expected = 0;
+
+        while (expected < count) {
+            int drained = queue.drain(timestamps, values);
+
+            for (int i = 0; i < drained; i++) {
+                assertEquals(expected, timestamps[i]);
+                assertEquals((float) expected, values[i], 0);
+
+                expected++;
+            }
+
+            if (drained == 0) {
+                Thread.yield();
+            }
+        }
+
+        producer.join();
+
+        assertEquals(count, expected);
+    }
+}
@@ -0,0 +1,82 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the {@link PacedSource} implementations.
+ */
+public class SensorSourceTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void replay_compressesRecordedSpacing() throws Exception {
+        File directory = Files.createTempDirectory("session").toFile();
+
+        SessionRecorder recorder = new SessionRecorder(directory, 1);
+        for (int i = 0; i < 100; i++) {
+            recorder.record(5000 + i * 10 * SECOND / 1000, i);
+        }
+        recorder.close();
+
+        ReplaySource source = new ReplaySource(new SessionReader(directory), 10);
+        TimeSeries series = new TimeSeries("Replay");
+
+        // At 10x, samples recorded 10 ms apart are emitted 1 ms apart
+        source.begin(SECOND);
+        assertTrue(source.emit(SECOND + SECOND / 1000 * 49, collect(series)));
+        assertEquals(50, series.size());
+        assertEquals(SECOND + SECOND / 1000 * 49, series.getTimestamp(49));
+        assertEquals(49, series.getValue(49), 0);
+
+        assertFalse(source.emit(Long.MAX_VALUE, collect(series)));
+        assertEquals(100, series.size());
+        assertEquals(100, source.getReplayedCount());
+    }
+
+    @Test
+    public void synthetic_emitsAtFixedRate() throws Exception {
+        SyntheticSource source = new SyntheticSource(
+                1,
+                Signals.steps(SECOND / 100, 0, 1, 0),
+                20000);
+        TimeSeries series = new TimeSeries("Synthetic");
+
+        source.begin(0);
+        assertTrue(source.emit(SECOND / 50 - 1, collect(series)));
+
+        // 20 ms at 20 kHz, with a step every 10 ms
+        assertEquals(400, series.size());
+        assertEquals(50000, series.getTimestamp(1));
+        assertEquals(0, series.getValue(199), 0);
+        assertEquals(1, series.getValue(200), 0);
+
+        // Restarting carries on from the next sample, lined up with the new start time
+        source.begin(SECOND);
+        source.emit(SECOND, collect(series));
+
+        assertEquals(401, series.size());
+        assertEquals(SECOND, series.getTimestamp(400));
+        assertEquals(0, series.getValue(400), 0);
+    }
+
+    /**
+     * Create a consumer that adds samples to a series.
+     *
+     * @param series The series to add samples to.
+     *
+     * @return The consumer.
+     */
+    private static SampleVisitor collect(final TimeSeries series) {
+        return new SampleVisitor() {
+            @Override
+            public void visit(long timestamp, float value) {
+                series.addPoint(timestamp, value);
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SessionRecorder} and {@link SessionReader}.
+ */
+public class SessionRecorderTest {
+    @Test
+    public void record_readsBackAcrossSegments() throws Exception {
+        File directory = Files.createTempDirectory("session").toFile();
+
+        // Small segments so the session spans several of them
+        SessionRecorder recorder = new SessionRecorder(directory, 1, 100, 0);
+        for (int i = 0; i < 250; i++) {
+            assertTrue(recorder.record(i * 1000L, i / 2f));
+        }
+        recorder.close();
+
+        assertEquals(250, recorder.getRecordedCount());
+        assertFalse(recorder.record(0, 0));
+
+        SessionReader reader = new SessionReader(directory);
+        assertEquals(3, reader.getSegmentCount());
+        assertEquals(250, reader.size());
+        assertEquals(1, reader.getSensorType());
+
+        assertEquals(199000, reader.getTimestamp(199));
+        assertEquals(99.5, reader.getValue(199), 0);
+
+        // A read spanning the boundary between two segments
+        long[] timestamps = new long[64];
+        float[] values = new float[64];
+
+        assertEquals(64, reader.read(90, timestamps, values));
+        for (int i = 0; i < 64; i++) {
+            assertEquals((90 + i) * 1000L, timestamps[i]);
+            assertEquals((90 + i) / 2f, values[i], 0);
+        }
+
+        assertEquals(10, reader.read(240, timestamps, values));
+    }
+
+    @Test(expected = IOException.class)
+    public void reader_rejectsCorruptSegments() throws Exception {
+        File directory = Files.createTempDirectory("session").toFile();
+
+        SessionRecorder recorder = new SessionRecorder(directory, 1);
+        recorder.record(0, 0);
+        recorder.close();
+
+        RandomAccessFile segment = new RandomAccessFile(
+                new File(directory, SegmentFormat.getFileName(0)),
+                "rw");
+        segment.writeInt(0);
+        segment.close();
+
+        new SessionReader(directory);
+    }
+}
@@ -0,0 +1,108 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link SpectrumAnalyzer}.
+ */
+public class SpectrumAnalyzerTest {
+    @Test
+    public void fft_matchesDirectTransform() throws Exception {
+        int size = 64;
+        Random random = new Random(42);
+
+        float[] input = new float[size];
+        for (int i = 0; i < size; i++) {
+            input[i] = (float) random.nextGaussian();
+        }
+
+        RealFft fft = new RealFft(size);
+        float[] magnitudes = new float[fft.getBinCount()];
+        fft.magnitudes(input, magnitudes);
+
+        for (int k = 0; k <= size / 2; k++) {
+            double real = 0;
+            double imaginary = 0;
+
+            for (int n = 0; n < size; n++) {
+                real += input[n] * Math.cos(2 * Math.PI * k * n / size);
+                imaginary -= input[n] * Math.sin(2 * Math.PI * k * n / size);
+            }
+
+            assertEquals(Math.hypot(real, imaginary), magnitudes[k], 1e-3);
+        }
+    }
+
+    @Test
+    public void analyzer_findsSinusoidAtItsFrequency() throws Exception {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(256, 64, WindowFunction.HANN, 2);
+        SpectrumSeries series = analyzer.getSeries();
+
+        // A 125 Hz sinusoid sampled at 1 kHz falls exactly on bin 32, on top of a constant offset
+        for (int i = 0; i < 256 + 3 * 64; i++) {
+            float value = 9.81f + 2 * (float) Math.sin(2 * Math.PI * 125 * i / 1000);
+
+            analyzer.visit(i * 1000000L, value);
+        }
+
+        assertEquals(4, series.getFrameCount());
+        assertEquals(2, series.getOldestFrame());
+        assertEquals(1000, series.getSampleRate(), 1e-2);
+        assertEquals(125, series.getFrequency(32), 1e-3);
+
+        float[] amplitudes = new float[series.getBinCount()];
+        assertEquals(447 * 1000000L, series.getFrame(3, amplitudes));
+
+        int peak = 0;
+        for (int i = 1; i < amplitudes.length; i++) {
+            if (amplitudes[i] > amplitudes[peak]) {
+                peak = i;
+            }
+        }
+
+        assertEquals(32, peak);
+        assertEquals(2, amplitudes[32], 1e-2);
+        assertEquals(0, amplitudes[0], 1e-2);
+    }
+
+    @Test
+    public void addListener_isNotifiedOfEachFrame() throws Exception {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(8, 4, WindowFunction.RECTANGULAR, 4);
+        final SpectrumSeries series = analyzer.getSeries();
+        final long[] notified = new long[2];
+
+        series.addListener(new SpectrumListener() {
+            @Override
+            public void frameAdded(SpectrumSeries spectrum, long frame, long timestamp) {
+                // The frame can already be read when its listeners are told about it
+                assertSame(series, spectrum);
+                assertEquals(timestamp, spectrum.getTimestamp(frame));
+
+                notified[0]++;
+                notified[1] = frame;
+            }
+        });
+
+        for (int i = 0; i < 16; i++) {
+            analyzer.visit(i, i);
+        }
+
+        assertEquals(series.getFrameCount(), notified[0]);
+        assertEquals(series.getFrameCount() - 1, notified[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getFrame_rejectsFramesThatAreNoLongerKept() throws Exception {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(8, 8, WindowFunction.RECTANGULAR, 1);
+
+        for (int i = 0; i < 16; i++) {
+            analyzer.visit(i, i);
+        }
+
+        analyzer.getSeries().getFrame(0, new float[5]);
+    }
+}
@@ -0,0 +1,270 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link TimeSeries}.
+ */
+public class TimeSeriesTest {
+    private static final long MILLIS = 1000000;
+
+    @Test
+    public void addPoint_expiresPointsOutsideDomain() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        series.addPoint(0, 1);
+        series.addPoint(1000 * MILLIS, 2);
+        series.addPoint(6000 * MILLIS, 3);
+
+        // The first point is now more than 5 seconds old
+        assertEquals(2, series.size());
+        assertEquals(1000 * MILLIS, series.getTimestamp(0));
+        assertEquals(2.5, series.getAverage(), 1e-6);
+    }
+
+    @Test
+    public void addPoints_matchesAddingEachPoint() throws Exception {
+        TimeSeries single = new TimeSeries("Single");
+        TimeSeries singleAverage = single.getAverageSeries();
+        TimeSeries batched = new TimeSeries("Batched");
+        TimeSeries batchedAverage = batched.getAverageSeries();
+
+        long[] timestamps = new long[200];
+        float[] values = new float[200];
+
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = i * 20 * MILLIS;
+            values[i] = i % 7;
+
+            single.addPoint(timestamps[i], values[i]);
+        }
+
+        // Add the points in uneven batches so the buffer has to wrap and grow mid-batch
+        batched.addPoints(timestamps, values, 0, 70);
+        batched.addPoints(timestamps, values, 70, 130);
+
+        assertEquals(single.size(), batched.size());
+        for (int i = 0; i < single.size(); i++) {
+            assertEquals(single.getTimestamp(i), batched.getTimestamp(i));
+            assertEquals(single.getValue(i), batched.getValue(i), 0);
+        }
+
+        assertEquals(single.getAverage(), batched.getAverage(), 1e-6);
+
+        // Derived series are evaluated for every point in a batch
+        assertEquals(singleAverage.size(), batchedAverage.size());
+        for (int i = 0; i < singleAverage.size(); i++) {
+            assertEquals(singleAverage.getValue(i), batchedAverage.getValue(i), 1e-6);
+        }
+    }
+
+    @Test
+    public void derive_chainsOperatorsOverSharedWindow() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+        TimeSeries doubled = series.derive("Doubled", new SampleOperator() {
+            @Override
+            public float apply(TimeSeries input, long timestamp, float value) {
+                return 2 * value;
+            }
+        });
+        TimeSeries average = doubled.getAverageSeries();
+
+        series.addPoint(0, 1);
+        series.addPoint(1000 * MILLIS, 2);
+        series.addPoint(6000 * MILLIS, 3);
+
+        // The derived series expire along with the source series
+        assertEquals(2, doubled.size());
+        assertEquals(1000 * MILLIS, doubled.getTimestamp(0));
+        assertEquals(4, doubled.getValue(0), 0);
+        assertEquals(6, doubled.getValue(1), 0);
+
+        assertEquals(5, average.getValue(1), 1e-6);
+        assertEquals(4, doubled.getRange().getMin(), 0);
+        assertEquals(5, doubled.getAverage(), 1e-6);
+    }
+
+    @Test
+    public void derive_backFillsEachPointAgainstItsOwnWindow() throws Exception {
+        TimeSeries before = new TimeSeries("Before");
+        TimeSeries[] derivedBefore = {
+                before.getAverageSeries(),
+                before.getVarianceSeries(),
+                before.getMedianSeries(),
+                before.getFilteredSeries(3),
+        };
+
+        TimeSeries after = new TimeSeries("After");
+
+        // Every point stays in the window, so the back-fill can see everything the series derived
+        // up front saw
+        for (int i = 0; i < 10; i++) {
+            before.addPoint(i * 400 * MILLIS, i == 7 ? 50 : i);
+            after.addPoint(i * 400 * MILLIS, i == 7 ? 50 : i);
+        }
+
+        float average = after.getAverage();
+
+        TimeSeries[] derivedAfter = {
+                after.getAverageSeries(),
+                after.getVarianceSeries(),
+                after.getMedianSeries(),
+                after.getFilteredSeries(3),
+        };
+
+        for (int i = 0; i < derivedBefore.length; i++) {
+            assertEquals(derivedBefore[i].size(), derivedAfter[i].size());
+
+            for (int j = 0; j < derivedBefore[i].size(); j++) {
+                assertEquals(derivedBefore[i].getValue(j), derivedAfter[i].getValue(j), 1e-5);
+            }
+        }
+
+        // The input's own statistics are untouched by the back-fill
+        assertEquals(average, after.getAverage(), 0);
+        assertEquals(before.getMedian(), after.getMedian(), 0);
+    }
+
+    @Test
+    public void derive_backFillsMovingAverage() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        for (int i = 0; i < 5; i++) {
+            series.addPoint(i * MILLIS, i);
+        }
+
+        TimeSeries average = series.getAverageSeries();
+
+        float[] expected = { 0, 0.5f, 1, 1.5f, 2 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], average.getValue(i), 1e-6);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void derive_rejectsPointsAddedToDerivedSeries() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        series.getAverageSeries().addPoint(0, 1);
+    }
+
+    @Test
+    public void expire_usesProvidedTime() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        series.addPoint(0, 1);
+        series.addPoint(1000 * MILLIS, 2);
+
+        series.expire(5500 * MILLIS);
+
+        assertEquals(1, series.size());
+        assertEquals(2, series.getValue(0), 0);
+    }
+
+    @Test
+    public void getFilteredSeries_replacesSpikesWithMedian() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+        TimeSeries median = series.getMedianSeries();
+        TimeSeries filtered = series.getFilteredSeries(3);
+
+        long[] timestamps = new long[500];
+        float[] values = new float[500];
+
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = i * 5 * MILLIS;
+            values[i] = i == 400 ? 1000 : 9.8f + (i % 5) * 0.1f;
+        }
+
+        series.addPoints(timestamps, values, 0, timestamps.length);
+
+        assertEquals(1000, series.getValue(400), 0);
+        assertEquals(median.getValue(400), filtered.getValue(400), 0);
+        assertEquals(series.getValue(399), filtered.getValue(399), 0);
+
+        // The spike barely moves the median
+        assertEquals(10, median.getValue(400), 0.1);
+        assertEquals(series.getMedian(), median.getValue(499), 0);
+    }
+
+    @Test
+    public void getLock_isSharedWithDerivedSeries() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+        TimeSeries filtered = series.getAverageSeries().getFilteredSeries(3);
+
+        assertSame(series.getLock(), series.getAverageSeries().getLock());
+        assertSame(series.getLock(), filtered.getLock());
+        assertNotSame(series.getLock(), new TimeSeries("Other").getLock());
+    }
+
+    @Test
+    public void getRange_tracksExpiredExtremes() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        series.addPoint(0, 10);
+        series.addPoint(1000 * MILLIS, -3);
+        series.addPoint(2000 * MILLIS, 4);
+
+        assertEquals(-3, series.getRange().getMin(), 0);
+        assertEquals(10, series.getRange().getMax(), 0);
+
+        int version = series.getRangeVersion();
+
+        // Neither extreme changes, so the version should stay the same
+        series.addPoint(3000 * MILLIS, 2);
+        assertEquals(version, series.getRangeVersion());
+
+        // Expire the maximum
+        series.addPoint(5500 * MILLIS, 1);
+        assertEquals(-3, series.getRange().getMin(), 0);
+        assertEquals(4, series.getRange().getMax(), 0);
+        assertTrue(version != series.getRangeVersion());
+    }
+
+    @Test
+    public void getSlice_findsPointsInPeriod() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        // Enough points for the storage to wrap around once the oldest expire
+        for (int i = 0; i < 10000; i++) {
+            series.addPoint(i * MILLIS, i);
+        }
+
+        SeriesSlice slice = series.getSlice(7000 * MILLIS, 7010 * MILLIS);
+        assertEquals(11, slice.size());
+        assertEquals(7000 * MILLIS, slice.getTimestamp(0));
+        assertEquals(7010, slice.getValue(10), 0);
+
+        // Bounds between points, and periods outside the series
+        series.getSlice(7000 * MILLIS + 1, 7002 * MILLIS - 1, slice);
+        assertEquals(1, slice.size());
+        assertEquals(7001, slice.getValue(0), 0);
+
+        assertEquals(0, series.getSlice(0, 4000 * MILLIS, slice).size());
+        assertEquals(0, series.getSlice(20000 * MILLIS, Long.MAX_VALUE, slice).size());
+        assertEquals(series.size(), series.getSlice(0, Long.MAX_VALUE, slice).size());
+        assertEquals(series.size(), series.ceilingIndex(Long.MAX_VALUE));
+    }
+
+    /**
+     * Feed the series a sustained 1 kHz stream with a full window.
+     *
+     * Expiry used to scan the entire window on every point, so this would take billions of
+     * operations. With expiry limited to the expired prefix, the cost per point is constant.
+     */
+    @Test(timeout = 5000)
+    public void addPoint_sustainsKilohertzInput() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+
+        int count = 2000000;
+
+        for (int i = 0; i < count; i++) {
+            series.addPoint(i * MILLIS, i % 100);
+        }
+
+        // A 5 second window at 1 kHz holds 5001 points including both end-points
+        assertEquals(5001, series.size());
+        assertEquals((count - 1) * MILLIS, series.getTimestamp(series.size() - 1));
+    }
+}
@@ -0,0 +1,72 @@
+package com.chathandriehuys.sensordisplay;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link WindowedMoments}.
+ */
+public class WindowedMomentsTest {
+    @Test
+    public void moments_matchDirectComputation() throws Exception {
+        WindowedMoments moments = new WindowedMoments();
+
+        float[] values = {2, 4, 4, 4, 5, 5, 7, 9};
+        for (float value : values) {
+            moments.add(value);
+        }
+
+        assertEquals(8, moments.getCount());
+        assertEquals(5, moments.getMean(), 1e-9);
+        assertEquals(4, moments.getVariance(), 1e-9);
+        assertEquals(0.65625, moments.getSkewness(), 1e-9);
+        assertEquals(-0.21875, moments.getKurtosis(), 1e-9);
+    }
+
+    @Test
+    public void remove_restoresPreviousMoments() throws Exception {
+        WindowedMoments moments = new WindowedMoments();
+
+        moments.add(1);
+        moments.add(2);
+        moments.add(3);
+        moments.remove(1);
+
+        assertEquals(2.5, moments.getMean(), 1e-9);
+        assertEquals(0.25, moments.getVariance(), 1e-9);
+    }
+
+    /**
+     * Slide a window with a large offset across millions of values and make sure the variance
+     * still matches a direct computation over the final window.
+     */
+    @Test
+    public void slidingWindow_doesNotDrift() throws Exception {
+        TimeSeries series = new TimeSeries("Test");
+        Random random = new Random(42);
+
+        for (int i = 0; i < 3000000; i++) {
+            series.addPoint(i * 1000000L, 10000 + (float) random.nextGaussian());
+        }
+
+        double sum = 0;
+        for (int i = 0; i < series.size(); i++) {
+            sum += series.getValue(i);
+        }
+        double mean = sum / series.size();
+
+        double squares = 0;
+        for (int i = 0; i < series.size(); i++) {
+            double offset = series.getValue(i) - mean;
+            squares += offset * offset;
+        }
+
+        WindowedMoments moments = series.getStatistics();
+
+        assertEquals(mean, moments.getMean(), 1e-6);
+        assertEquals(squares / series.size(), moments.getVariance(), 1e-6);
+    }
+}